@@ -34,6 +34,7 @@ public class XMLException extends RuntimeException {
        add("Resources/simulation_config_schema/PredatorPreyConfig.xsd");
        add("Resources/simulation_config_schema/SpreadingOfFireConfig.xsd");
        add("Resources/simulation_config_schema/SegregationConfig.xsd");
+       add("Resources/simulation_config_schema/TotalisticConfig.xsd");
     }};
     private static final String XML_GAME_VALIDATION_SCHEMA = "Resources/GameConfig.xsd";
 
@@ -116,6 +117,19 @@ public class XMLException extends RuntimeException {
         gridSizeInvalidAlert.showAndWait();
     }
 
+    /**
+     * Produces the alert if a step of the simulation failed, which stops the simulation. It does not wait for the user
+     * to close it, so it can be shown while a frame is being drawn.
+     * @param myResources the resource bundle that holds the key for displaying the error message.
+     * @param failure what the step threw
+     */
+    public static void showSimulationFailureAlert(ResourceBundle myResources, Throwable failure) {
+        Alert simulationFailureAlert = new Alert(Alert.AlertType.ERROR);
+        simulationFailureAlert.setHeaderText(myResources.getString("simulationFailureAlertHeader"));
+        simulationFailureAlert.setContentText(myResources.getString("simulationFailureAlertMessage") + " " + failure);
+        simulationFailureAlert.show();
+    }
+
     /**
      * Create an exception based on a caught exception with a different message.
      */
@@ -114,4 +114,30 @@ public class XMLSimulationParser extends XMLParser {
         return super.getRoot().getElementsByTagName("neighbor_configuration").item(0).getTextContent();
     }
 
+    /**
+     * Used to get the rule string of a totalistic simulation, such as "B3/S23" for the Game of Life or "B2/S/C3" for a
+     * rule with decaying states.
+     * @return the rule specified in the configuration file, or null if the file has no rule
+     */
+    public String getRule(){
+        return getOptionalElement("rule");
+    }
+
+    /**
+     * Used to get the explicit transitions of a totalistic simulation, written as "state count next" triples separated
+     * by slashes, which override the transitions given by the rule.
+     * @return the transition table specified in the configuration file, or null if the file has none
+     */
+    public String getTransitionTable(){
+        return getOptionalElement("transition_table");
+    }
+
+    private String getOptionalElement(String tagName){
+        NodeList nodes = super.getRoot().getElementsByTagName(tagName);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        return nodes.item(0).getTextContent().trim();
+    }
+
 }
@@ -0,0 +1,76 @@
+package elements;
+
+import java.util.Arrays;
+
+/**
+ * This class holds one numeric attribute of the agents of a simulation, such as the energy of a shark, in a primitive
+ * array indexed by the id of the cell the agent is in. Moving an agent moves its value with two array writes, so
+ * simulations can keep per-agent values without boxing or hashing. Cells without an agent hold 0.
+ *
+ * Distinct cells can be written from several threads at once.
+ * @author Sumer Vardhan
+ */
+public class AgentAttribute {
+    private final double[] myValues;
+
+    /**
+     * Creates an attribute that is 0 for every cell.
+     * @param size the number of cells of the grid
+     */
+    public AgentAttribute(int size) {
+        myValues = new double[size];
+    }
+
+    /**
+     * Gets the value of the agent in a cell.
+     * @param id the id of the cell
+     * @return the value of the attribute, or 0 if no value was set
+     */
+    public double get(int id) {
+        return myValues[id];
+    }
+
+    /**
+     * Sets the value of the agent in a cell.
+     * @param id the id of the cell
+     * @param value the value of the attribute
+     */
+    public void set(int id, double value) {
+        myValues[id] = value;
+    }
+
+    /**
+     * Adds to the value of the agent in a cell.
+     * @param id the id of the cell
+     * @param amount the amount to add, which may be negative
+     */
+    public void add(int id, double amount) {
+        myValues[id] += amount;
+    }
+
+    /**
+     * Moves an agent's value to another cell and clears the cell it left.
+     * @param from the id of the cell the agent leaves
+     * @param to the id of the cell the agent moves to
+     * @param value the value the agent has once it moved
+     */
+    public void move(int from, int to, double value) {
+        myValues[from] = 0;
+        myValues[to] = value;
+    }
+
+    /**
+     * Clears the value of a cell, for example when its agent dies.
+     * @param id the id of the cell
+     */
+    public void clear(int id) {
+        myValues[id] = 0;
+    }
+
+    /**
+     * Clears the value of every cell.
+     */
+    public void clear() {
+        Arrays.fill(myValues, 0);
+    }
+}
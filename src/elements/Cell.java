@@ -13,7 +13,7 @@ import java.util.List;
 public class Cell implements Comparable<Cell>{
     private int myState;
     private int myNextState;
-    private List<Cell> myNeighbors;
+    private Cell[] myNeighbors;
     private int myID;
     private boolean myIsAvailable;
     private Shape myShape;
@@ -62,10 +62,11 @@ public class Cell implements Comparable<Cell>{
 
     /**
      * Gets the neighbors of the current cell, used so that simulation classes can check the state of each cell's neighbors.
+     * The array is shared between calls, so it must not be modified.
      * @return the array of the neighbors of the current cell.
      */
     public Cell[] getMyNeighbors(){
-        return myNeighbors.toArray(new Cell[0]);
+        return myNeighbors;
     }
 
     /**
@@ -73,7 +74,7 @@ public class Cell implements Comparable<Cell>{
      * @param neighbors the list of neighbors this cell should add to as its neighbor
      */
     public void setMyNeighbors(List<Cell> neighbors) {
-        myNeighbors = neighbors;
+        myNeighbors = neighbors.toArray(new Cell[0]);
     }
 
     /**
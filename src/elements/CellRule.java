@@ -0,0 +1,44 @@
+package elements;
+
+/**
+ * This interface represents the rule of a simulation in which the next state of a cell only depends on its own state
+ * and on how many of its neighbors are in each state. Grid uses it to step a grid on SPARSE_STORAGE as a window on an
+ * unbounded universe, tile by tile, without a neighbor index.
+ * @author Sumer Vardhan
+ */
+public interface CellRule {
+
+    /**
+     * Gets the state of every cell of the universe that has never held anything else, such as the cells around the
+     * configured board. A cell in this state whose neighbors are all in it must stay in it.
+     * @return the background state
+     */
+    int getBackground();
+
+    /**
+     * Called before the cells of a tile are analyzed. Rules that draw random numbers start a stream of the tile here,
+     * so the result does not depend on the order the tiles are visited in.
+     * @param tileRow the row of the tile, in tiles
+     * @param tileCol the column of the tile, in tiles
+     */
+    default void beginTile(int tileRow, int tileCol) {
+    }
+
+    /**
+     * Gets the state a cell moves to on the next step. This may also be called outside of a tile, to check that the
+     * background stays quiet.
+     * @param state the current state of the cell
+     * @param neighborCounts the number of neighbors of the cell in each state, indexed by state; must not be changed
+     * @return the next state of the cell
+     */
+    int getNextState(int state, int[] neighborCounts);
+
+    /**
+     * Checks whether a cell can only change when it or one of its neighbors changed on the last step. Only the tiles
+     * near the last changes are analyzed for such rules; otherwise every tile that holds something is.
+     * @return true if cells only change after a change nearby
+     */
+    default boolean isChangeDriven() {
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package elements;
+
+import java.util.Arrays;
+
+/**
+ * This class holds a set of cell ids in the order they were added. Membership is tracked with a stamp per cell, so
+ * adding is constant time and clearing the set does not have to touch every cell of the grid.
+ * @author Sumer Vardhan
+ */
+public class CellSet {
+    private int[] myIDs;
+    private int mySize;
+    private final int[] myStamps;
+    private int myStamp;
+
+    /**
+     * Creates an empty set that can hold the ids of a grid of the given size.
+     * @param gridSize the number of cells in the grid
+     */
+    public CellSet(int gridSize) {
+        myIDs = new int[Math.min(gridSize, 1024)];
+        myStamps = new int[gridSize];
+        myStamp = 1;
+    }
+
+    /**
+     * Adds a cell to the set if it is not in it already.
+     * @param id the id of the cell
+     */
+    public void add(int id) {
+        if (myStamps[id] == myStamp) {
+            return;
+        }
+        myStamps[id] = myStamp;
+        if (mySize == myIDs.length) {
+            int[] grown = new int[Math.min(myStamps.length, Math.max(1, mySize * 2))];
+            System.arraycopy(myIDs, 0, grown, 0, mySize);
+            myIDs = grown;
+        }
+        myIDs[mySize++] = id;
+    }
+
+    /**
+     * Checks whether a cell is in the set.
+     * @param id the id of the cell
+     * @return true if the cell has been added since the set was last cleared
+     */
+    public boolean contains(int id) {
+        return myStamps[id] == myStamp;
+    }
+
+    /**
+     * Gets the id stored at a position of the set.
+     * @param i a position between 0 and size() - 1
+     * @return the id of the cell added i-th
+     */
+    public int get(int i) {
+        return myIDs[i];
+    }
+
+    /**
+     * Gets the number of cells in the set.
+     * @return the number of cells
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Removes every cell from the set.
+     */
+    public void clear() {
+        mySize = 0;
+        myStamp++;
+        if (myStamp == 0) {
+            Arrays.fill(myStamps, 0);
+            myStamp = 1;
+        }
+    }
+}
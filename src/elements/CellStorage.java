@@ -0,0 +1,72 @@
+package elements;
+
+/**
+ * This class stores the grid's state in Cell objects, one per cell. It is the original storage used by Grid and is
+ * the only storage that gives access to the Cell objects themselves.
+ * @author Sumer Vardhan
+ */
+public class CellStorage implements GridStorage {
+    private Cell[] myCells;
+
+    public CellStorage(Cell[] cells) {
+        myCells = cells;
+    }
+
+    /**
+     * Gets the Cell object with the given id.
+     * @param id the id of the cell
+     * @return the cell with that id
+     */
+    public Cell getCell(int id) {
+        return myCells[id];
+    }
+
+    @Override
+    public int getState(int id) {
+        return myCells[id].getState();
+    }
+
+    @Override
+    public void setState(int id, int state) {
+        myCells[id] = new Cell(state, id);
+    }
+
+    @Override
+    public int getNextState(int id) {
+        return myCells[id].getNextState();
+    }
+
+    @Override
+    public void setNextState(int id, int state) {
+        myCells[id].setMyNextState(state);
+    }
+
+    @Override
+    public void updateStates() {
+        for (Cell cell : myCells) {
+            cell.updateState();
+        }
+    }
+
+    @Override
+    public void updateState(int id) {
+        myCells[id].updateState();
+    }
+
+    @Override
+    public void updateStates(int fromId, int toId) {
+        for (int id = fromId; id < toId; id++) {
+            myCells[id].updateState();
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public int getSize() {
+        return myCells.length;
+    }
+}
@@ -4,71 +4,509 @@ import config.XMLSimulationParser;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * The grid class that holds all the cells for the Simulation. This class is configured by Game and used by Simulation
  * to run analysis on each cell, as well as by Visualzation in order to display the state to the user.
+ * The state of the cells is held by a GridStorage; simulations read and write it by cell id through the accessors of
+ * this class, so they run the same way on every storage.
  * @author Sumer Vardhan
  */
 public class Grid implements Iterable<Cell> {
+    public static final String CELL_STORAGE = "Cells";
+    public static final String PRIMITIVE_STORAGE = "Primitive";
+    public static final String SPARSE_STORAGE = "Sparse";
+    public static final String MAPPED_STORAGE = "Mapped";
+    public static final String DEFAULT_STORAGE_DIRECTORY = "data";
+
     private File myConfigFile;
     private XMLSimulationParser myXMLParser;
     private Scanner mySc;
     private String[] myCellColors;
-    private Set<Cell> myCells;
+    private Cell[] myCells;
+    private GridStorage myStorage;
+    private SparseTileStorage myUniverse;
+    private CellRule myUnboundedRule;
+    private NeighborhoodStencil myStencil;
+    private NeighborIndex myNeighbors;
+    private NeighborIndex myDependents;
+    private boolean myIsTrackingChanges;
+    private CellSet myTouchedCells;
+    private CellSet myChangedCells;
+    private CellSet myActiveCells;
+    private CellSet myNextActiveCells;
+    private boolean myIsEveryCellActive;
+    private boolean myIsInParallelStep;
+    private IdBuffer[] myBandTouchedCells = new IdBuffer[0];
+    private final ThreadLocal<IdBuffer> myBandBuffer = new ThreadLocal<>();
+    private IdBuffer[] myRangeChangedCells = new IdBuffer[0];
+    private int myCommitRangeSize;
+    private int myNumCommitCells;
+    private long myGeneration;
     private int myNumRows;
     private int myNumCols;
-    private String myNeighborConfiguration;
 
     public Grid(File file){
+        this(file, CELL_STORAGE);
+    }
+
+    /**
+     * Creates a grid whose states are held by the storage specified.
+     * @param file the simulation configuration file
+     * @param storageType either CELL_STORAGE, which keeps one Cell object per cell, PRIMITIVE_STORAGE, which keeps
+     * the states in primitive buffers and does not create Cell objects, or SPARSE_STORAGE, which only keeps the tiles
+     * that hold something other than the most common initial state, and lets simulations that give a CellRule step an
+     * unbounded universe of which the board is a window
+     */
+    public Grid(File file, String storageType){
+        this(file, storageType, new File(DEFAULT_STORAGE_DIRECTORY));
+    }
+
+    /**
+     * Creates a grid whose states are held by the storage specified, keeping file-backed storage in the given
+     * directory.
+     * @param file the simulation configuration file
+     * @param storageType one of the storage types accepted by Grid(File, String), or MAPPED_STORAGE, which keeps the
+     * states in a memory-mapped file of the configuration file, so the board persists between runs
+     * @param storageDirectory the directory that holds the files of MAPPED_STORAGE
+     */
+    public Grid(File file, String storageType, File storageDirectory){
+        this(file, storageType, storageDirectory, false);
+    }
+
+    /**
+     * Creates a grid whose states are held by the storage specified, and picks up the board the last run of the same
+     * configuration left in its file if asked to. Only MAPPED_STORAGE keeps boards between runs; the initial
+     * configuration is loaded whenever there is no board to restore.
+     * @param file the simulation configuration file
+     * @param storageType one of the storage types accepted by Grid(File, String, File)
+     * @param storageDirectory the directory that holds the files of MAPPED_STORAGE
+     * @param restore true to restore the board and generation of the last run
+     */
+    public Grid(File file, String storageType, File storageDirectory, boolean restore){
         myConfigFile = file;
         myXMLParser =  new XMLSimulationParser(myConfigFile);
         mySc = new Scanner(myXMLParser.getInitialGrid());
         myCellColors = myXMLParser.getColors();
         myNumRows = myXMLParser.getNumRows();
         myNumCols = myXMLParser.getNumCols();
-        myCells = new TreeSet<>();
+        myStencil = NeighborhoodStencil.compile(myXMLParser.getNeighborConfiguration());
+        if(storageType.equals(PRIMITIVE_STORAGE)){
+            myStorage = new PrimitiveStorage(myNumRows * myNumCols);
+        }
+        else if(storageType.equals(SPARSE_STORAGE)){
+            myUniverse = new SparseTileStorage(myNumRows, myNumCols, findMostCommonState(myXMLParser.getInitialGrid()));
+            myStorage = myUniverse;
+        }
+        else if(storageType.equals(MAPPED_STORAGE)){
+            storageDirectory.mkdirs();
+            myStorage = new MappedStorage(MappedStorage.getStorageFile(myConfigFile, storageDirectory), myNumRows,
+                    myNumCols, restore);
+        }
+        else {
+            myCells = new Cell[myNumRows * myNumCols];
+            myStorage = new CellStorage(myCells);
+        }
+        myGeneration = myStorage.getGeneration();
     }
 
     /**
      * Allows the Game class to configure the cells upon initialization
-     * @return the set of cells that currently populate the grid
+     * @return the list of cells that currently populate the grid, ordered by id; empty if the grid does not store
+     * Cell objects
      * @throws NoSuchElementException when the grid size is inconsistent, so there are rows specified in the XML that
      * cannot be populated.
      */
-    public Set<Cell> configureCells() throws NoSuchElementException{
+    public List<Cell> configureCells() throws NoSuchElementException{
         createGridOfCells();
         setCellNeighbors();
-        return myCells;
+        if(myCells == null){
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(myCells));
     }
 
     /**
-     * Gets individual cells in the grid according to Ids. This is used by the Simulation classes to analyze cells and
-     * by the Visualization
+     * Gets individual cells in the grid according to Ids. Cells are stored in an array indexed by id, so this is a
+     * constant-time lookup. Only grids that use CELL_STORAGE hold Cell objects; simulations should use the id based
+     * accessors such as getState and setNextState instead.
      * @param i the id of the cell that we want to get
-     * @return the cell at the id specified
+     * @return the cell at the id specified, or null if the id is outside of the grid
+     * @throws UnsupportedOperationException if the grid does not store Cell objects
      */
     public Cell getCell(int i){
-        for(Cell cell: myCells){
-            if(cell.getMyID() == i){
-                return cell;
+        checkHasCells();
+        if(i < 0 || i >= myCells.length){
+            return null;
+        }
+        return myCells[i];
+    }
+
+    /**
+     * Gets the cell at the given row and column of the grid.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the cell at the position specified, or null if the position is outside of the grid
+     * @throws UnsupportedOperationException if the grid does not store Cell objects
+     */
+    public Cell getCell(int row, int column){
+        checkHasCells();
+        if(row < 0 || row >= myNumRows || column < 0 || column >= myNumCols){
+            return null;
+        }
+        return myCells[toCellID(row, column)];
+    }
+
+    /**
+     * Gets the current state of the cell with the given id.
+     * @param id the id of the cell
+     * @return the integer that represents the state of the cell
+     */
+    public int getState(int id){
+        return myStorage.getState(id);
+    }
+
+    /**
+     * Gets the next state of the cell with the given id, as set so far during the current step.
+     * @param id the id of the cell
+     * @return the integer that represents the next state of the cell
+     */
+    public int getNextState(int id){
+        return myStorage.getNextState(id);
+    }
+
+    /**
+     * Sets the state that the cell with the given id will move to when the grid is updated.
+     * @param id the id of the cell
+     * @param state the integer that represents the next state of the cell
+     */
+    public void setNextState(int id, int state){
+        myStorage.setNextState(id, state);
+        if(!myIsTrackingChanges){
+            return;
+        }
+        if(myIsInParallelStep){
+            IdBuffer touchedCells = myBandBuffer.get();
+            if(touchedCells == null){
+                throw new IllegalStateException("Cells set during a parallel step must be set from runBand");
+            }
+            touchedCells.add(id);
+        }
+        else {
+            myTouchedCells.add(id);
+        }
+    }
+
+    /**
+     * Moves every cell to its next state; used by Simulation once all the cells have been analyzed. When the grid
+     * tracks changes only the cells that were set are compared and only the ones that changed are written, so the
+     * update costs as much as the changes.
+     */
+    public void updateStates(){
+        if(myUnboundedRule != null){
+            updateUniverse();
+            return;
+        }
+        if(!myIsTrackingChanges){
+            beginUpdate();
+            myStorage.updateStates();
+            return;
+        }
+        int numRanges = beginCommit(Math.max(1, myTouchedCells.size()));
+        for(int range = 0; range < numRanges; range++){
+            commitRange(range);
+        }
+        endCommit();
+    }
+
+    /**
+     * Starts an update that is split into ranges which can be committed from several threads at once, and moves the
+     * grid to the next generation. Every range must then be committed with commitRange before endCommit is called.
+     * When the grid tracks changes the ranges split the cells that were set on this step, and otherwise they split
+     * every cell of the grid. Only available when the grid supports parallel steps, or when it tracks changes.
+     * @param rangeSize the number of cells in a range
+     * @return the number of ranges to commit
+     */
+    public int beginCommit(int rangeSize){
+        beginUpdate();
+        myCommitRangeSize = rangeSize;
+        myNumCommitCells = myIsTrackingChanges ? myTouchedCells.size() : getSize();
+        int numRanges = (int) (((long) myNumCommitCells + rangeSize - 1) / rangeSize);
+        if(myIsTrackingChanges){
+            myRangeChangedCells = ensureBuffers(myRangeChangedCells, numRanges);
+        }
+        return numRanges;
+    }
+
+    /**
+     * Moves the cells of one range of the current commit to their next state. Distinct ranges can be committed from
+     * several threads at once.
+     * @param range a range between 0 and the number returned by beginCommit - 1
+     */
+    public void commitRange(int range){
+        int from = range * myCommitRangeSize;
+        int to = (int) Math.min(myNumCommitCells, (long) from + myCommitRangeSize);
+        if(!myIsTrackingChanges){
+            myStorage.updateStates(from, to);
+            return;
+        }
+        IdBuffer changedCells = myRangeChangedCells[range];
+        for(int i = from; i < to; i++){
+            int id = myTouchedCells.get(i);
+            if(myStorage.getNextState(id) != myStorage.getState(id)){
+                myStorage.updateState(id);
+                changedCells.add(id);
+            }
+        }
+    }
+
+    /**
+     * Ends a commit started with beginCommit once every range has been committed. When the grid tracks changes, the
+     * cells that changed are gathered in the order they were set, and the cells to analyze on the next step are found.
+     */
+    public void endCommit(){
+        if(!myIsTrackingChanges){
+            return;
+        }
+        myTouchedCells.clear();
+        myChangedCells.clear();
+        NeighborIndex dependents = getDependents();
+        for(IdBuffer changedCells : myRangeChangedCells){
+            for(int i = 0; i < changedCells.size(); i++){
+                int id = changedCells.get(i);
+                myChangedCells.add(id);
+                myNextActiveCells.add(id);
+                for(int k = dependents.getStart(id); k < dependents.getEnd(id); k++){
+                    myNextActiveCells.add(dependents.getNeighbor(k));
+                }
+            }
+            changedCells.clear();
+        }
+        CellSet swap = myActiveCells;
+        myActiveCells = myNextActiveCells;
+        myNextActiveCells = swap;
+        myNextActiveCells.clear();
+        myIsEveryCellActive = false;
+    }
+
+    /**
+     * Makes the grid step as a window on an unbounded universe, if it can: the cells around the board then exist too,
+     * start in the background state of the rule, and can be reached by what leaves the board. Steps are analyzed by
+     * analyzeUnbounded and committed by updateStates, neither of which needs the neighbor index. Only SPARSE_STORAGE
+     * holds a universe, and only for rules that keep a background cell surrounded by background cells unchanged and
+     * neighborhoods that reach no further than a tile. Must be called before the first step.
+     * @param rule the rule of every cell of the universe
+     * @return true if the grid now steps as an unbounded universe, false if it stays bounded
+     */
+    public boolean setUnboundedRule(CellRule rule){
+        if(myUniverse == null || myStencil.getReach() > SparseTileStorage.TILE_SIZE){
+            return false;
+        }
+        int[] counts = new int[Byte.MAX_VALUE + 1];
+        counts[rule.getBackground()] = myStencil.size();
+        if(rule.getNextState(rule.getBackground(), counts) != rule.getBackground()){
+            return false;
+        }
+        myUniverse.setBackground(rule.getBackground());
+        myUnboundedRule = rule;
+        return true;
+    }
+
+    /**
+     * Checks whether the grid steps as a window on an unbounded universe.
+     * @return true if a rule was accepted by setUnboundedRule
+     */
+    public boolean isUnbounded(){
+        return myUnboundedRule != null;
+    }
+
+    /**
+     * Sets the next state of every cell of the universe that changes on this step, by the rule given to
+     * setUnboundedRule. Only the tiles near the last changes are visited, so the step costs as much as the changes.
+     */
+    public void analyzeUnbounded(){
+        myUniverse.analyze(myStencil, myUnboundedRule);
+    }
+
+    /**
+     * Checks whether simulations can set the next state of distinct cells from several threads at once.
+     * @return true if the storage of the grid can be written concurrently
+     */
+    public boolean supportsParallelSteps(){
+        return myStorage.supportsConcurrentWrites();
+    }
+
+    /**
+     * Marks the start of a step whose cells are set from several threads, each of which runs its bands with runBand.
+     * Every band records the cells it sets in a buffer of its own, and the buffers are gathered in band order when
+     * endParallelStep is called, so the grid knows the same cells were set as if the bands had run one after another.
+     * @param numBands the number of bands of the step
+     */
+    public void beginParallelStep(int numBands){
+        myIsInParallelStep = true;
+        if(myIsTrackingChanges){
+            myBandTouchedCells = ensureBuffers(myBandTouchedCells, numBands);
+        }
+    }
+
+    /**
+     * Runs one band of a step started with beginParallelStep on the calling thread, recording the cells it sets.
+     * @param band the band, between 0 and the number of bands of the step - 1
+     * @param action the action that analyzes a band, which is given the band
+     */
+    public void runBand(int band, IntConsumer action){
+        if(!myIsTrackingChanges){
+            action.accept(band);
+            return;
+        }
+        myBandBuffer.set(myBandTouchedCells[band]);
+        try {
+            action.accept(band);
+        }
+        finally {
+            myBandBuffer.remove();
+        }
+    }
+
+    /**
+     * Marks the end of a step started with beginParallelStep, once every band has run.
+     */
+    public void endParallelStep(){
+        myIsInParallelStep = false;
+        if(!myIsTrackingChanges){
+            return;
+        }
+        for(IdBuffer touchedCells : myBandTouchedCells){
+            for(int i = 0; i < touchedCells.size(); i++){
+                myTouchedCells.add(touchedCells.get(i));
             }
+            touchedCells.clear();
+        }
+    }
+
+    /**
+     * Gets the number of updates the grid has gone through, counting those of the run it was restored from.
+     * @return the current generation, 0 for the initial configuration
+     */
+    public long getGeneration(){
+        return myGeneration;
+    }
+
+    /**
+     * Records the generation the grid is at after its states were changed without an update, such as by a jump ahead.
+     * @param generation the generation of the grid
+     */
+    public void setGeneration(long generation){
+        myGeneration = generation;
+        myStorage.setGeneration(generation);
+    }
+
+    /**
+     * Checks whether the grid holds the board of an earlier run instead of its initial configuration.
+     * @return true if the board was restored
+     */
+    public boolean isRestored(){
+        return myStorage.isRestored();
+    }
+
+    /**
+     * Releases the file that holds the states, if any. The grid must not be used afterwards.
+     */
+    public void close(){
+        myStorage.close();
+    }
+
+    /**
+     * Turns change tracking on or off. While it is on, the grid records which cells change on every update, and the
+     * cells that have to be analyzed on the next step are the changed cells and the cells that have them as a
+     * neighbor. Only simulations whose cells cannot change unless their neighborhood did should rely on the active
+     * cells. Right after tracking is turned on every cell is active.
+     * @param value true to track changes
+     */
+    public void setChangeTracking(boolean value){
+        myIsTrackingChanges = value;
+        myIsEveryCellActive = true;
+        if(value && myTouchedCells == null){
+            myTouchedCells = new CellSet(getSize());
+            myChangedCells = new CellSet(getSize());
+            myActiveCells = new CellSet(getSize());
+            myNextActiveCells = new CellSet(getSize());
+        }
+    }
+
+    /**
+     * Checks whether the grid records the cells that change on every update.
+     * @return true if change tracking is on
+     */
+    public boolean isTrackingChanges(){
+        return myIsTrackingChanges;
+    }
+
+    /**
+     * Gets the cells that have to be analyzed on the current step.
+     * @return the set of active cells, or null if every cell is active, which is always the case when change tracking
+     * is off
+     */
+    public CellSet getActiveCells(){
+        if(!myIsTrackingChanges || myIsEveryCellActive){
+            return null;
+        }
+        return myActiveCells;
+    }
+
+    /**
+     * Gets the cells whose state changed on the last update.
+     * @return the set of changed cells, or null if change tracking is off
+     */
+    public CellSet getChangedCells(){
+        return myIsTrackingChanges ? myChangedCells : null;
+    }
+
+    /**
+     * Gets the index that holds the neighbors of every cell, which simulations iterate over to check the state of each
+     * cell's neighbors without allocating. This is built the first time it is needed, so grids that are only read and
+     * written by id never pay for it.
+     * @return the neighbor index of the grid
+     */
+    public NeighborIndex getNeighbors(){
+        if(myNeighbors == null){
+            myNeighbors = new NeighborIndex(myStencil, myNumRows, myNumCols);
+        }
+        return myNeighbors;
+    }
+
+    /**
+     * Gets the reverse of the neighbor index: for every cell, the cells that have it as a neighbor. This is built the
+     * first time it is needed.
+     * @return the index of the cells whose neighborhood contains each cell
+     */
+    public NeighborIndex getDependents(){
+        if(myDependents == null){
+            myDependents = getNeighbors().transpose();
         }
-        return null;
+        return myDependents;
+    }
+
+    /**
+     * Gets the neighborhood pattern shared by every cell of the grid, compiled from the configuration file.
+     * @return the stencil of row and column offsets of the neighbors
+     */
+    public NeighborhoodStencil getStencil(){
+        return myStencil;
     }
 
     /**
-     * Gets all the empty cells in the grid, which is useful for the Segregation simulation because this allows the
-     * Segregation simulation to randomly choose the empty cells to move to.
-     * @return the list of empty cells currently in the grid.
+     * Gets the ids of all the empty cells in the grid, which is useful for the Segregation simulation because this
+     * allows the Segregation simulation to randomly choose the empty cells to move to.
+     * @return the list of ids of the empty cells currently in the grid.
      */
-    public List<Cell> getEmptyCells(){
-        List<Cell> emptyCells = new ArrayList<>();
-        int i = 0;
-        for(Cell cell : myCells){
-            if(cell.getState() == 0)
+    public List<Integer> getEmptyCellIDs(){
+        List<Integer> emptyCells = new ArrayList<>();
+        for(int id = 0; id < getSize(); id++){
+            if(getState(id) == 0)
             {
-                emptyCells.add(cell);
+                emptyCells.add(id);
             }
         }
 
@@ -102,31 +540,49 @@ public class Grid implements Iterable<Cell> {
 
     private void createGridOfCells() throws NoSuchElementException {
         int id = 0;
-        while(mySc.hasNext()){
-            for (int i = 0; i < myNumRows; i++){
-                for (int j = 0; j < myNumCols; j++){
-                        int state = mySc.nextInt();
-                        myCells.add(new Cell(state, id));
-                        id++;
+        for (int i = 0; i < myNumRows; i++){
+            for (int j = 0; j < myNumCols; j++){
+                int state = mySc.nextInt();
+                if(!myStorage.isRestored()){
+                    myStorage.setState(id, state);
                 }
+                id++;
             }
         }
+        if(mySc.hasNextInt()){
+            throw new NoSuchElementException("The initial grid has more cells than its rows and columns allow");
+        }
     }
 
     private void setCellNeighbors() {
-        for(Cell cell: this){
-            List<Cell> neighbors = null;
-            int cell_row = cell.getMyID()/(myNumCols);
-            int cell_column = cell.getMyID()%(myNumRows);
-            neighbors = checkNeighborsForCell(cell_row, cell_column);
-            cell.setMyNeighbors(neighbors);
-            if (cell.getMyID() == 37) {
-                for(Cell neighbor: cell.getMyNeighbors()) {
-                }
+        if(myCells == null){
+            return;
+        }
+        NeighborIndex neighborIndex = getNeighbors();
+        for(int id = 0; id < getSize(); id++){
+            List<Cell> neighbors = new ArrayList<>();
+            for(int k = neighborIndex.getStart(id); k < neighborIndex.getEnd(id); k++){
+                neighbors.add(myCells[neighborIndex.getNeighbor(k)]);
             }
+            myCells[id].setMyNeighbors(neighbors);
         }
     }
 
+    private int findMostCommonState(String initialGrid) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        Scanner sc = new Scanner(initialGrid);
+        while(sc.hasNextInt()){
+            counts.merge(sc.nextInt(), 1, Integer::sum);
+        }
+        int mostCommon = 0;
+        for(Map.Entry<Integer, Integer> entry : counts.entrySet()){
+            if(entry.getValue() > counts.getOrDefault(mostCommon, 0)){
+                mostCommon = entry.getKey();
+            }
+        }
+        return mostCommon;
+    }
+
     /**
      * Gets the configuration file of the Grid, which is useful for the simulation classes to be able to create a
      * parser object off the file
@@ -148,38 +604,81 @@ public class Grid implements Iterable<Cell> {
     /**
      * Creates an iterator that allows for iterating over all the cells
      * @return the Iterator that allows for iterating over each of the cell in the grid
+     * @throws UnsupportedOperationException if the grid does not store Cell objects
      */
     @Override
     public Iterator<Cell> iterator() {
-        return this.myCells.iterator();
+        checkHasCells();
+        return Arrays.asList(myCells).iterator();
+    }
+
+    private void checkHasCells(){
+        if(myCells == null){
+            throw new UnsupportedOperationException("This grid does not store Cell objects");
+        }
+    }
+
+    // commits a step of the universe and records the cells of the window that changed
+    private void updateUniverse(){
+        beginUpdate();
+        myUniverse.updateStates();
+        if(!myIsTrackingChanges){
+            return;
+        }
+        myChangedCells.clear();
+        for(int i = 0; i < myUniverse.getNumChangedCells(); i++){
+            int row = myUniverse.getChangedRow(i);
+            int column = myUniverse.getChangedColumn(i);
+            if(row >= 0 && row < myNumRows && column >= 0 && column < myNumCols){
+                myChangedCells.add(toCellID(row, column));
+            }
+        }
+    }
+
+    private void beginUpdate(){
+        myGeneration++;
+        myStorage.beginUpdate(myGeneration);
+    }
+
+    private static IdBuffer[] ensureBuffers(IdBuffer[] buffers, int count){
+        if(buffers.length >= count){
+            return buffers;
+        }
+        IdBuffer[] grown = Arrays.copyOf(buffers, count);
+        for(int i = buffers.length; i < count; i++){
+            grown[i] = new IdBuffer();
+        }
+        return grown;
     }
 
     private int toCellID(int row, int column){
         return row*myNumCols + column;
     }
 
-    //This class takes pattern as input from xml
-    private List<Cell> checkNeighborsForCell(int row, int column){
-        //The "pattern" around the cell in question used to determine its neighborhood comes from config
-        int original_column = column;
-        int original_row = row;
-        ArrayList<Cell> neighbors = new ArrayList<>();
-        myNeighborConfiguration = myXMLParser.getNeighborConfiguration();
-        Scanner sc = new Scanner(myNeighborConfiguration);
-        while(sc.hasNextInt()){
-            int row_modifier = sc.nextInt();
-            int col_modifier = sc.nextInt();
-            row = original_row + row_modifier;
-            int number_of_neighbors_in_row = sc.nextInt();
-            for(int i = 0; i < number_of_neighbors_in_row; i++){
-                column = original_column + col_modifier + i;
-                if(column > -1 && column < myNumCols && row > -1 && row < myNumRows) {
-                    if(column != original_column || row != original_row) {
-                        neighbors.add(getCell(toCellID(row, column)));
-                    }
-                }
+    /**
+     * A list of cell ids that one thread fills while others fill lists of their own.
+     */
+    private static final class IdBuffer {
+        private int[] myIDs = new int[16];
+        private int mySize;
+
+        private void add(int id){
+            if(mySize == myIDs.length){
+                myIDs = Arrays.copyOf(myIDs, mySize * 2);
             }
+            myIDs[mySize++] = id;
+        }
+
+        private int get(int i){
+            return myIDs[i];
+        }
+
+        private int size(){
+            return mySize;
+        }
+
+        private void clear(){
+            mySize = 0;
         }
-        return neighbors;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package elements;
+
+import java.util.Arrays;
+
+/**
+ * This class holds a copy of the states of a grid at one generation, so the grid can be drawn on one thread while it
+ * keeps being stepped on another. Along with the states it holds the cells that changed since the snapshot before it,
+ * when they are known, so drawing it only has to look at those cells.
+ *
+ * A snapshot is filled again and again with capture rather than being created for every generation, so it is only
+ * safe to read between being handed over and being given back; SimulationRunner takes care of that. Since it still
+ * holds the previous state when it is filled again, only the cells that changed are copied when they are known, so
+ * publishing a state costs as much as the changes rather than the whole grid. States are kept in a byte per cell, like
+ * PrimitiveStorage, and must fit in one (0 to 127).
+ * @author Sumer Vardhan
+ */
+public class GridSnapshot {
+    private final byte[] myStates;
+    private long myGeneration;
+    private int[] myChangedCells;
+    private int myNumChangedCells;
+    private boolean myAreChangesKnown;
+
+    /**
+     * Creates an empty snapshot for a grid of the given size.
+     * @param gridSize the number of cells in the grid
+     */
+    public GridSnapshot(int gridSize) {
+        myStates = new byte[gridSize];
+        myChangedCells = new int[Math.min(gridSize, 1024)];
+    }
+
+    /**
+     * Copies the current states of a grid into the snapshot. When the changed cells are given, only they are copied, so
+     * the snapshot must hold the state of the grid as it was before those changes.
+     * @param grid the grid to copy, which must have the size the snapshot was created with
+     * @param generation the generation of the grid
+     * @param changedCells the cells that changed since the state the snapshot holds, or null if they are not known, in
+     * which case every cell is copied
+     */
+    public void capture(Grid grid, long generation, CellSet changedCells) {
+        myGeneration = generation;
+        myAreChangesKnown = changedCells != null;
+        myNumChangedCells = 0;
+        if (changedCells == null) {
+            for (int id = 0; id < myStates.length; id++) {
+                myStates[id] = (byte) grid.getState(id);
+            }
+            return;
+        }
+        if (changedCells.size() > myChangedCells.length) {
+            int capacity = Math.max(changedCells.size(), 2 * myChangedCells.length);
+            myChangedCells = Arrays.copyOf(myChangedCells, capacity);
+        }
+        for (int i = 0; i < changedCells.size(); i++) {
+            int id = changedCells.get(i);
+            myChangedCells[i] = id;
+            myStates[id] = (byte) grid.getState(id);
+        }
+        myNumChangedCells = changedCells.size();
+    }
+
+    /**
+     * Gets the state a cell had when the snapshot was captured.
+     * @param id the id of the cell
+     * @return the state of the cell
+     */
+    public int getState(int id) {
+        return myStates[id];
+    }
+
+    /**
+     * Gets the number of cells of the grid.
+     * @return the size of the grid
+     */
+    public int getSize() {
+        return myStates.length;
+    }
+
+    /**
+     * Gets the generation the grid was at when the snapshot was captured.
+     * @return the generation of the snapshot
+     */
+    public long getGeneration() {
+        return myGeneration;
+    }
+
+    /**
+     * Checks whether the snapshot knows which cells changed since the previous snapshot. When it does not, every cell
+     * may have changed.
+     * @return true if only the cells given by getChangedCell can differ from the previous snapshot
+     */
+    public boolean areChangesKnown() {
+        return myAreChangesKnown;
+    }
+
+    /**
+     * Gets the number of cells that changed since the previous snapshot.
+     * @return the number of changed cells, 0 if the changes are not known
+     */
+    public int getNumChangedCells() {
+        return myNumChangedCells;
+    }
+
+    /**
+     * Gets the id of the i-th cell that changed since the previous snapshot.
+     * @param i a position between 0 and getNumChangedCells() - 1
+     * @return the id of the changed cell
+     */
+    public int getChangedCell(int i) {
+        return myChangedCells[i];
+    }
+}
@@ -0,0 +1,120 @@
+package elements;
+
+/**
+ * This interface represents the storage that holds the state of every cell in a Grid. Grid delegates all of its state
+ * accessors to a GridStorage, which lets the same Simulation classes run on top of Cell objects or on top of more
+ * compact representations. Cells are always addressed by their id, which is row * numCols + column.
+ * @author Sumer Vardhan
+ */
+public interface GridStorage {
+
+    /**
+     * Gets the current state of a cell.
+     * @param id the id of the cell
+     * @return the integer that represents the current state of the cell
+     */
+    int getState(int id);
+
+    /**
+     * Sets both the current and the next state of a cell; used by Grid to load the initial configuration.
+     * @param id the id of the cell
+     * @param state the state the cell should start with
+     */
+    void setState(int id, int state);
+
+    /**
+     * Gets the state the cell will move to on the next call to updateStates.
+     * @param id the id of the cell
+     * @return the next state of the cell
+     */
+    int getNextState(int id);
+
+    /**
+     * Sets the state the cell will move to on the next call to updateStates.
+     * @param id the id of the cell
+     * @param state the next state of the cell
+     */
+    void setNextState(int id, int state);
+
+    /**
+     * Called by Grid once every next state of a step has been set, before the cells are moved to their next state with
+     * updateStates, updateState or updateStates(int, int). Storages that keep the board in a file make the whole next
+     * state current here in one step, so the file never holds a half updated board. Between this call and the calls
+     * that move the cells, a cell that changed may read as either its old or its new state, but it always differs
+     * from its next state.
+     * @param generation the generation the grid reaches with this update
+     */
+    default void beginUpdate(long generation) {
+    }
+
+    /**
+     * Moves every cell to its next state.
+     */
+    void updateStates();
+
+    /**
+     * Moves one cell to its next state, leaving every other cell as it is. Grid uses this when it knows which cells
+     * changed on a step, so committing the step costs as much as the changes rather than the whole grid. Distinct cells
+     * can be moved from several threads at once when the storage supports concurrent writes.
+     * @param id the id of the cell
+     */
+    void updateState(int id);
+
+    /**
+     * Moves the cells with ids from fromId up to toId to their next state. Distinct ranges can be moved from several
+     * threads at once. Only storages that support concurrent writes implement this.
+     * @param fromId the id of the first cell to move
+     * @param toId one past the id of the last cell to move
+     * @throws UnsupportedOperationException if the storage does not support concurrent writes
+     */
+    default void updateStates(int fromId, int toId) {
+        throw new UnsupportedOperationException("This storage can only be updated as a whole");
+    }
+
+    /**
+     * Checks whether several threads can set the next state of distinct cells at the same time, and update distinct
+     * ranges of cells with updateStates(int, int).
+     * @return true if the storage can be written concurrently
+     */
+    default boolean supportsConcurrentWrites() {
+        return false;
+    }
+
+    /**
+     * Checks whether the storage already held a board when it was created, such as a file-backed storage reopened
+     * after an earlier run. Grid does not load the initial configuration into a restored storage.
+     * @return true if the state was picked up from an earlier run
+     */
+    default boolean isRestored() {
+        return false;
+    }
+
+    /**
+     * Gets the generation the board of a restored storage was saved at.
+     * @return the saved generation, 0 if the storage was not restored
+     */
+    default long getGeneration() {
+        return 0;
+    }
+
+    /**
+     * Records the generation the grid is at when it changes without an update, such as after a jump ahead. Storages
+     * that do not keep the board between runs ignore it.
+     * @param generation the generation of the grid
+     */
+    default void setGeneration(long generation) {
+    }
+
+    /**
+     * Releases what the storage holds outside of the Java heap, such as a mapped file. The storage must not be used
+     * afterwards.
+     */
+    default void close() {
+    }
+
+    /**
+     * Gets the number of cells held by the storage.
+     * @return the number of cells
+     */
+    int getSize();
+}
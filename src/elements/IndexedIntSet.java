@@ -0,0 +1,105 @@
+package elements;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class holds a set of cell ids that supports adding, removing and picking a random member in constant time. The
+ * ids are kept packed in an array, and every cell remembers its position in that array, so a removed id is replaced by
+ * the last one. Simulations use it to keep lists of agents or of vacant cells, so that iterating over them touches
+ * only the members instead of the whole grid. The order of the members changes as ids are removed.
+ * @author Sumer Vardhan
+ */
+public class IndexedIntSet {
+    private static final int ABSENT = -1;
+
+    private int[] myIDs;
+    private int mySize;
+    private final int[] myPositions;
+
+    /**
+     * Creates an empty set that can hold the ids of a grid of the given size.
+     * @param gridSize the number of cells in the grid
+     */
+    public IndexedIntSet(int gridSize) {
+        myIDs = new int[Math.min(gridSize, 1024)];
+        myPositions = new int[gridSize];
+        Arrays.fill(myPositions, ABSENT);
+    }
+
+    /**
+     * Adds a cell to the set if it is not in it already.
+     * @param id the id of the cell
+     */
+    public void add(int id) {
+        if (myPositions[id] != ABSENT) {
+            return;
+        }
+        if (mySize == myIDs.length) {
+            myIDs = Arrays.copyOf(myIDs, Math.min(myPositions.length, Math.max(1, mySize * 2)));
+        }
+        myPositions[id] = mySize;
+        myIDs[mySize++] = id;
+    }
+
+    /**
+     * Removes a cell from the set if it is in it, moving the last member into its position.
+     * @param id the id of the cell
+     */
+    public void remove(int id) {
+        int position = myPositions[id];
+        if (position == ABSENT) {
+            return;
+        }
+        int last = myIDs[--mySize];
+        myIDs[position] = last;
+        myPositions[last] = position;
+        myPositions[id] = ABSENT;
+    }
+
+    /**
+     * Checks whether a cell is in the set.
+     * @param id the id of the cell
+     * @return true if the cell is in the set
+     */
+    public boolean contains(int id) {
+        return myPositions[id] != ABSENT;
+    }
+
+    /**
+     * Gets the id stored at a position of the set.
+     * @param i a position between 0 and size() - 1
+     * @return the id at that position
+     */
+    public int get(int i) {
+        return myIDs[i];
+    }
+
+    /**
+     * Picks a member of the set uniformly at random.
+     * @param random the random number generator to draw from
+     * @return the id of a member of the set, which must not be empty
+     */
+    public int getRandom(SplittableRandom random) {
+        return myIDs[random.nextInt(mySize)];
+    }
+
+    /**
+     * Gets the number of cells in the set.
+     * @return the number of cells
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Copies the members of the set, in their current order, to the start of an array. Used to take a snapshot that
+     * stays the same while the set changes.
+     * @param destination an array with room for size() ids
+     * @return the number of ids copied
+     */
+    public int copyTo(int[] destination) {
+        System.arraycopy(myIDs, 0, destination, 0, mySize);
+        return mySize;
+    }
+}
@@ -0,0 +1,266 @@
+package elements;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class stores the grid's state in a memory-mapped file instead of on the Java heap. The file holds a small
+ * header and the current and next state buffers, so the operating system pages the board in and out as needed and
+ * the garbage collector never sees the states, however large the board is. Only the states are kept off the heap: the
+ * neighbor index, its reverse and the change tracking sets of Grid still take tens of bytes per cell on the heap once
+ * a simulation asks for them.
+ *
+ * Every configuration file has a storage file of its own, named after the full path and the contents of the
+ * configuration, so editing a configuration or loading one of the same name from another directory starts another
+ * board. A board is only picked up from an earlier run when it is asked to be restored; otherwise the initial
+ * configuration is loaded over it. The header records the generation of the board along with which buffer is current,
+ * in one write, and an update fills the next buffer before making it current, so the file holds a whole generation
+ * whenever the program stops. Pages are not forced to the disk on every step, so a crash of the whole machine may lose
+ * the latest generations.
+ *
+ * Files larger than one mapping allows are mapped as several chunks. States must fit in a byte (0 to 127).
+ * @author Sumer Vardhan
+ */
+public class MappedStorage implements GridStorage {
+    private static final int MAGIC = 0x43454C4C;
+    private static final int HEADER_BYTES = 64;
+    private static final int ROWS_OFFSET = 4;
+    private static final int COLS_OFFSET = 8;
+    private static final int COMMIT_OFFSET = 16;
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final int COPY_BLOCK_SIZE = 1 << 16;
+    private static final int KEY_BYTES = 8;
+
+    private MappedByteBuffer[] myChunks;
+    private final int mySize;
+    private final boolean myIsRestored;
+    private final byte[] myBlock = new byte[COPY_BLOCK_SIZE];
+    private final ThreadLocal<byte[]> myBandBlocks = ThreadLocal.withInitial(() -> new byte[COPY_BLOCK_SIZE]);
+    private int myCurrentBuffer;
+    private long myStatesStart;
+    private long myNextStatesStart;
+
+    /**
+     * Maps the given file, creating it if it does not exist. If restore is true and the file already holds a board
+     * with the same number of rows and columns, that board and its generation are kept; otherwise the file is resized
+     * and cleared, and the grid loads its initial configuration into it.
+     * @param file the file that holds the board
+     * @param numRows the number of rows of the grid
+     * @param numCols the number of columns of the grid
+     * @param restore true to pick up the board of an earlier run
+     * @throws UncheckedIOException if the file cannot be created or mapped
+     */
+    public MappedStorage(File file, int numRows, int numCols, boolean restore) {
+        mySize = numRows * numCols;
+        long fileSize = HEADER_BYTES + 2L * mySize;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean isCompatible = restore && channel.size() == fileSize;
+            if (!isCompatible) {
+                channel.truncate(0);
+            }
+            myChunks = new MappedByteBuffer[(int) ((fileSize + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < myChunks.length; i++) {
+                long start = (long) i << CHUNK_BITS;
+                myChunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                        Math.min(CHUNK_SIZE, fileSize - start));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MappedByteBuffer header = myChunks[0];
+        myIsRestored = restore && header.getInt(0) == MAGIC && header.getInt(ROWS_OFFSET) == numRows
+                && header.getInt(COLS_OFFSET) == numCols;
+        if (!myIsRestored) {
+            header.putInt(0, MAGIC);
+            header.putInt(ROWS_OFFSET, numRows);
+            header.putInt(COLS_OFFSET, numCols);
+            header.putLong(COMMIT_OFFSET, 0);
+        }
+        setBuffers((int) (header.getLong(COMMIT_OFFSET) & 1));
+        if (myIsRestored) {
+            copy(myStatesStart, myNextStatesStart, mySize, myBlock);
+        }
+    }
+
+    /**
+     * Gets the file that holds the board of a configuration file. The name is made of the name of the configuration
+     * and a hash of its full path and contents, so every version of every configuration has a board of its own.
+     * @param configFile the simulation configuration file
+     * @param directory the directory that holds the boards
+     * @return the file of the board, which may not exist yet
+     * @throws UncheckedIOException if the configuration file cannot be read
+     */
+    public static File getStorageFile(File configFile, File directory) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(configFile.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(configFile.toPath()));
+            StringBuilder key = new StringBuilder();
+            byte[] hash = digest.digest();
+            for (int i = 0; i < KEY_BYTES; i++) {
+                key.append(String.format("%02x", hash[i]));
+            }
+            return new File(directory, configFile.getName().replaceFirst("\\.xml$", "") + "-" + key + ".grid");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether the state was picked up from an earlier run, in which case Grid does not load the initial
+     * configuration into it.
+     * @return true if the board of an earlier run was asked for and the file held one of the same dimensions
+     */
+    @Override
+    public boolean isRestored() {
+        return myIsRestored;
+    }
+
+    @Override
+    public long getGeneration() {
+        return myChunks[0].getLong(COMMIT_OFFSET) >>> 1;
+    }
+
+    @Override
+    public void setGeneration(long generation) {
+        myChunks[0].putLong(COMMIT_OFFSET, generation << 1 | myCurrentBuffer);
+    }
+
+    @Override
+    public int getState(int id) {
+        return getByte(myStatesStart + id);
+    }
+
+    @Override
+    public void setState(int id, int state) {
+        if (state < 0 || state > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("State " + state + " does not fit in mapped storage");
+        }
+        putByte(myStatesStart + id, (byte) state);
+        putByte(myNextStatesStart + id, (byte) state);
+    }
+
+    @Override
+    public int getNextState(int id) {
+        return getByte(myNextStatesStart + id);
+    }
+
+    @Override
+    public void setNextState(int id, int state) {
+        putByte(myNextStatesStart + id, (byte) state);
+    }
+
+    /**
+     * Makes the next buffer, which holds the whole next generation, the current one, by recording it in the header
+     * along with the generation in a single write. The buffer that was current becomes the next one and is brought up
+     * to date by the calls that move the cells.
+     */
+    @Override
+    public void beginUpdate(long generation) {
+        setBuffers(1 - myCurrentBuffer);
+        setGeneration(generation);
+    }
+
+    /**
+     * Copies the new current state into the next buffer.
+     */
+    @Override
+    public void updateStates() {
+        copy(myStatesStart, myNextStatesStart, mySize, myBlock);
+    }
+
+    @Override
+    public void updateState(int id) {
+        putByte(myNextStatesStart + id, getByte(myStatesStart + id));
+    }
+
+    /**
+     * Copies the new current states of the range into the next buffer, which leaves both buffers equal just like
+     * updateStates does for the whole grid. Bands are committed on several threads at once, so each thread copies
+     * through a block of its own.
+     */
+    @Override
+    public void updateStates(int fromId, int toId) {
+        copy(myStatesStart + fromId, myNextStatesStart + fromId, toId - fromId, myBandBlocks.get());
+    }
+
+    /**
+     * Writes the board to the disk and unmaps the file. The file stays mapped until the buffers are garbage collected
+     * if the running Java does not let them be unmapped right away.
+     */
+    @Override
+    public void close() {
+        if (myChunks == null) {
+            return;
+        }
+        MappedByteBuffer[] chunks = myChunks;
+        myChunks = null;
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            for (MappedByteBuffer chunk : chunks) {
+                invokeCleaner.invoke(unsafeField.get(null), chunk);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the buffers are unmapped once they are garbage collected
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public int getSize() {
+        return mySize;
+    }
+
+    private void setBuffers(int current) {
+        myCurrentBuffer = current;
+        myStatesStart = HEADER_BYTES + (long) current * mySize;
+        myNextStatesStart = HEADER_BYTES + (long) (1 - current) * mySize;
+    }
+
+    private byte getByte(long position) {
+        return myChunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    private void putByte(long position, byte value) {
+        myChunks[(int) (position >>> CHUNK_BITS)].put((int) (position & (CHUNK_SIZE - 1)), value);
+    }
+
+    private void copy(long from, long to, long length, byte[] block) {
+        while (length > 0) {
+            int count = (int) Math.min(length, COPY_BLOCK_SIZE);
+            count = Math.min(count, (int) (CHUNK_SIZE - (from & (CHUNK_SIZE - 1))));
+            count = Math.min(count, (int) (CHUNK_SIZE - (to & (CHUNK_SIZE - 1))));
+            myChunks[(int) (from >>> CHUNK_BITS)].get((int) (from & (CHUNK_SIZE - 1)), block, 0, count);
+            myChunks[(int) (to >>> CHUNK_BITS)].put((int) (to & (CHUNK_SIZE - 1)), block, 0, count);
+            from += count;
+            to += count;
+            length -= count;
+        }
+    }
+}
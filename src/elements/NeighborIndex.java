@@ -0,0 +1,125 @@
+package elements;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the neighbors of every cell of a grid in two flat int arrays, in compressed sparse row form: the
+ * neighbors of the cell with id i are the ids stored at positions getStart(i) to getEnd(i) - 1. Simulations iterate over
+ * it with a plain index loop, so looking up neighbors never allocates.
+ * @author Sumer Vardhan
+ */
+public class NeighborIndex {
+    private final int[] myOffsets;
+    private final int[] myNeighbors;
+
+    /**
+     * Builds the index for a grid that does not wrap around its edges; offsets that fall outside of the grid are left
+     * out.
+     * @param stencil the neighborhood pattern used by every cell
+     * @param numRows the number of rows in the grid
+     * @param numCols the number of columns in the grid
+     */
+    public NeighborIndex(NeighborhoodStencil stencil, int numRows, int numCols) {
+        int size = numRows * numCols;
+        myOffsets = new int[size + 1];
+        int count = 0;
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                count += countInside(stencil, row, col, numRows, numCols);
+                myOffsets[row * numCols + col + 1] = count;
+            }
+        }
+        myNeighbors = new int[count];
+        int next = 0;
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                for (int i = 0; i < stencil.size(); i++) {
+                    int neighborRow = row + stencil.getRowOffset(i);
+                    int neighborCol = col + stencil.getColOffset(i);
+                    if (isInside(neighborRow, neighborCol, numRows, numCols)) {
+                        myNeighbors[next++] = neighborRow * numCols + neighborCol;
+                    }
+                }
+            }
+        }
+    }
+
+    private NeighborIndex(int[] offsets, int[] neighbors) {
+        myOffsets = offsets;
+        myNeighbors = neighbors;
+    }
+
+    /**
+     * Builds the reverse of this index: for every cell, the cells that have it as a neighbor. The two are the same for
+     * symmetric neighborhoods, but configurations such as the hexagonal one list offsets in one direction only.
+     * @return the index of the cells whose neighborhood contains each cell
+     */
+    public NeighborIndex transpose() {
+        int size = myOffsets.length - 1;
+        int[] offsets = new int[size + 1];
+        for (int neighbor : myNeighbors) {
+            offsets[neighbor + 1]++;
+        }
+        for (int id = 0; id < size; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        int[] next = Arrays.copyOf(offsets, size);
+        int[] dependents = new int[myNeighbors.length];
+        for (int id = 0; id < size; id++) {
+            for (int k = myOffsets[id]; k < myOffsets[id + 1]; k++) {
+                dependents[next[myNeighbors[k]]++] = id;
+            }
+        }
+        return new NeighborIndex(offsets, dependents);
+    }
+
+    /**
+     * Gets the position of the first neighbor of a cell.
+     * @param id the id of the cell
+     * @return the position to pass to getNeighbor for the first neighbor of the cell
+     */
+    public int getStart(int id) {
+        return myOffsets[id];
+    }
+
+    /**
+     * Gets the position just after the last neighbor of a cell.
+     * @param id the id of the cell
+     * @return the position at which the neighbors of the cell end
+     */
+    public int getEnd(int id) {
+        return myOffsets[id + 1];
+    }
+
+    /**
+     * Gets the id of the neighbor stored at a position of the index.
+     * @param position a position between getStart(id) and getEnd(id) - 1 of some cell
+     * @return the id of the neighbor
+     */
+    public int getNeighbor(int position) {
+        return myNeighbors[position];
+    }
+
+    /**
+     * Gets the number of neighbors of a cell.
+     * @param id the id of the cell
+     * @return the number of neighbors that lie inside of the grid
+     */
+    public int getNumNeighbors(int id) {
+        return myOffsets[id + 1] - myOffsets[id];
+    }
+
+    private static int countInside(NeighborhoodStencil stencil, int row, int col, int numRows, int numCols) {
+        int count = 0;
+        for (int i = 0; i < stencil.size(); i++) {
+            if (isInside(row + stencil.getRowOffset(i), col + stencil.getColOffset(i), numRows, numCols)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isInside(int row, int col, int numRows, int numCols) {
+        return row > -1 && row < numRows && col > -1 && col < numCols;
+    }
+}
@@ -0,0 +1,127 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * This class represents the neighborhood pattern of a simulation as a fixed list of row and column offsets. It is
+ * compiled once from the neighbor_configuration of the simulation file, which lists groups of three numbers: the row
+ * offset, the column offset of the first neighbor in that row, and the number of consecutive neighbors in that row.
+ * The offset of the cell itself is never part of the stencil. Instances are immutable.
+ * @author Sumer Vardhan
+ */
+public class NeighborhoodStencil {
+    private final int[] myRowOffsets;
+    private final int[] myColOffsets;
+
+    private NeighborhoodStencil(int[] rowOffsets, int[] colOffsets) {
+        myRowOffsets = rowOffsets;
+        myColOffsets = colOffsets;
+    }
+
+    /**
+     * Compiles a neighbor configuration string into a stencil.
+     * @param neighborConfiguration the neighbor configuration as written in the simulation file
+     * @return the stencil holding the offsets of every neighbor, in the order they are listed
+     */
+    public static NeighborhoodStencil compile(String neighborConfiguration) {
+        List<int[]> offsets = new ArrayList<>();
+        Scanner sc = new Scanner(neighborConfiguration);
+        while (sc.hasNextInt()) {
+            int rowModifier = sc.nextInt();
+            int colModifier = sc.nextInt();
+            int numberOfNeighborsInRow = sc.nextInt();
+            for (int i = 0; i < numberOfNeighborsInRow; i++) {
+                if (rowModifier != 0 || colModifier + i != 0) {
+                    offsets.add(new int[]{rowModifier, colModifier + i});
+                }
+            }
+        }
+        int[] rowOffsets = new int[offsets.size()];
+        int[] colOffsets = new int[offsets.size()];
+        for (int i = 0; i < offsets.size(); i++) {
+            rowOffsets[i] = offsets.get(i)[0];
+            colOffsets[i] = offsets.get(i)[1];
+        }
+        return new NeighborhoodStencil(rowOffsets, colOffsets);
+    }
+
+    /**
+     * Checks whether the stencil is the standard Moore neighborhood, the eight cells that touch the cell on a side or
+     * a corner, each listed once. Simulations use this to pick engines specialized for that neighborhood.
+     * @return true if the stencil is exactly the Moore neighborhood
+     */
+    public boolean isMoore() {
+        if (size() != 8) {
+            return false;
+        }
+        boolean[] seen = new boolean[9];
+        for (int i = 0; i < size(); i++) {
+            int dr = myRowOffsets[i];
+            int dc = myColOffsets[i];
+            if (dr < -1 || dr > 1 || dc < -1 || dc > 1 || seen[(dr + 1) * 3 + dc + 1]) {
+                return false;
+            }
+            seen[(dr + 1) * 3 + dc + 1] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the neighbor relation of the stencil is symmetric, which is the case when the opposite of every
+     * offset is in the stencil too. On a symmetric stencil a cell is a neighbor of each of its neighbors, so
+     * neighborhoods can be treated as undirected connections.
+     * @return true if the opposite of every offset is also an offset of the stencil
+     */
+    public boolean isSymmetric() {
+        for (int i = 0; i < size(); i++) {
+            boolean hasOpposite = false;
+            for (int j = 0; j < size() && !hasOpposite; j++) {
+                hasOpposite = myRowOffsets[j] == -myRowOffsets[i] && myColOffsets[j] == -myColOffsets[i];
+            }
+            if (!hasOpposite) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets how far the stencil reaches: the largest row or column offset of any neighbor, ignoring its sign.
+     * @return the reach of the stencil, 0 if it has no offsets
+     */
+    public int getReach() {
+        int reach = 0;
+        for (int i = 0; i < size(); i++) {
+            reach = Math.max(reach, Math.max(Math.abs(myRowOffsets[i]), Math.abs(myColOffsets[i])));
+        }
+        return reach;
+    }
+
+    /**
+     * Gets the number of offsets in the stencil, which is the most neighbors any cell can have.
+     * @return the number of offsets
+     */
+    public int size() {
+        return myRowOffsets.length;
+    }
+
+    /**
+     * Gets the row offset of the i-th neighbor.
+     * @param i the index of the neighbor in the stencil
+     * @return the number of rows between the cell and that neighbor
+     */
+    public int getRowOffset(int i) {
+        return myRowOffsets[i];
+    }
+
+    /**
+     * Gets the column offset of the i-th neighbor.
+     * @param i the index of the neighbor in the stencil
+     * @return the number of columns between the cell and that neighbor
+     */
+    public int getColOffset(int i) {
+        return myColOffsets[i];
+    }
+}
@@ -0,0 +1,74 @@
+package elements;
+
+/**
+ * This class stores the grid's state as two primitive byte buffers, one for the current state and one for the next
+ * state, instead of one Cell object per cell. This takes two bytes per cell, which allows grids of tens of
+ * millions of cells to fit on the heap. States must fit in a byte (0 to 127).
+ * @author Sumer Vardhan
+ */
+public class PrimitiveStorage implements GridStorage {
+    private final byte[] myStates;
+    private final byte[] myNextStates;
+
+    public PrimitiveStorage(int size) {
+        myStates = new byte[size];
+        myNextStates = new byte[size];
+    }
+
+    @Override
+    public int getState(int id) {
+        return myStates[id];
+    }
+
+    @Override
+    public void setState(int id, int state) {
+        if (state < 0 || state > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("State " + state + " does not fit in primitive storage");
+        }
+        myStates[id] = (byte) state;
+        myNextStates[id] = (byte) state;
+    }
+
+    @Override
+    public int getNextState(int id) {
+        return myNextStates[id];
+    }
+
+    @Override
+    public void setNextState(int id, int state) {
+        myNextStates[id] = (byte) state;
+    }
+
+    /**
+     * Copies the next states into the current buffer in bulk, which leaves both buffers equal, since simulations only
+     * write the next state of the cells that change.
+     */
+    @Override
+    public void updateStates() {
+        System.arraycopy(myNextStates, 0, myStates, 0, myStates.length);
+    }
+
+    @Override
+    public void updateState(int id) {
+        myStates[id] = myNextStates[id];
+    }
+
+    /**
+     * Copies the next states of the range into the current buffer, which leaves both buffers equal just like
+     * updateStates does for the whole grid.
+     */
+    @Override
+    public void updateStates(int fromId, int toId) {
+        System.arraycopy(myNextStates, fromId, myStates, fromId, toId - fromId);
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public int getSize() {
+        return myStates.length;
+    }
+}
@@ -0,0 +1,461 @@
+package elements;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class stores the grid's state sparsely, in square tiles that are kept in a hash map keyed by tile coordinate.
+ * A tile is only allocated once one of its cells holds something other than the background state, and it is freed
+ * again as soon as all of its cells are back to the background state, so the memory taken by the states grows with
+ * the live content of the board rather than with its area.
+ *
+ * The tiles cover an unbounded universe: any int row and column can be read and written, and the configured board is
+ * the window of rows 0 to numRows - 1 and columns 0 to numCols - 1 of it, which the id accessors address like on every
+ * other storage. Simulations whose rule is a CellRule are stepped by analyze, which works on tiles directly instead of
+ * the neighbor index of Grid, so their patterns can leave the window and travel as far as they go while the memory
+ * stays proportional to what they hold. Only the tiles near the last changes are analyzed, through a padded copy of
+ * the tile and the edges of its neighbors, and a tile with no stored neighbors is skipped, because the rule keeps the
+ * background quiet.
+ *
+ * Simulations that go through the neighbor index of Grid instead are confined to the window, and since the index and
+ * the change tracking sets of Grid are as large as the window, on them this storage saves less than it seems and
+ * costs a hash lookup per access.
+ * @author Sumer Vardhan
+ */
+public class SparseTileStorage implements GridStorage {
+    public static final int TILE_BITS = 6;
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int CELLS_PER_TILE = TILE_SIZE * TILE_SIZE;
+    private static final int NUM_STATES = Byte.MAX_VALUE + 1;
+
+    private final Map<Long, Tile> myTiles;
+    private final int myNumRows;
+    private final int myNumCols;
+    private byte myBackground;
+    private Set<Long> myLastChangedTiles;
+    private Set<Long> myStepTiles = new HashSet<>();
+    private long[] myChangedCells = new long[64];
+    private int myNumChangedCells;
+    private boolean myIsAnalyzed;
+    private final Tile[] myNeighborhood = new Tile[9];
+    private final int[] myCounts = new int[NUM_STATES];
+    private byte[] myPadded = new byte[0];
+
+    /**
+     * Creates an empty board where every cell is in the background state.
+     * @param numRows the number of rows of the configured board
+     * @param numCols the number of columns of the configured board
+     * @param background the state of every cell that is not stored, usually the most common state of the simulation
+     */
+    public SparseTileStorage(int numRows, int numCols, int background) {
+        checkFits(background);
+        myTiles = new HashMap<>();
+        myNumRows = numRows;
+        myNumCols = numCols;
+        myBackground = (byte) background;
+    }
+
+    /**
+     * Gets the number of tiles currently allocated, which is proportional to the memory used by the board.
+     * @return the number of allocated tiles
+     */
+    public int getNumTiles() {
+        return myTiles.size();
+    }
+
+    /**
+     * Gets the state of every cell that is not stored.
+     * @return the background state
+     */
+    public int getBackground() {
+        return myBackground;
+    }
+
+    /**
+     * Changes the background state. The cells of the window keep their states, so the ones that were in the old
+     * background are stored from now on, while every cell outside the window that was in the old background moves to
+     * the new one. Meant to be called once the board is loaded, before it is stepped.
+     * @param background the new background state
+     */
+    public void setBackground(int background) {
+        checkFits(background);
+        if (background == myBackground) {
+            return;
+        }
+        byte oldBackground = myBackground;
+        Map<Long, Tile> tiles = new HashMap<>(myTiles);
+        myTiles.clear();
+        myBackground = (byte) background;
+        for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+            int firstRow = toTileRow(entry.getKey()) << TILE_BITS;
+            int firstCol = toTileCol(entry.getKey()) << TILE_BITS;
+            for (int offset = 0; offset < CELLS_PER_TILE; offset++) {
+                int row = firstRow + (offset >> TILE_BITS);
+                int column = firstCol + (offset & TILE_MASK);
+                boolean isInWindow = row >= 0 && row < myNumRows && column >= 0 && column < myNumCols;
+                setState(row, column, rebase(entry.getValue().myStates[offset], oldBackground, isInWindow));
+                setNextState(row, column, rebase(entry.getValue().myNextStates[offset], oldBackground, isInWindow));
+            }
+        }
+        for (int row = 0; row < myNumRows; row++) {
+            for (int column = 0; column < myNumCols; column++) {
+                if (!tiles.containsKey(toTileKey(row, column))) {
+                    setState(row, column, oldBackground);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the current state of any cell of the universe.
+     * @param row the row of the cell, which may be outside the window
+     * @param column the column of the cell, which may be outside the window
+     * @return the current state of the cell
+     */
+    public int getState(int row, int column) {
+        Tile tile = myTiles.get(toTileKey(row, column));
+        return tile == null ? myBackground : tile.myStates[toOffset(row, column)];
+    }
+
+    /**
+     * Sets both the current and the next state of any cell of the universe.
+     * @param row the row of the cell, which may be outside the window
+     * @param column the column of the cell, which may be outside the window
+     * @param state the state of the cell
+     */
+    public void setState(int row, int column, int state) {
+        checkFits(state);
+        myLastChangedTiles = null;
+        Tile tile = state == myBackground ? myTiles.get(toTileKey(row, column)) : getOrCreateTile(row, column);
+        if (tile != null) {
+            tile.setState(toOffset(row, column), (byte) state, myBackground);
+            tile.setNextState(toOffset(row, column), (byte) state, myBackground);
+        }
+    }
+
+    /**
+     * Gets the next state of any cell of the universe.
+     * @param row the row of the cell, which may be outside the window
+     * @param column the column of the cell, which may be outside the window
+     * @return the next state of the cell
+     */
+    public int getNextState(int row, int column) {
+        Tile tile = myTiles.get(toTileKey(row, column));
+        return tile == null ? myBackground : tile.myNextStates[toOffset(row, column)];
+    }
+
+    /**
+     * Sets the next state of any cell of the universe.
+     * @param row the row of the cell, which may be outside the window
+     * @param column the column of the cell, which may be outside the window
+     * @param state the next state of the cell
+     */
+    public void setNextState(int row, int column, int state) {
+        checkFits(state);
+        myLastChangedTiles = null;
+        Tile tile = state == myBackground ? myTiles.get(toTileKey(row, column)) : getOrCreateTile(row, column);
+        if (tile != null) {
+            tile.setNextState(toOffset(row, column), (byte) state, myBackground);
+        }
+    }
+
+    /**
+     * Sets the next state of every cell of the universe that the rule changes on this step, to be committed by
+     * updateStates. On the first step, and on every step of a rule that is not change driven, every tile that holds
+     * something is analyzed along with its neighbors; otherwise only the tiles that changed on the last step and their
+     * neighbors are. The next states of the cells must equal their states when this is called, as they do after every
+     * update.
+     * @param stencil the neighborhood of every cell, which must not reach further than TILE_SIZE
+     * @param rule the rule that gives the next state of a cell, which must keep the background quiet
+     * @throws IllegalArgumentException if the stencil reaches further than TILE_SIZE
+     */
+    public void analyze(NeighborhoodStencil stencil, CellRule rule) {
+        int reach = stencil.getReach();
+        if (reach > TILE_SIZE) {
+            throw new IllegalArgumentException("Neighborhoods that reach further than a tile cannot be analyzed");
+        }
+        int width = TILE_SIZE + 2 * reach;
+        if (myPadded.length != width * width) {
+            myPadded = new byte[width * width];
+        }
+        int[] offsets = new int[stencil.size()];
+        for (int k = 0; k < offsets.length; k++) {
+            offsets[k] = stencil.getRowOffset(k) * width + stencil.getColOffset(k);
+        }
+        myNumChangedCells = 0;
+        myStepTiles.clear();
+        for (long key : findActiveTiles(rule)) {
+            if (fillPadded(key, reach, width)) {
+                analyzeTile(key, rule, reach, width, offsets);
+            }
+        }
+        myIsAnalyzed = true;
+    }
+
+    /**
+     * Gets the number of cells that changed on the last step committed after analyze, inside and outside the window.
+     * @return the number of changed cells
+     */
+    public int getNumChangedCells() {
+        return myNumChangedCells;
+    }
+
+    /**
+     * Gets the row of a cell that changed on the last step committed after analyze.
+     * @param i a position between 0 and getNumChangedCells() - 1
+     * @return the row of the cell
+     */
+    public int getChangedRow(int i) {
+        return (int) (myChangedCells[i] >> 32);
+    }
+
+    /**
+     * Gets the column of a cell that changed on the last step committed after analyze.
+     * @param i a position between 0 and getNumChangedCells() - 1
+     * @return the column of the cell
+     */
+    public int getChangedColumn(int i) {
+        return (int) myChangedCells[i];
+    }
+
+    @Override
+    public int getState(int id) {
+        return getState(id / myNumCols, id % myNumCols);
+    }
+
+    @Override
+    public void setState(int id, int state) {
+        setState(id / myNumCols, id % myNumCols, state);
+    }
+
+    @Override
+    public int getNextState(int id) {
+        return getNextState(id / myNumCols, id % myNumCols);
+    }
+
+    @Override
+    public void setNextState(int id, int state) {
+        setNextState(id / myNumCols, id % myNumCols, state);
+    }
+
+    /**
+     * Moves every allocated tile to its next state and frees the tiles that only hold the background state. A step
+     * set by analyze only moves the cells that changed.
+     */
+    @Override
+    public void updateStates() {
+        if (myIsAnalyzed) {
+            commitAnalyzedStep();
+            return;
+        }
+        myLastChangedTiles = null;
+        Iterator<Tile> tiles = myTiles.values().iterator();
+        while (tiles.hasNext()) {
+            Tile tile = tiles.next();
+            System.arraycopy(tile.myNextStates, 0, tile.myStates, 0, CELLS_PER_TILE);
+            tile.myNumForeground = tile.myNumNextForeground;
+            if (tile.isBackground()) {
+                tiles.remove();
+            }
+        }
+    }
+
+    /**
+     * Moves one cell to its next state, and frees its tile if that leaves the tile with only the background state.
+     */
+    @Override
+    public void updateState(int id) {
+        int row = id / myNumCols;
+        int column = id % myNumCols;
+        long key = toTileKey(row, column);
+        myLastChangedTiles = null;
+        Tile tile = myTiles.get(key);
+        if (tile == null) {
+            return;
+        }
+        int offset = toOffset(row, column);
+        tile.setState(offset, tile.myNextStates[offset], myBackground);
+        if (tile.isBackground()) {
+            myTiles.remove(key);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return myNumRows * myNumCols;
+    }
+
+    private int rebase(byte state, byte oldBackground, boolean isInWindow) {
+        return state == oldBackground && !isInWindow ? myBackground : state;
+    }
+
+    private Tile getOrCreateTile(int row, int column) {
+        return myTiles.computeIfAbsent(toTileKey(row, column), key -> new Tile(myBackground));
+    }
+
+    // the tiles that changed on the last step and their neighbors, or every stored tile and its neighbors
+    private Set<Long> findActiveTiles(CellRule rule) {
+        Collection<Long> sources = myLastChangedTiles == null || !rule.isChangeDriven() ? myTiles.keySet()
+                : myLastChangedTiles;
+        Set<Long> activeTiles = new HashSet<>();
+        for (long key : sources) {
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    activeTiles.add(toKey(toTileRow(key) + dr, toTileCol(key) + dc));
+                }
+            }
+        }
+        return activeTiles;
+    }
+
+    // copies a tile and the cells of its neighbors within reach into the padded buffer, unless none of them is stored
+    private boolean fillPadded(long key, int reach, int width) {
+        boolean isStored = false;
+        for (int i = 0; i < myNeighborhood.length; i++) {
+            myNeighborhood[i] = myTiles.get(toKey(toTileRow(key) + i / 3 - 1, toTileCol(key) + i % 3 - 1));
+            isStored |= myNeighborhood[i] != null;
+        }
+        if (!isStored) {
+            return false;
+        }
+        for (int i = 0; i < myNeighborhood.length; i++) {
+            int dr = i / 3 - 1;
+            int dc = i % 3 - 1;
+            int fromRow = dr < 0 ? TILE_SIZE - reach : 0;
+            int toRow = dr > 0 ? reach : TILE_SIZE;
+            int fromCol = dc < 0 ? TILE_SIZE - reach : 0;
+            int length = (dc > 0 ? reach : TILE_SIZE) - fromCol;
+            for (int row = fromRow; row < toRow; row++) {
+                int target = (reach + dr * TILE_SIZE + row) * width + reach + dc * TILE_SIZE + fromCol;
+                if (myNeighborhood[i] == null) {
+                    Arrays.fill(myPadded, target, target + length, myBackground);
+                } else {
+                    System.arraycopy(myNeighborhood[i].myStates, (row << TILE_BITS) + fromCol, myPadded, target,
+                            length);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void analyzeTile(long key, CellRule rule, int reach, int width, int[] offsets) {
+        int firstRow = toTileRow(key) << TILE_BITS;
+        int firstCol = toTileCol(key) << TILE_BITS;
+        Tile tile = myTiles.get(key);
+        rule.beginTile(toTileRow(key), toTileCol(key));
+        for (int offset = 0; offset < CELLS_PER_TILE; offset++) {
+            int center = ((offset >> TILE_BITS) + reach) * width + (offset & TILE_MASK) + reach;
+            int state = myPadded[center];
+            for (int neighbor : offsets) {
+                myCounts[myPadded[center + neighbor]]++;
+            }
+            int next = rule.getNextState(state, myCounts);
+            for (int neighbor : offsets) {
+                myCounts[myPadded[center + neighbor]] = 0;
+            }
+            if (next == state) {
+                continue;
+            }
+            checkFits(next);
+            if (tile == null) {
+                tile = new Tile(myBackground);
+                myTiles.put(key, tile);
+            }
+            tile.setNextState(offset, (byte) next, myBackground);
+            myStepTiles.add(key);
+            if (myNumChangedCells == myChangedCells.length) {
+                myChangedCells = Arrays.copyOf(myChangedCells, myNumChangedCells * 2);
+            }
+            myChangedCells[myNumChangedCells++] = toCell(firstRow + (offset >> TILE_BITS),
+                    firstCol + (offset & TILE_MASK));
+        }
+    }
+
+    // moves the cells analyze changed, frees the tiles they left with only the background and remembers the tiles
+    private void commitAnalyzedStep() {
+        for (int i = 0; i < myNumChangedCells; i++) {
+            int row = getChangedRow(i);
+            int column = getChangedColumn(i);
+            Tile tile = myTiles.get(toTileKey(row, column));
+            int offset = toOffset(row, column);
+            tile.setState(offset, tile.myNextStates[offset], myBackground);
+        }
+        for (long key : myStepTiles) {
+            if (myTiles.get(key).isBackground()) {
+                myTiles.remove(key);
+            }
+        }
+        Set<Long> swap = myLastChangedTiles == null ? new HashSet<>() : myLastChangedTiles;
+        myLastChangedTiles = myStepTiles;
+        myStepTiles = swap;
+        myStepTiles.clear();
+        myIsAnalyzed = false;
+    }
+
+    private static long toTileKey(int row, int column) {
+        return toKey(row >> TILE_BITS, column >> TILE_BITS);
+    }
+
+    private static long toKey(int tileRow, int tileCol) {
+        return ((long) tileRow << 32) | (tileCol & 0xffffffffL);
+    }
+
+    private static int toTileRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int toTileCol(long key) {
+        return (int) key;
+    }
+
+    private static long toCell(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static int toOffset(int row, int column) {
+        return ((row & TILE_MASK) << TILE_BITS) | (column & TILE_MASK);
+    }
+
+    private static void checkFits(int state) {
+        if (state < 0 || state > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("State " + state + " does not fit in sparse storage");
+        }
+    }
+
+    /**
+     * A TILE_SIZE by TILE_SIZE block of cells, with the same current and next buffers as PrimitiveStorage. The tile
+     * counts the cells of each buffer that are not in the background state, so it knows when it can be freed.
+     */
+    private static final class Tile {
+        private final byte[] myStates = new byte[CELLS_PER_TILE];
+        private final byte[] myNextStates = new byte[CELLS_PER_TILE];
+        private int myNumForeground;
+        private int myNumNextForeground;
+
+        private Tile(byte background) {
+            Arrays.fill(myStates, background);
+            Arrays.fill(myNextStates, background);
+        }
+
+        private void setState(int offset, byte state, byte background) {
+            myNumForeground += (state != background ? 1 : 0) - (myStates[offset] != background ? 1 : 0);
+            myStates[offset] = state;
+        }
+
+        private void setNextState(int offset, byte state, byte background) {
+            myNumNextForeground += (state != background ? 1 : 0) - (myNextStates[offset] != background ? 1 : 0);
+            myNextStates[offset] = state;
+        }
+
+        private boolean isBackground() {
+            return myNumForeground == 0 && myNumNextForeground == 0;
+        }
+    }
+}
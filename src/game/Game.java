@@ -5,19 +5,21 @@ import config.XMLGameParser;
 import config.XMLGenerator;
 import config.XMLSimulationParser;
 import simulation.GameOfLifeSimulation;
+import simulation.ParallelStepper;
 import simulation.PercolationSimulation;
 import simulation.PredatorPreySimulation;
 import simulation.SegregationSimulation;
+import simulation.SimulationRunner;
 import simulation.SpreadingOfFireSimulation;
+import simulation.TotalisticSimulation;
 import simulation.Simulation;
 
 import elements.Grid;
+import elements.GridSnapshot;
 import javafx.stage.FileChooser;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 import java.io.File;
 import java.util.NoSuchElementException;
@@ -27,17 +29,29 @@ import java.util.ResourceBundle;
  * This class represents an instance of the Game, which is the entire Cellular Automata simulation. The class's purpose
  * is the main controller that is in charge of creating different instances of Simulations, Visualizations, Grid, etc.
  * and manage the passage of information between them.
+ *
+ * The simulation is stepped by a SimulationRunner on a thread of its own, at a target number of generations per second
+ * or as fast as possible in turbo mode. An AnimationTimer shows the latest state it published on every frame, so the
+ * interface stays responsive however long a step takes. The runner is stopped, and its thread has ended, before another
+ * simulation is loaded, and if a step fails the simulation stops and the user is told why. When the grid keeps its
+ * states in a file, the board the last run of a configuration left there is only picked up when the user asks to
+ * resume it; loading a configuration always starts from its initial grid.
  * @author Ha Nguyen
  * @author Sumer Vardhan
  * @author Shreya Hurli
  */
 public class Game {
     private static final String GAME_PROPERTIES = "GameProperties";
-    private int myFramesPerSecond = 1;
-    private int myMillisecondDelay = 1000 / myFramesPerSecond;
+    private static final double MAX_GENERATIONS_PER_SECOND = 1 << 12;
+    private double myGenerationsPerSecond = 1;
+    private boolean myIsTurbo;
     private Visualization myVisualization;
     private Simulation mySimulation;
-    private Timeline myTimeline;
+    private ParallelStepper myParallelStepper;
+    private SimulationRunner myRunner;
+    private Grid myGrid;
+    private File myCurrentFile;
+    private AnimationTimer myAnimationTimer;
     private String[] mySimulationButtons;
     private Stage myStage;
     private XMLSimulationParser mySimulationParser;
@@ -45,9 +59,17 @@ public class Game {
 
     public Game(Stage stage) {
         myResources = ResourceBundle.getBundle(GAME_PROPERTIES);
+        if (Boolean.parseBoolean(myResources.getString("ParallelStepping"))) {
+            myParallelStepper = new ParallelStepper();
+        }
 
         myStage = stage;
-        myTimeline = new Timeline();
+        myAnimationTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                showLatestSnapshot();
+            }
+        };
         File gameConfig = new File("Resources/GameConfig.xml");
         if (! XMLException.isValidGameSchema(gameConfig)) {
             System.exit(0);
@@ -68,91 +90,145 @@ public class Game {
      * @param file the file to be loaded as picked on the UI
      */
     protected void loadSimulation(File file) {
-        File simulationFile=null;
-        if (XMLException.isValidSimulationSchema(file)) {
-            simulationFile = file;
-        } else {
-            XMLException.showInvalidSimulationAlert(myResources);
+        loadSimulation(file, false);
+    }
+
+    /**
+     * This method allows the Visualization class to pick up the simulation that is loaded from where its last run
+     * stopped, if the grid keeps its states in a file. Otherwise the simulation starts over from its initial grid.
+     */
+    protected void resumeSavedSimulation() {
+        if (myCurrentFile != null) {
+            loadSimulation(myCurrentFile, true);
         }
+    }
 
-        Grid grid = new Grid(simulationFile);
+    private void loadSimulation(File file, boolean restore) {
+        if (file == null) {
+            return;
+        }
+        if (!XMLException.isValidSimulationSchema(file)) {
+            XMLException.showInvalidSimulationAlert(myResources);
+            return;
+        }
+        // a grid of the file that is already loaded would keep its states in the same file as the old grid
+        if (myCurrentFile != null && file.getAbsoluteFile().equals(myCurrentFile.getAbsoluteFile())) {
+            stopRunner();
+            mySimulation = null;
+            closeGrid();
+        }
 
+        Grid grid = new Grid(file, myResources.getString("GridStorage"),
+                new File(myResources.getString("MappedStorageDirectory")), restore);
         try {
             grid.configureCells();
         } catch (NoSuchElementException e) {
+            grid.close();
             XMLException.showGridInconsistencyAlert(myResources);
             return;
         }
-        mySimulation = null;
-        mySimulationParser = new XMLSimulationParser(simulationFile);
-        if (mySimulationParser.getSimulationType().equals(myResources.getString("GameOfLife"))) {
-            mySimulation = new GameOfLifeSimulation(grid);
-        } else if (mySimulationParser.getSimulationType().equals(myResources.getString("Segregation"))) {
-            mySimulation = new SegregationSimulation(grid);
-        } else if (mySimulationParser.getSimulationType().equals(myResources.getString("PredatorAndPrey"))) {
-            mySimulation = new PredatorPreySimulation(grid);
-        } else if (mySimulationParser.getSimulationType().equals(myResources.getString("SpreadingOfFire"))) {
-            mySimulation = new SpreadingOfFireSimulation(grid);
-        } else if (mySimulationParser.getSimulationType().equals(myResources.getString("Percolation"))) {
-            mySimulation = new PercolationSimulation(grid);
+        grid.setChangeTracking(Boolean.parseBoolean(myResources.getString("ChangeTracking")));
+        XMLSimulationParser simulationParser = new XMLSimulationParser(file);
+        Simulation simulation = null;
+        if (simulationParser.getSimulationType().equals(myResources.getString("GameOfLife"))) {
+            simulation = new GameOfLifeSimulation(grid);
+        } else if (simulationParser.getSimulationType().equals(myResources.getString("Segregation"))) {
+            simulation = new SegregationSimulation(grid);
+        } else if (simulationParser.getSimulationType().equals(myResources.getString("PredatorAndPrey"))) {
+            simulation = new PredatorPreySimulation(grid);
+        } else if (simulationParser.getSimulationType().equals(myResources.getString("SpreadingOfFire"))) {
+            simulation = new SpreadingOfFireSimulation(grid);
+        } else if (simulationParser.getSimulationType().equals(myResources.getString("Percolation"))) {
+            simulation = new PercolationSimulation(grid);
+        } else if (simulationParser.getSimulationType().equals(myResources.getString("Totalistic"))) {
+            simulation = new TotalisticSimulation(grid);
         }
+        if (simulation != null) {
+            simulation.setRandomSeed(Long.parseLong(myResources.getString("RandomSeed")));
+            simulation.setParallelStepper(myParallelStepper);
+        }
+
+        stopRunner();
+        closeGrid();
+        myGrid = grid;
+        myCurrentFile = file;
+        mySimulationParser = simulationParser;
+        mySimulation = simulation;
         myVisualization.showSimulationScene(grid);
-        setGameLoop();
+        if (mySimulation != null) {
+            myRunner = new SimulationRunner(mySimulation, myParallelStepper);
+            myRunner.setGenerationsPerSecond(myGenerationsPerSecond);
+            myRunner.setTurbo(myIsTurbo);
+            myRunner.start();
+            myAnimationTimer.start();
+        }
     }
 
     /**
      * This method allows the Visualization class to load the Intro scene when the Home button is clicked
      */
     protected void loadIntro() {
-        myTimeline.getKeyFrames().clear();
-        myTimeline.stop();
+        stopRunner();
+        closeGrid();
         myVisualization.showIntroScene();
     }
 
     /**
-     * This method allows the Visualization class to adjust the speed of the simulation.
-     * @param value the value to speed up or slow down the simulation by
+     * This method allows the Visualization class to adjust the speed of the simulation. Every click doubles or halves
+     * the number of generations stepped per second, between 1 and MAX_GENERATIONS_PER_SECOND.
+     * @param value the number of times to double the speed, negative to slow the simulation down
      */
     protected void adjustSimulationSpeed(int value) {
-        myTimeline.stop();
-        myTimeline.getKeyFrames().clear();
-        myFramesPerSecond += value;
-        if(myFramesPerSecond < 1){
-            myFramesPerSecond = 1;
-        }
-        myMillisecondDelay = 1000 / myFramesPerSecond;
-        var frame = new KeyFrame(Duration.millis(myMillisecondDelay), e -> playGameLoop());
-        myTimeline.setCycleCount(Timeline.INDEFINITE);
-        myTimeline.getKeyFrames().add(frame);
-        myTimeline.play();
+        myGenerationsPerSecond = Math.max(1, Math.min(MAX_GENERATIONS_PER_SECOND,
+                myGenerationsPerSecond * Math.pow(2, value)));
+        if (myRunner != null) {
+            myRunner.setGenerationsPerSecond(myGenerationsPerSecond);
+        }
+    }
+
+    /**
+     * This method allows the Visualization class to turn turbo mode on or off. In turbo mode the simulation runs as
+     * fast as it can, and many generations may go by between two frames.
+     */
+    protected void toggleTurbo() {
+        myIsTurbo = !myIsTurbo;
+        if (myRunner != null) {
+            myRunner.setTurbo(myIsTurbo);
+        }
     }
 
     /**
      * This method allows the user to pause the simulation through the Visualization class.
      */
     protected void pauseSimulation(){
-        myTimeline.stop();
+        if (myRunner != null) {
+            myRunner.pause();
+        }
     }
 
     /**
      * This method allows the Visualization class to resume the simulation.
      */
     protected void playSimulation(){
-        myTimeline.play();
+        if (myRunner != null) {
+            myRunner.play();
+        }
     }
 
     /**
      * When on pause, this method allows the user to skip a step in the visualization.
      */
     protected void skipStep(){
-            playGameLoop();
+        if (myRunner != null) {
+            myRunner.step();
+        }
     }
 
     /**
      * This allows the Visualization class to load an input file as selected by the user
      */
     protected void loadUserInputFile() {
-        myTimeline.stop();
+        pauseSimulation();
         FileChooser fileChooser = new FileChooser();
         fileChooser.setInitialDirectory(new File("Resources/simulation_config_files"));
         File selectedFile  = fileChooser.showOpenDialog(myStage);
@@ -173,18 +249,33 @@ public class Game {
         xmlGenerator.generateSimulationXMLDocument();
     }
 
-    private void setGameLoop() {
-        var frame = new KeyFrame(Duration.millis(myMillisecondDelay), e -> playGameLoop());
-        myTimeline.setCycleCount(Timeline.INDEFINITE);
-        myTimeline.getKeyFrames().add(frame);
-        myTimeline.play();
-        pauseSimulation();
+    private void stopRunner() {
+        myAnimationTimer.stop();
+        if (myRunner != null) {
+            myRunner.stop();
+            myRunner = null;
+        }
+    }
+
+    // only called once the runner has stopped, so no step can still be using the grid
+    private void closeGrid() {
+        if (myGrid != null) {
+            myGrid.close();
+            myGrid = null;
+        }
     }
 
-    private void playGameLoop() {
-        mySimulation.analyzeCells();
-        mySimulation.updateCells();
-        myVisualization.displayGrid(mySimulation.getGrid());
+    private void showLatestSnapshot() {
+        GridSnapshot snapshot = myRunner.takeSnapshot();
+        if (snapshot != null) {
+            myVisualization.displaySnapshot(snapshot);
+            myRunner.recycle(snapshot);
+        }
+        Throwable failure = myRunner.getFailure();
+        if (failure != null) {
+            stopRunner();
+            XMLException.showSimulationFailureAlert(myResources, failure);
+        }
     }
 
 }
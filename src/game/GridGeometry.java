@@ -0,0 +1,447 @@
+package game;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the geometry of the cells of a grid seen through a view of a given size: the corners of every
+ * visible cell's rectangle, triangle or hexagon in flat arrays, and the pixels every visible cell covers once those
+ * shapes are rasterized.
+ *
+ * Cells are laid out so that the whole grid fits the image, and a view zooms into that layout by a factor and shows it
+ * from an origin, both in the coordinates of the layout. Only the window of rows and columns that fall in the view is
+ * laid out and rasterized, so zooming into a very large grid costs no more than the pixels of the view. When cells get
+ * smaller than MIN_RASTERIZED_CELL_SIZE pixels nothing is rasterized, and the grid is drawn by looking up the row and
+ * column under every pixel instead.
+ *
+ * The geometry of the whole grid, which only depends on the shape, the number of rows and columns and the size of the
+ * image, is kept in a small cache; reloading a simulation, or loading another one of the same size, reuses it. Zoomed
+ * views change with every drag, so they are built fresh.
+ *
+ * Every pixel whose center lies inside a cell belongs to that cell, and cells drawn later cover the ones drawn before.
+ * Cells are outlined when they are at least MIN_OUTLINED_CELL_SIZE pixels across.
+ * @author Sumer Vardhan
+ */
+public class GridGeometry {
+    public static final String RECTANGULAR = "Rectangular";
+    public static final String TRIANGULAR = "Triangular";
+    public static final String HEXAGONAL = "Hexagonal";
+
+    private static final int BACKGROUND = -1;
+    private static final int OUTLINE = -2;
+    private static final double MIN_OUTLINED_CELL_SIZE = 4;
+    private static final double MIN_RASTERIZED_CELL_SIZE = 2;
+    private static final int CACHE_SIZE = 4;
+    private static final Map<String, GridGeometry> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GridGeometry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String myShape;
+    private final int myNumRows;
+    private final int myNumCols;
+    private final int myWidth;
+    private final int myHeight;
+    private final double myZoom;
+    private final double myOriginX;
+    private final double myOriginY;
+    private final int myNumVertices;
+    private double myCellWidth;
+    private double myCellHeight;
+    private double myRowPitch;
+    private double myRowExtent;
+    private double myColPitch;
+    private double myColExtent;
+    private double myCellSize;
+    private int myFirstRow;
+    private int myFirstCol;
+    private int myWindowRows;
+    private int myWindowCols;
+    private double[] myXs;
+    private double[] myYs;
+    private int[] myCellPixelStarts;
+    private int[] myCellPixels;
+    private int[] myOutlinePixels;
+
+    private GridGeometry(String shape, int numRows, int numCols, int width, int height, double zoom, double originX,
+                         double originY) {
+        myShape = shape;
+        myNumRows = numRows;
+        myNumCols = numCols;
+        myWidth = width;
+        myHeight = height;
+        myZoom = zoom;
+        myOriginX = originX;
+        myOriginY = originY;
+        if (shape.equals(TRIANGULAR)) {
+            myNumVertices = 3;
+            setUpTriangles();
+        } else if (shape.equals(HEXAGONAL)) {
+            myNumVertices = 6;
+            setUpHexagons();
+        } else {
+            myNumVertices = 4;
+            setUpRectangles();
+        }
+        if (isRasterized()) {
+            myFirstRow = Math.max(0, (int) Math.floor((originY - myRowExtent) / myRowPitch));
+            int lastRow = Math.min(numRows - 1, (int) Math.floor((originY + height / zoom) / myRowPitch));
+            myFirstCol = Math.max(0, (int) Math.floor((originX - myColExtent) / myColPitch));
+            int lastCol = Math.min(numCols - 1, (int) Math.floor((originX + width / zoom) / myColPitch));
+            myWindowRows = Math.max(0, lastRow - myFirstRow + 1);
+            myWindowCols = Math.max(0, lastCol - myFirstCol + 1);
+            layOutWindow();
+            rasterize();
+        }
+    }
+
+    /**
+     * Gets the geometry of a whole grid drawn at a given size, building it only if it is not cached.
+     * @param shape the shape of the cells, RECTANGULAR, TRIANGULAR or HEXAGONAL
+     * @param numRows the number of rows of the grid
+     * @param numCols the number of columns of the grid
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return the geometry, which must not be modified
+     */
+    public static synchronized GridGeometry get(String shape, int numRows, int numCols, int width, int height) {
+        String key = String.join(" ", shape, Integer.toString(numRows), Integer.toString(numCols),
+                Integer.toString(width), Integer.toString(height));
+        return CACHE.computeIfAbsent(key, k -> new GridGeometry(shape, numRows, numCols, width, height, 1, 0, 0));
+    }
+
+    /**
+     * Gets the geometry of a zoomed view of a grid. The view at a zoom of 1 from the origin is the whole grid, which is
+     * cached; other views are built every time.
+     * @param shape the shape of the cells, RECTANGULAR, TRIANGULAR or HEXAGONAL
+     * @param numRows the number of rows of the grid
+     * @param numCols the number of columns of the grid
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param zoom how many times larger cells are drawn than when the whole grid fits the image, at least 1
+     * @param originX the x coordinate of the layout shown at the left edge of the image
+     * @param originY the y coordinate of the layout shown at the top edge of the image
+     * @return the geometry, which must not be modified
+     */
+    public static GridGeometry get(String shape, int numRows, int numCols, int width, int height, double zoom,
+                                   double originX, double originY) {
+        if (zoom == 1 && originX == 0 && originY == 0) {
+            return get(shape, numRows, numCols, width, height);
+        }
+        return new GridGeometry(shape, numRows, numCols, width, height, zoom, originX, originY);
+    }
+
+    /**
+     * Gets the geometry of the same grid and image seen through another view.
+     * @param zoom how many times larger cells are drawn than when the whole grid fits the image, at least 1
+     * @param originX the x coordinate of the layout shown at the left edge of the image
+     * @param originY the y coordinate of the layout shown at the top edge of the image
+     * @return the geometry of the view
+     */
+    public GridGeometry getView(double zoom, double originX, double originY) {
+        return get(myShape, myNumRows, myNumCols, myWidth, myHeight, zoom, originX, originY);
+    }
+
+    /**
+     * Gets the smallest extent of a cell as it is drawn, which decides whether cells are outlined and rasterized.
+     * @return the size of a cell in pixels
+     */
+    public double getCellSize() {
+        return myCellSize;
+    }
+
+    /**
+     * Checks whether the cells of the view are large enough to be rasterized. When they are not, none of the methods
+     * about the window, its vertices or its pixels may be used, and the grid is drawn with getRowAt and getColumnAt.
+     * @return true if the visible cells were rasterized
+     */
+    public boolean isRasterized() {
+        return myCellSize >= MIN_RASTERIZED_CELL_SIZE;
+    }
+
+    /**
+     * Gets the row of the grid drawn at a height of the image, treating every row as a band of the same height; rows of
+     * hexagons and triangles overlap, so this is only exact for rectangles and is meant for cells smaller than a pixel.
+     * @param y the y coordinate in the image
+     * @return the row, or -1 if no row is drawn there
+     */
+    public int getRowAt(double y) {
+        double row = Math.floor((y / myZoom + myOriginY) / myRowPitch);
+        return row >= 0 && row < myNumRows ? (int) row : -1;
+    }
+
+    /**
+     * Gets the column of the grid drawn at a position across the image, with the same simplification as getRowAt.
+     * @param x the x coordinate in the image
+     * @return the column, or -1 if no column is drawn there
+     */
+    public int getColumnAt(double x) {
+        double col = Math.floor((x / myZoom + myOriginX) / myColPitch);
+        return col >= 0 && col < myNumCols ? (int) col : -1;
+    }
+
+    /**
+     * Gets the number of cells in the window of visible rows and columns.
+     * @return the number of cells that were rasterized
+     */
+    public int getWindowSize() {
+        return myWindowRows * myWindowCols;
+    }
+
+    /**
+     * Gets the position of a cell in the window of visible rows and columns, by which its vertices and pixels are
+     * found.
+     * @param id the id of the cell
+     * @return the index of the cell in the window, or -1 if the cell is not visible
+     */
+    public int getWindowIndex(int id) {
+        int row = id / myNumCols - myFirstRow;
+        int col = id % myNumCols - myFirstCol;
+        if (row < 0 || row >= myWindowRows || col < 0 || col >= myWindowCols) {
+            return -1;
+        }
+        return row * myWindowCols + col;
+    }
+
+    /**
+     * Gets the id of a cell of the window of visible rows and columns.
+     * @param index the index of the cell in the window, less than getWindowSize()
+     * @return the id of the cell in the grid
+     */
+    public int getCellID(int index) {
+        return (myFirstRow + index / myWindowCols) * myNumCols + myFirstCol + index % myWindowCols;
+    }
+
+    /**
+     * Gets the number of corners of every cell.
+     * @return 4 for rectangles, 3 for triangles and 6 for hexagons
+     */
+    public int getNumVertices() {
+        return myNumVertices;
+    }
+
+    /**
+     * Gets the x coordinate in the image of a corner of a visible cell.
+     * @param index the index of the cell in the window
+     * @param vertex the index of the corner, less than getNumVertices()
+     * @return the x coordinate in pixels
+     */
+    public double getX(int index, int vertex) {
+        return myXs[index * myNumVertices + vertex];
+    }
+
+    /**
+     * Gets the y coordinate in the image of a corner of a visible cell.
+     * @param index the index of the cell in the window
+     * @param vertex the index of the corner, less than getNumVertices()
+     * @return the y coordinate in pixels
+     */
+    public double getY(int index, int vertex) {
+        return myYs[index * myNumVertices + vertex];
+    }
+
+    /**
+     * Gets the position in getCellPixels() of the first pixel of a visible cell.
+     * @param index the index of the cell in the window
+     * @return the start of the cell's pixels
+     */
+    public int getPixelStart(int index) {
+        return myCellPixelStarts[index];
+    }
+
+    /**
+     * Gets the position in getCellPixels() one past the last pixel of a visible cell.
+     * @param index the index of the cell in the window
+     * @return the end of the cell's pixels
+     */
+    public int getPixelEnd(int index) {
+        return myCellPixelStarts[index + 1];
+    }
+
+    /**
+     * Gets the pixels of every visible cell, cell after cell, as indices row * width + column into the image. The
+     * pixels of a cell are in increasing order.
+     * @return the pixels of the cells, which must not be modified
+     */
+    public int[] getCellPixels() {
+        return myCellPixels;
+    }
+
+    /**
+     * Gets the pixels that are drawn as outline between cells.
+     * @return the indices of the outline pixels, which must not be modified
+     */
+    public int[] getOutlinePixels() {
+        return myOutlinePixels;
+    }
+
+    private void setUpRectangles() {
+        myCellWidth = Math.min((double) myWidth / myNumCols, (double) myHeight / myNumRows);
+        myCellHeight = myCellWidth;
+        myRowPitch = myCellHeight;
+        myRowExtent = myCellHeight;
+        myColPitch = myCellWidth;
+        myColExtent = myCellWidth;
+        myCellSize = myCellWidth * myZoom;
+    }
+
+    // rows of alternating upward and downward triangles, each overlapping its neighbors in the row by half its width
+    private void setUpTriangles() {
+        myCellWidth = 2.0 * myWidth / (myNumCols + 1);
+        myCellHeight = (double) myHeight / myNumRows;
+        myRowPitch = myCellHeight;
+        myRowExtent = myCellHeight;
+        myColPitch = myCellWidth / 2;
+        myColExtent = myCellWidth;
+        myCellSize = Math.min(myCellWidth / 2, myCellHeight) * myZoom;
+    }
+
+    // odd rows are shifted right by half a hexagon and overlap the pointed ends of the row above
+    private void setUpHexagons() {
+        myCellWidth = (double) myWidth / myNumCols * 0.9;
+        myCellHeight = (double) myHeight / myNumRows * 1.5;
+        myRowPitch = myCellHeight / 2;
+        myRowExtent = myCellHeight;
+        myColPitch = myCellWidth;
+        myColExtent = myCellWidth * 1.5;
+        myCellSize = myCellWidth / 2 * myZoom;
+    }
+
+    private void layOutWindow() {
+        myXs = new double[getWindowSize() * myNumVertices];
+        myYs = new double[getWindowSize() * myNumVertices];
+        for (int index = 0; index < getWindowSize(); index++) {
+            int row = myFirstRow + index / myWindowCols;
+            int col = myFirstCol + index % myWindowCols;
+            if (myShape.equals(TRIANGULAR)) {
+                layOutTriangle(index, row, col);
+            } else if (myShape.equals(HEXAGONAL)) {
+                layOutHexagon(index, row, col);
+            } else {
+                layOutRectangle(index, row, col);
+            }
+        }
+    }
+
+    private void layOutRectangle(int index, int row, int col) {
+        double left = col * myCellWidth;
+        double top = row * myCellHeight;
+        setVertices(index, left, top, left + myCellWidth, top, left + myCellWidth, top + myCellHeight,
+                left, top + myCellHeight);
+    }
+
+    private void layOutTriangle(int index, int row, int col) {
+        double left = col * myCellWidth / 2;
+        double top = row * myCellHeight;
+        double bottom = top + myCellHeight;
+        if ((row + col) % 2 == 0) {
+            setVertices(index, left + myCellWidth / 2, top, left + myCellWidth, bottom, left, bottom);
+        } else {
+            setVertices(index, left, top, left + myCellWidth, top, left + myCellWidth / 2, bottom);
+        }
+    }
+
+    private void layOutHexagon(int index, int row, int col) {
+        double x = (row % 2 == 0 ? 0 : myCellWidth / 2) + col * myCellWidth;
+        double top = row * myCellHeight / 2;
+        setVertices(index, x, top + myCellHeight / 3, x + myCellWidth / 2, top, x + myCellWidth,
+                top + myCellHeight / 3, x + myCellWidth, top + 2 * myCellHeight / 3, x + myCellWidth / 2,
+                top + myCellHeight, x, top + 2 * myCellHeight / 3);
+    }
+
+    // stores the corners of a cell given in the coordinates of the layout, moved into the view
+    private void setVertices(int index, double... coordinates) {
+        for (int vertex = 0; vertex < myNumVertices; vertex++) {
+            myXs[index * myNumVertices + vertex] = (coordinates[2 * vertex] - myOriginX) * myZoom;
+            myYs[index * myNumVertices + vertex] = (coordinates[2 * vertex + 1] - myOriginY) * myZoom;
+        }
+    }
+
+    // fills an owner map with every visible cell, then groups the pixels by the cell that owns them
+    private void rasterize() {
+        int numCells = getWindowSize();
+        int[] owners = new int[myWidth * myHeight];
+        Arrays.fill(owners, BACKGROUND);
+        for (int index = 0; index < numCells; index++) {
+            fillPolygon(owners, index);
+        }
+        if (myCellSize >= MIN_OUTLINED_CELL_SIZE) {
+            addOutlines(owners);
+        }
+
+        myCellPixelStarts = new int[numCells + 1];
+        int numOutlinePixels = 0;
+        for (int owner : owners) {
+            if (owner >= 0) {
+                myCellPixelStarts[owner + 1]++;
+            } else if (owner == OUTLINE) {
+                numOutlinePixels++;
+            }
+        }
+        for (int index = 0; index < numCells; index++) {
+            myCellPixelStarts[index + 1] += myCellPixelStarts[index];
+        }
+        myCellPixels = new int[myCellPixelStarts[numCells]];
+        myOutlinePixels = new int[numOutlinePixels];
+        int[] next = Arrays.copyOf(myCellPixelStarts, numCells);
+        int nextOutline = 0;
+        for (int p = 0; p < owners.length; p++) {
+            if (owners[p] >= 0) {
+                myCellPixels[next[owners[p]]++] = p;
+            } else if (owners[p] == OUTLINE) {
+                myOutlinePixels[nextOutline++] = p;
+            }
+        }
+    }
+
+    // gives every pixel whose center lies inside the convex polygon of a cell to the cell
+    private void fillPolygon(int[] owners, int index) {
+        int first = index * myNumVertices;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = first; i < first + myNumVertices; i++) {
+            minY = Math.min(minY, myYs[i]);
+            maxY = Math.max(maxY, myYs[i]);
+        }
+        int firstRow = Math.max(0, (int) Math.ceil(minY - 0.5));
+        int lastRow = Math.min(myHeight - 1, (int) Math.ceil(maxY - 0.5) - 1);
+        for (int py = firstRow; py <= lastRow; py++) {
+            double centerY = py + 0.5;
+            double left = Double.MAX_VALUE;
+            double right = -Double.MAX_VALUE;
+            for (int k = 0; k < myNumVertices; k++) {
+                int i = first + k;
+                int j = first + (k + 1) % myNumVertices;
+                if ((myYs[i] <= centerY) != (myYs[j] <= centerY)) {
+                    double x = myXs[i] + (centerY - myYs[i]) * (myXs[j] - myXs[i]) / (myYs[j] - myYs[i]);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                }
+            }
+            int firstCol = Math.max(0, (int) Math.ceil(left - 0.5));
+            int lastCol = Math.min(myWidth - 1, (int) Math.ceil(right - 0.5) - 1);
+            for (int px = firstCol; px <= lastCol; px++) {
+                owners[py * myWidth + px] = index;
+            }
+        }
+    }
+
+    // marks the pixels where the owner changes to the right or below, which draws a one pixel outline around cells
+    private void addOutlines(int[] owners) {
+        int[] cells = owners.clone();
+        for (int py = 0; py < myHeight; py++) {
+            for (int px = 0; px < myWidth; px++) {
+                int p = py * myWidth + px;
+                int owner = cells[p];
+                int right = px + 1 < myWidth ? cells[p + 1] : BACKGROUND;
+                int below = py + 1 < myHeight ? cells[p + myWidth] : BACKGROUND;
+                if ((owner != right && (owner >= 0 || right >= 0)) || (owner != below && (owner >= 0 || below >= 0))) {
+                    owners[p] = OUTLINE;
+                }
+            }
+        }
+    }
+}
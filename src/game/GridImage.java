@@ -0,0 +1,271 @@
+package game;
+
+import elements.Grid;
+import elements.GridSnapshot;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the pixels of a GridRenderer and does all of its drawing, without touching the scene graph, so
+ * the drawing can run and be checked anywhere. After every call that draws, the rows of the image it changed are
+ * given by getDirtyTop and getDirtyBottom, which the renderer hands to JavaFX.
+ * @author Sumer Vardhan
+ */
+class GridImage {
+    private static final int BACKGROUND_COLOR = GridRenderer.toArgb(Color.WHITE);
+    private static final int OUTLINE_COLOR = GridRenderer.toArgb(Color.BLACK);
+    private static final double MAX_CELL_SIZE = 64;
+
+    private final int myWidth;
+    private final int myHeight;
+    private final int myNumCols;
+    private final GridGeometry myGridGeometry;
+    private final int[] myPixels;
+    private final int[] myPalette;
+    private final byte[] myDrawnStates;
+    private final MipPyramid myPyramid;
+    private final double myMaxZoom;
+    private final int[] myPixelRows;
+    private final int[] myPixelCols;
+    private GridGeometry myGeometry;
+    private int[] myCellPixels;
+    private double myZoom = 1;
+    private double myOriginX;
+    private double myOriginY;
+    private int myLevel;
+    private boolean myHasDrawnFrame;
+    private int myDirtyTop;
+    private int myDirtyBottom = -1;
+
+    /**
+     * Creates the pixels of a grid, showing the whole grid.
+     * @param grid the grid to draw
+     * @param shape the shape of the cells, GridGeometry.RECTANGULAR, TRIANGULAR or HEXAGONAL
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param palette the color of every state as an ARGB int; states past the end use the last color
+     */
+    GridImage(Grid grid, String shape, int width, int height, int[] palette) {
+        myWidth = width;
+        myHeight = height;
+        myNumCols = grid.getNumCols();
+        myGridGeometry = GridGeometry.get(shape, grid.getNumRows(), grid.getNumCols(), width, height);
+        myPalette = palette;
+        myDrawnStates = new byte[grid.getSize()];
+        myPyramid = new MipPyramid(grid.getNumRows(), grid.getNumCols(), palette.length);
+        myMaxZoom = Math.max(1, MAX_CELL_SIZE / myGridGeometry.getCellSize());
+        myPixelRows = new int[height];
+        myPixelCols = new int[width];
+        myPixels = new int[width * height];
+        setUpView();
+        clearView();
+    }
+
+    /**
+     * Gets the pixels of the image, row by row, as premultiplied ARGB ints. The array stays the same for the life of
+     * the image.
+     * @return the pixels of the image
+     */
+    int[] getPixels() {
+        return myPixels;
+    }
+
+    /**
+     * Gets the first row of the image the last call to render, zoom or pan changed.
+     * @return the first changed row, greater than getDirtyBottom() if no row changed
+     */
+    int getDirtyTop() {
+        return myDirtyTop;
+    }
+
+    /**
+     * Gets the last row of the image the last call to render, zoom or pan changed.
+     * @return the last changed row, less than getDirtyTop() if no row changed
+     */
+    int getDirtyBottom() {
+        return myDirtyBottom;
+    }
+
+    /**
+     * Gets the pyramid of majority states the image draws zoomed out views from.
+     * @return the pyramid of the grid's drawn states
+     */
+    MipPyramid getPyramid() {
+        return myPyramid;
+    }
+
+    /**
+     * Redraws the cells that changed since the last frame. When the snapshot does not know which cells changed, every
+     * cell is compared with the state it was last drawn in. The first frame is always drawn in full.
+     * @param snapshot the state of the grid the image was created for
+     */
+    void render(GridSnapshot snapshot) {
+        clearDirtyRows();
+        boolean isChanged = false;
+        if (!snapshot.areChangesKnown() || !myHasDrawnFrame) {
+            for (int id = 0; id < myDrawnStates.length; id++) {
+                int state = snapshot.getState(id);
+                if (myDrawnStates[id] != state) {
+                    myDrawnStates[id] = (byte) state;
+                    paintIfVisible(id, state);
+                    isChanged = true;
+                }
+            }
+            if (isChanged) {
+                myPyramid.build(myDrawnStates);
+            }
+        } else {
+            for (int i = 0; i < snapshot.getNumChangedCells(); i++) {
+                int id = snapshot.getChangedCell(i);
+                isChanged |= setState(id, snapshot.getState(id));
+            }
+        }
+        if (!myHasDrawnFrame || (isChanged && !myGeometry.isRasterized())) {
+            myHasDrawnFrame = true;
+            drawView();
+        }
+    }
+
+    /**
+     * Zooms the view in or out around a point of the image, which stays over the same part of the grid. The view
+     * cannot be zoomed out past the whole grid, or in past cells of MAX_CELL_SIZE pixels.
+     * @param factor how many times larger cells should be drawn, less than 1 to zoom out
+     * @param x the x coordinate of the point in the image
+     * @param y the y coordinate of the point in the image
+     */
+    void zoom(double factor, double x, double y) {
+        double zoom = Math.max(1, Math.min(myMaxZoom, myZoom * factor));
+        myOriginX += x / myZoom - x / zoom;
+        myOriginY += y / myZoom - y / zoom;
+        myZoom = zoom;
+        changeView();
+    }
+
+    /**
+     * Moves the view, as if the image were dragged by a number of pixels. The view stays inside the grid.
+     * @param dx how far to drag the image to the right, in pixels
+     * @param dy how far to drag the image down, in pixels
+     */
+    void pan(double dx, double dy) {
+        myOriginX -= dx / myZoom;
+        myOriginY -= dy / myZoom;
+        changeView();
+    }
+
+    // records the state of a cell, keeps the pyramid up to date and repaints the cell if it is drawn as a shape
+    private boolean setState(int id, int state) {
+        int drawnState = myDrawnStates[id];
+        if (drawnState == state) {
+            return false;
+        }
+        myDrawnStates[id] = (byte) state;
+        myPyramid.update(id, drawnState, state);
+        paintIfVisible(id, state);
+        return true;
+    }
+
+    // repaints a cell right away if it is drawn as a shape; otherwise the whole view is redrawn at the end of the frame
+    private void paintIfVisible(int id, int state) {
+        if (myHasDrawnFrame && myGeometry.isRasterized()) {
+            int index = myGeometry.getWindowIndex(id);
+            if (index >= 0) {
+                paintCell(index, state);
+            }
+        }
+    }
+
+    // paints the pixels of a visible cell and grows the dirty rows to cover it
+    private void paintCell(int index, int state) {
+        int start = myGeometry.getPixelStart(index);
+        int end = myGeometry.getPixelEnd(index);
+        if (start == end) {
+            return;
+        }
+        int color = myPalette[Math.min(state, myPalette.length - 1)];
+        for (int k = start; k < end; k++) {
+            myPixels[myCellPixels[k]] = color;
+        }
+        myDirtyTop = Math.min(myDirtyTop, myCellPixels[start] / myWidth);
+        myDirtyBottom = Math.max(myDirtyBottom, myCellPixels[end - 1] / myWidth);
+    }
+
+    private void changeView() {
+        clearDirtyRows();
+        myOriginX = Math.max(0, Math.min(myWidth - myWidth / myZoom, myOriginX));
+        myOriginY = Math.max(0, Math.min(myHeight - myHeight / myZoom, myOriginY));
+        setUpView();
+        if (myHasDrawnFrame) {
+            drawView();
+        }
+    }
+
+    // builds the geometry of the view, or the rows, columns and pyramid level under every pixel if cells are too small
+    private void setUpView() {
+        myGeometry = myGridGeometry.getView(myZoom, myOriginX, myOriginY);
+        if (myGeometry.isRasterized()) {
+            myCellPixels = myGeometry.getCellPixels();
+            return;
+        }
+        myCellPixels = null;
+        int level = (int) Math.ceil(Math.log(1 / myGeometry.getCellSize()) / Math.log(2));
+        myLevel = Math.max(0, Math.min(myPyramid.getNumLevels() - 1, level));
+        for (int py = 0; py < myHeight; py++) {
+            myPixelRows[py] = myGeometry.getRowAt(py + 0.5);
+        }
+        for (int px = 0; px < myWidth; px++) {
+            myPixelCols[px] = myGeometry.getColumnAt(px + 0.5);
+        }
+    }
+
+    private void clearView() {
+        Arrays.fill(myPixels, BACKGROUND_COLOR);
+        if (myGeometry.isRasterized()) {
+            for (int p : myGeometry.getOutlinePixels()) {
+                myPixels[p] = OUTLINE_COLOR;
+            }
+        }
+    }
+
+    private void drawView() {
+        clearView();
+        if (myGeometry.isRasterized()) {
+            for (int index = 0; index < myGeometry.getWindowSize(); index++) {
+                paintCell(index, myDrawnStates[myGeometry.getCellID(index)]);
+            }
+        } else {
+            drawLevelOfDetail();
+        }
+        myDirtyTop = 0;
+        myDirtyBottom = myHeight - 1;
+    }
+
+    // every pixel takes the color of the cell under it, or of the majority of the block of cells under it
+    private void drawLevelOfDetail() {
+        int lastColor = myPalette.length - 1;
+        for (int py = 0; py < myHeight; py++) {
+            int row = myPixelRows[py];
+            if (row < 0) {
+                continue;
+            }
+            for (int px = 0; px < myWidth; px++) {
+                int col = myPixelCols[px];
+                if (col < 0) {
+                    continue;
+                }
+                int state;
+                if (myLevel == 0) {
+                    state = myDrawnStates[row * myNumCols + col];
+                } else {
+                    state = myPyramid.getMajority(myLevel, row >> myLevel, col >> myLevel);
+                }
+                myPixels[py * myWidth + px] = myPalette[Math.min(state, lastColor)];
+            }
+        }
+    }
+
+    private void clearDirtyRows() {
+        myDirtyTop = Integer.MAX_VALUE;
+        myDirtyBottom = -1;
+    }
+}
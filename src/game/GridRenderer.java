@@ -0,0 +1,116 @@
+package game;
+
+import elements.Grid;
+import elements.GridSnapshot;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.nio.IntBuffer;
+
+/**
+ * This class draws a grid as pixels in a single image instead of one JavaFX node per cell. The pixels every visible
+ * cell covers come from the GridGeometry of the current view, and the geometry of the whole grid is computed once and
+ * shared by every renderer of that size. Drawing a frame only repaints the cells whose state changed since the last
+ * frame, as given by a GridSnapshot, with the color of their state in a palette, and only the rows of the image that
+ * hold them are handed to JavaFX, so the cost of a frame follows the activity of the simulation rather than the size
+ * of the grid. Cell outlines are drawn in black and the rest of the image is white.
+ *
+ * The view can be zoomed and panned, and only the cells inside it are drawn. When cells are too small to be drawn as
+ * shapes, every pixel shows the majority state of the block of cells under it, read from a MipPyramid that is kept up
+ * to date with every changed cell, so a frame of a zoomed out grid costs one lookup per pixel however large the grid.
+ *
+ * The drawing itself is done by a GridImage, which does not depend on JavaFX; this class hands the rows of its pixels
+ * that changed to JavaFX.
+ * @author Sumer Vardhan
+ */
+public class GridRenderer {
+    private final int myWidth;
+    private final GridImage myImage;
+    private final PixelBuffer<IntBuffer> myPixelBuffer;
+    private final ImageView myView;
+
+    /**
+     * Creates the image of a grid, showing the whole grid.
+     * @param grid the grid to draw
+     * @param shape the shape of the cells, GridGeometry.RECTANGULAR, TRIANGULAR or HEXAGONAL
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param palette the color of every state as an ARGB int; states past the end use the last color
+     */
+    public GridRenderer(Grid grid, String shape, int width, int height, int[] palette) {
+        myWidth = width;
+        myImage = new GridImage(grid, shape, width, height, palette);
+        myPixelBuffer = new PixelBuffer<>(width, height, IntBuffer.wrap(myImage.getPixels()),
+                PixelFormat.getIntArgbPreInstance());
+        myView = new ImageView(new WritableImage(myPixelBuffer));
+    }
+
+    /**
+     * Gets the node that shows the image; it stays the same for the life of the renderer.
+     * @return the view of the grid's image
+     */
+    public ImageView getView() {
+        return myView;
+    }
+
+    /**
+     * Redraws the cells that changed since the last frame and only uploads the rows of the image they cover. When the
+     * snapshot does not know which cells changed, every cell is compared with the state it was last drawn in, which is
+     * still much cheaper than repainting every pixel. The first frame is always drawn in full. Must be called on the
+     * JavaFX application thread.
+     * @param snapshot the state of the grid the renderer was created for
+     */
+    public void render(GridSnapshot snapshot) {
+        myImage.render(snapshot);
+        uploadDirtyRows();
+    }
+
+    /**
+     * Zooms the view in or out around a point of the image, which stays over the same part of the grid. The view
+     * cannot be zoomed out past the whole grid, or in past cells of 64 pixels. Must be called on the JavaFX
+     * application thread.
+     * @param factor how many times larger cells should be drawn, less than 1 to zoom out
+     * @param x the x coordinate of the point in the image
+     * @param y the y coordinate of the point in the image
+     */
+    public void zoom(double factor, double x, double y) {
+        myImage.zoom(factor, x, y);
+        uploadDirtyRows();
+    }
+
+    /**
+     * Moves the view, as if the image were dragged by a number of pixels. The view stays inside the grid. Must be
+     * called on the JavaFX application thread.
+     * @param dx how far to drag the image to the right, in pixels
+     * @param dy how far to drag the image down, in pixels
+     */
+    public void pan(double dx, double dy) {
+        myImage.pan(dx, dy);
+        uploadDirtyRows();
+    }
+
+    private void uploadDirtyRows() {
+        int top = myImage.getDirtyTop();
+        int bottom = myImage.getDirtyBottom();
+        if (bottom >= top) {
+            Rectangle2D dirtyRows = new Rectangle2D(0, top, myWidth, bottom - top + 1);
+            myPixelBuffer.updateBuffer(buffer -> dirtyRows);
+        }
+    }
+
+    /**
+     * Converts a JavaFX color to the ARGB int the palette holds.
+     * @param color an opaque color
+     * @return the color packed as alpha, red, green and blue bytes
+     */
+    public static int toArgb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+}
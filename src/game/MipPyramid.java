@@ -0,0 +1,156 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps a pyramid of downsampled copies of a grid, used to draw grids whose cells are smaller than a pixel.
+ * Level k splits the grid into blocks of 2^k by 2^k cells and holds the majority state of every block, so a pixel
+ * covering about 2^k cells shows the state most of them are in. Level 0 is the grid itself and is kept by the caller.
+ *
+ * Every block holds how many of its cells are in each state, so when a cell changes only the one block above it on
+ * every level is updated, and keeping the pyramid up to date costs a few operations per changed cell per level. When
+ * most of the grid changes at once, build recomputes every level in one pass instead.
+ * Ties go to the lowest state.
+ * @author Sumer Vardhan
+ */
+public class MipPyramid {
+    private final int myNumRows;
+    private final int myNumCols;
+    private final int myNumStates;
+    private final int[] myLevelCols;
+    private final int[][] myCounts;
+    private final byte[][] myMajorities;
+
+    /**
+     * Creates the pyramid of a grid whose cells are all in state 0.
+     * @param numRows the number of rows of the grid
+     * @param numCols the number of columns of the grid
+     * @param numStates the number of states that are told apart; higher states count as the last one
+     */
+    public MipPyramid(int numRows, int numCols, int numStates) {
+        myNumRows = numRows;
+        myNumCols = numCols;
+        myNumStates = numStates;
+        int numLevels = 1;
+        while ((numRows - 1) >> (numLevels - 1) > 0 || (numCols - 1) >> (numLevels - 1) > 0) {
+            numLevels++;
+        }
+        myLevelCols = new int[numLevels];
+        myCounts = new int[numLevels][];
+        myMajorities = new byte[numLevels][];
+        for (int level = 1; level < numLevels; level++) {
+            int levelRows = ((numRows - 1) >> level) + 1;
+            int levelCols = ((numCols - 1) >> level) + 1;
+            myLevelCols[level] = levelCols;
+            myCounts[level] = new int[levelRows * levelCols * numStates];
+            myMajorities[level] = new byte[levelRows * levelCols];
+            for (int row = 0; row < levelRows; row++) {
+                for (int col = 0; col < levelCols; col++) {
+                    int cellRows = Math.min(numRows, (row + 1) << level) - (row << level);
+                    int cellCols = Math.min(numCols, (col + 1) << level) - (col << level);
+                    myCounts[level][(row * levelCols + col) * numStates] = cellRows * cellCols;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of levels, including level 0; the last level is a single block covering the whole grid.
+     * @return the number of levels
+     */
+    public int getNumLevels() {
+        return myCounts.length;
+    }
+
+    /**
+     * Moves a cell from one state to another in every level of the pyramid.
+     * @param id the id of the cell
+     * @param oldState the state the cell was in
+     * @param newState the state the cell is in now
+     */
+    public void update(int id, int oldState, int newState) {
+        int oldIndex = Math.min(oldState, myNumStates - 1);
+        int newIndex = Math.min(newState, myNumStates - 1);
+        if (oldIndex == newIndex) {
+            return;
+        }
+        int row = id / myNumCols;
+        int col = id % myNumCols;
+        for (int level = 1; level < myCounts.length; level++) {
+            int block = (row >> level) * myLevelCols[level] + (col >> level);
+            int[] counts = myCounts[level];
+            int first = block * myNumStates;
+            counts[first + oldIndex]--;
+            counts[first + newIndex]++;
+            int majority = myMajorities[level][block];
+            if (newIndex != majority && (counts[first + newIndex] > counts[first + majority]
+                    || counts[first + newIndex] == counts[first + majority] && newIndex < majority)) {
+                myMajorities[level][block] = (byte) newIndex;
+            } else if (oldIndex == majority) {
+                myMajorities[level][block] = (byte) findMajority(counts, first);
+            }
+        }
+    }
+
+    /**
+     * Recomputes every level of the pyramid from the states of all the cells.
+     * @param states the state of every cell, by id
+     */
+    public void build(byte[] states) {
+        if (myCounts.length < 2) {
+            return;
+        }
+        int[] counts = myCounts[1];
+        Arrays.fill(counts, 0);
+        int lastState = myNumStates - 1;
+        for (int row = 0; row < myNumRows; row++) {
+            int firstBlock = (row >> 1) * myLevelCols[1];
+            for (int col = 0; col < myNumCols; col++) {
+                counts[(firstBlock + (col >> 1)) * myNumStates + Math.min(states[row * myNumCols + col], lastState)]++;
+            }
+        }
+        for (int level = 2; level < myCounts.length; level++) {
+            int[] childCounts = myCounts[level - 1];
+            int childCols = myLevelCols[level - 1];
+            int childRows = myMajorities[level - 1].length / childCols;
+            counts = myCounts[level];
+            Arrays.fill(counts, 0);
+            for (int row = 0; row < childRows; row++) {
+                int firstBlock = (row >> 1) * myLevelCols[level];
+                for (int col = 0; col < childCols; col++) {
+                    int block = (firstBlock + (col >> 1)) * myNumStates;
+                    int child = (row * childCols + col) * myNumStates;
+                    for (int state = 0; state < myNumStates; state++) {
+                        counts[block + state] += childCounts[child + state];
+                    }
+                }
+            }
+        }
+        for (int level = 1; level < myCounts.length; level++) {
+            for (int block = 0; block < myMajorities[level].length; block++) {
+                myMajorities[level][block] = (byte) findMajority(myCounts[level], block * myNumStates);
+            }
+        }
+    }
+
+    /**
+     * Gets the majority state of a block.
+     * @param level the level of the block, between 1 and getNumLevels() - 1
+     * @param blockRow the row of the block, which covers the rows of the grid from blockRow * 2^level
+     * @param blockCol the column of the block, which covers the columns of the grid from blockCol * 2^level
+     * @return the state most of the cells of the block are in
+     */
+    public int getMajority(int level, int blockRow, int blockCol) {
+        return myMajorities[level][blockRow * myLevelCols[level] + blockCol];
+    }
+
+    private int findMajority(int[] counts, int first) {
+        int majority = 0;
+        for (int state = 1; state < myNumStates; state++) {
+            if (counts[first + state] > counts[first + majority]) {
+                majority = state;
+            }
+        }
+        return majority;
+    }
+}
@@ -1,11 +1,12 @@
 package game;
 
 import config.XMLGameParser;
-import elements.Cell;
 import elements.Grid;
+import elements.GridSnapshot;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundImage;
 import javafx.scene.layout.BackgroundPosition;
@@ -14,9 +15,6 @@ import javafx.scene.layout.BackgroundSize;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
 import javafx.stage.Stage;
 
 import java.io.File;
@@ -31,6 +29,8 @@ import java.util.ResourceBundle;
  */
 public class Visualization {
     private static final String GAME_PROPERTIES = "GameProperties";
+    private static final double ZOOM_PER_SCROLL_STEP = 1.25;
+    private static final double SCROLL_STEP = 40;
     private ResourceBundle myResources;
 
     private Game myCurrentGame;
@@ -38,9 +38,9 @@ public class Visualization {
     private Pane myRoot;
     private Scene myScene;
     private String[] mySimulationButtons;
-    private Color myColor0;
-    private Color myColor1;
-    private Color myColor2;
+    private GridRenderer myRenderer;
+    private double myDragX;
+    private double myDragY;
     private int mySceneWidth;
     private int mySceneHeight;
     private int mySceneWidthWithBar;
@@ -72,7 +72,9 @@ public class Visualization {
     }
 
     /**
-     * Allows the game class to show the simulation scene with an initial grid
+     * Allows the game class to show the simulation scene with an initial grid. The image of the grid and the buttons
+     * are created once here; every later frame only redraws the pixels of the image, starting with the first snapshot
+     * of the grid Game receives. Scrolling over the grid zooms in and out, and dragging it pans the view.
      * @param grid the grid whose the simulation uses as a starting point
      */
     protected void showSimulationScene(Grid grid) {
@@ -80,15 +82,34 @@ public class Visualization {
         setBackground();
         myScene = new Scene(myRoot, mySceneWidthWithBar, mySceneHeight);
         myStage.setScene(myScene);
+        myRenderer = new GridRenderer(grid, myResources.getString("Shape"), mySceneWidth, mySceneHeight,
+                createPalette(grid));
+        myRoot.getChildren().add(myRenderer.getView());
         myRoot.getChildren().add(createButtonsForSimulation());
-        displayGrid(grid);
+        setViewportControls(myRenderer.getView());
     }
 
-    private void setCellColors(Grid grid){
+    private void setViewportControls(ImageView gridView){
+        gridView.setOnScroll(e -> myRenderer.zoom(Math.pow(ZOOM_PER_SCROLL_STEP, e.getDeltaY() / SCROLL_STEP),
+                e.getX(), e.getY()));
+        gridView.setOnMousePressed(e -> {
+            myDragX = e.getX();
+            myDragY = e.getY();
+        });
+        gridView.setOnMouseDragged(e -> {
+            myRenderer.pan(e.getX() - myDragX, e.getY() - myDragY);
+            myDragX = e.getX();
+            myDragY = e.getY();
+        });
+    }
+
+    private int[] createPalette(Grid grid){
         String[] cellColors = grid.getCellColors();
-        myColor0 = setColorForCell(cellColors[0]);
-        myColor1 = setColorForCell(cellColors[1]);
-        myColor2 = setColorForCell(cellColors[2]);
+        int[] palette = new int[cellColors.length];
+        for(int state = 0; state < cellColors.length; state++){
+            palette[state] = GridRenderer.toArgb(setColorForCell(cellColors[state]));
+        }
+        return palette;
     }
 
     private Color setColorForCell(String color_chosen){ //TODO: Change color strings to resource files
@@ -114,205 +135,12 @@ public class Visualization {
     }
 
     /**
-     * Displays the grid; used by simulation and Game in order to display the updated state of each grid
-     * @param grid the grid that is being displayed
+     * Displays a snapshot of the grid; used by Game on every frame in which the simulation published a new state. Only
+     * the cells that changed since the last snapshot are repainted.
+     * @param snapshot the state of the grid that is being displayed
      */
-    protected void displayGrid(Grid grid){
-        setCellColors(grid);
-        myRoot.getChildren().clear();
-        myRoot.getChildren().add(createButtonsForSimulation());
-        Cell[][] cells = new Cell[grid.getNumRows()][grid.getNumCols()];
-        int id = 0;
-        for(int i = 0; i < grid.getNumRows(); i++){
-            for(int j = 0; j < grid.getNumCols(); j++){
-                cells[i][j] = grid.getCell(id);
-                id++;
-            }
-        }
-
-        String shape = myResources.getString("Shape");
-        if(shape.equals("Rectangular")){
-            displayGridAsRectangles(grid, cells);
-        }
-        else if (shape.equals("Triangular")){
-            displayGridAsTriangles(grid, cells);
-        }
-        else if (shape.equals("Hexagonal")){
-            displayGridAsHexagons(grid, cells);
-        }
-    }
-
-    private void displayGridAsRectangles(Grid grid, Cell[][] cells) {
-        Rectangle rectangle;
-        for (int i = 0; i < cells.length; i++) {
-            for (int j = 0; j< grid.getNumCols(); j++) {
-                int cellSize = (mySceneWidth / grid.getNumRows());
-                rectangle = new Rectangle(cellSize, cellSize);
-                rectangle.setStroke(Color.BLACK);
-                rectangle.setX((j) * (cellSize));
-                rectangle.setY((i) * (cellSize));
-                if(cells[i][j].getState() == 0){
-                    rectangle.setFill(myColor0);
-                }
-                else if(cells[i][j].getState() == 1){
-                    rectangle.setFill(myColor1);
-                }
-                else{
-                    rectangle.setFill(myColor2);
-                }
-                myRoot.getChildren().add(rectangle);
-            }
-        }
-    }
-
-    private void displayGridAsTriangles(Grid grid, Cell[][] cells) {
-
-        Rectangle rectangle = new Rectangle(mySceneWidth, mySceneHeight, Color.WHITE);
-        rectangle.setX(0);
-        rectangle.setY(0);
-        myRoot.getChildren().add(rectangle);
-
-        int myCounter = 1;
-        int height = 0;
-        int downward = 0;
-        int upward = 0;
-        Polygon triangle;
-
-        double cellSize = mySceneWidth / (grid.getNumCols());
-        double cellSize2 = mySceneHeight / (grid.getNumRows() / 2);
-
-        for (int i = 0; i < grid.getNumRows(); i++, myCounter++) {
-            if(myCounter == 5){
-                myCounter = 1;
-            }
-            if(i % 2 == 0){
-                height++;
-                downward = 0;
-                upward = 0;
-            }
-            for (int j = 0; j < grid.getNumCols(); j++) {
-                triangle = new Polygon();
-                System.out.println(myCounter);
-                if (myCounter == 3 || myCounter == 4) {
-                    //Create upward
-                    if(j%2 == 0){
-                        createDownwardTriangle(triangle, cellSize, cellSize2);
-                        triangle.setLayoutX(downward * cellSize);
-                        triangle.setLayoutY(height * cellSize2);
-                        downward++;
-                    }
-                    else {
-                        createUpwardTriangle(triangle, cellSize, cellSize2);
-                        triangle.setLayoutX(upward * cellSize + cellSize / 2);
-                        triangle.setLayoutY(height * cellSize2);
-                        upward++;
-                    }
-                } else if (myCounter == 1 || myCounter == 2) {
-                    //Create downward
-                    if(j%2 == 0){
-                        createUpwardTriangle(triangle, cellSize, cellSize2);
-                        triangle.setLayoutX(upward * cellSize);
-                        triangle.setLayoutY(height * cellSize2);
-                        upward++;
-                    }
-                    else {
-                        createDownwardTriangle(triangle, cellSize, cellSize2);
-                        triangle.setLayoutX(downward * cellSize + cellSize / 2);
-                        triangle.setLayoutY(height * cellSize2);
-                        downward++;
-                    }
-                }
-
-
-                triangle.setStroke(Color.BLACK);
-                if (cells[i][j].getState() == 0) {
-                    triangle.setFill(myColor0);
-                } else if (cells[i][j].getState() == 1) {
-                    triangle.setFill(myColor1);
-                } else {
-                    triangle.setFill(myColor2);
-                }
-                myRoot.getChildren().add(triangle);
-            }
-        }
-    }
-
-    private void displayGridAsHexagons(Grid grid, Cell[][] cells) {
-
-        Rectangle rectangle = new Rectangle(mySceneWidth, mySceneHeight, Color.WHITE);
-        rectangle.setX(0);
-        rectangle.setY(0);
-        myRoot.getChildren().add(rectangle);
-        Polygon hexagon;
-        int even_rows = -1;
-        int odd_rows = -1;
-        double cellHeight = (mySceneHeight / grid.getNumRows()) * 1.5;
-        double cellWidth = (mySceneWidth / grid.getNumCols()) * 0.9;
-
-        for (int i = 0; i < cells.length; i++) {
-            if(i%2 == 0){
-                even_rows++;
-            }
-            else{
-                odd_rows++;
-            }
-            for (int j = 0; j < grid.getNumCols(); j++) {
-                hexagon = new Polygon();
-                hexagon.getPoints().addAll(0.0, cellHeight/3,
-                        cellWidth/2, 0.0,
-                        cellWidth, cellHeight/3,
-                        cellWidth, 2*cellHeight/3,
-                        cellWidth/2, cellHeight,
-                        0.0, 2*cellHeight/3);
-
-                hexagon.setStroke(Color.BLACK);
-
-                if(i%2 == 0){
-                    hexagon.setLayoutX((j) * (cellWidth));
-                    hexagon.setLayoutY(even_rows * cellHeight);
-
-                }
-                else{
-                    hexagon.setLayoutX(j * cellWidth + cellWidth/2);
-                    hexagon.setLayoutY((even_rows+1) * cellHeight - cellHeight/2);
-                }
-
-
-                if (cells[i][j].getState() == 0) {
-                    hexagon.setFill(myColor0);
-                } else if (cells[i][j].getState() == 1) {
-                    hexagon.setFill(myColor1);
-                } else {
-                    hexagon.setFill(myColor2);
-                }
-                myRoot.getChildren().add(hexagon);
-            }
-        }
-
-    }
-
-    private void createUpwardTriangle(Polygon triangle, double cellSize, double cellSize2){
-        triangle.getPoints().addAll(cellSize/2, 0.0,
-                0.0, cellSize2,
-                cellSize, cellSize2);
-    }
-
-    private void createDownwardTriangle(Polygon triangle, double cellSize, double cellSize2){
-        triangle.getPoints().addAll(0.0, 0.0,
-                cellSize, 0.0,
-                cellSize / 2, cellSize2);
-    }
-
-    private void setCellColor(int state, Shape polygon) {
-        if(state == 0){
-            polygon.setFill(myColor0);
-        }
-        else if(state == 1){
-            polygon.setFill(myColor1);
-        }
-        else{
-            polygon.setFill(myColor2);
-        }
+    protected void displaySnapshot(GridSnapshot snapshot){
+        myRenderer.render(snapshot);
     }
 
     private void setBackground() {
@@ -352,8 +180,12 @@ public class Visualization {
                     myCurrentGame.adjustSimulationSpeed(1);
                 } else if (buttonTitle.equals(myResources.getString("SlowDown"))) {
                     myCurrentGame.adjustSimulationSpeed(-1);
+                } else if (buttonTitle.equals(myResources.getString("Turbo"))) {
+                    myCurrentGame.toggleTurbo();
                 } else if (buttonTitle.equals(myResources.getString("Reload"))) {
                     myCurrentGame.loadUserInputFile();
+                } else if (buttonTitle.equals(myResources.getString("ResumeSaved"))) {
+                    myCurrentGame.resumeSavedSimulation();
                 } else if (buttonTitle.equals(myResources.getString("Home"))) {
                     myCurrentGame.loadIntro();
                 } else if (buttonTitle.equals(myResources.getString("SaveXML"))) {
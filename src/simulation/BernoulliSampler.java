@@ -0,0 +1,139 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class draws a sequence of independent events that each happen with the same probability, such as a tree
+ * catching fire from one burning neighbor. Instead of drawing a random double for every event, events are drawn in
+ * bulk from a random stream:
+ *
+ * Common events are drawn 64 at a time as the bits of a mask. The bits of a uniform random fraction are compared with
+ * the binary expansion of the probability one position at a time, for all 64 events at once, and an event is decided
+ * as soon as its fraction differs from the probability. The first 64 binary digits of the probability are used, which
+ * is exact to within 2^-64. Every random long decides about half of the events left, so a mask takes a little over
+ * log2(64) + 1, about 7.3, random longs for a probability such as 0.6 whose expansion does not end. It never takes
+ * more longs than the probability has binary digits, so probabilities with a short expansion such as 1/2 or 3/4 take
+ * one or two.
+ *
+ * Rare events are drawn by skipping: the number of events that fail before the next one happens follows a geometric
+ * distribution, so one random number is drawn per event that happens rather than per event tested.
+ *
+ * A sampler is used by a single thread; parallel bands each keep their own, and reset it to the random stream of the
+ * band on every step.
+ * @author Sumer Vardhan
+ */
+public class BernoulliSampler {
+    private static final double RARE_EVENT_PROBABILITY = 1.0 / 32;
+
+    private static final int NEVER = 0;
+    private static final int ALWAYS = 1;
+    private static final int COMMON = 2;
+    private static final int RARE = 3;
+
+    private SplittableRandom myRandom;
+    private final int myKind;
+    private final long myBinaryDigits;
+    private final double myLogOfFailure;
+    private long myMask;
+    private int myNumBitsLeft;
+    private long myFailuresLeft;
+
+    /**
+     * Creates a sampler for events with the given probability.
+     * @param probability the probability of every event; values at or below 0 never happen and values at or above 1
+     *                    always happen
+     * @param random the random stream to draw from
+     */
+    public BernoulliSampler(double probability, SplittableRandom random) {
+        if (probability <= 0) {
+            myKind = NEVER;
+        } else if (probability >= 1) {
+            myKind = ALWAYS;
+        } else {
+            myKind = probability < RARE_EVENT_PROBABILITY ? RARE : COMMON;
+        }
+        myBinaryDigits = myKind == COMMON || myKind == RARE ? binaryDigits(probability) : 0;
+        myLogOfFailure = Math.log1p(-probability);
+        reset(random);
+    }
+
+    /**
+     * Starts a new sequence of events drawn from another random stream, exactly as a new sampler for the same
+     * probability would, without allocating one.
+     * @param random the random stream to draw from
+     */
+    public void reset(SplittableRandom random) {
+        myRandom = random;
+        myMask = 0;
+        myNumBitsLeft = 0;
+        myFailuresLeft = myKind == RARE ? drawFailures() : 0;
+    }
+
+    /**
+     * Draws the next event of the sequence.
+     * @return true if the event happens
+     */
+    public boolean next() {
+        if (myKind == RARE) {
+            if (myFailuresLeft == 0) {
+                myFailuresLeft = drawFailures();
+                return true;
+            }
+            myFailuresLeft--;
+            return false;
+        }
+        if (myNumBitsLeft == 0) {
+            myMask = nextMask();
+            myNumBitsLeft = Long.SIZE;
+        }
+        boolean happens = (myMask & 1) != 0;
+        myMask >>>= 1;
+        myNumBitsLeft--;
+        return happens;
+    }
+
+    /**
+     * Draws 64 independent events at once, for rules that work on 64 cells at a time.
+     * @return a mask whose set bits are the events that happen
+     */
+    public long nextMask() {
+        if (myKind == NEVER || myKind == ALWAYS) {
+            return myKind == ALWAYS ? -1L : 0L;
+        }
+        long happens = 0;
+        long undecided = -1L;
+        long digits = myBinaryDigits;
+        while (undecided != 0 && digits != 0) {
+            long bits = myRandom.nextLong();
+            if (digits < 0) {
+                happens |= undecided & ~bits;
+                undecided &= bits;
+            } else {
+                undecided &= ~bits;
+            }
+            digits <<= 1;
+        }
+        return happens;
+    }
+
+    // the first 64 binary digits of a probability between 0 and 1, the most significant one in the sign bit
+    private static long binaryDigits(double probability) {
+        long digits = 0;
+        double remainder = probability;
+        for (int i = 0; i < Long.SIZE; i++) {
+            remainder *= 2;
+            digits <<= 1;
+            if (remainder >= 1) {
+                remainder -= 1;
+                digits |= 1;
+            }
+        }
+        return digits;
+    }
+
+    // the number of events that fail before the next one happens, which is geometric with the event probability
+    private long drawFailures() {
+        double uniform = 1.0 - myRandom.nextDouble();
+        return (long) (Math.log(uniform) / myLogOfFailure);
+    }
+}
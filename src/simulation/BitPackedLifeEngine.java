@@ -0,0 +1,180 @@
+package simulation;
+
+import elements.Grid;
+
+import java.util.Arrays;
+
+/**
+ * This class runs the Game of Life rule on a Moore neighborhood with every row of the grid packed into longs, one bit
+ * per cell, so that each bitwise instruction works on 64 cells at once. It keeps one bit plane for LIVE cells and one
+ * for DEAD cells; cells in neither plane are empty and never change, exactly as in GameOfLifeSimulation. Neighbors are
+ * counted with bitwise adders, and only the cells that change are written back to the grid.
+ * @author Sumer Vardhan
+ */
+public class BitPackedLifeEngine {
+    private final int myNumRows;
+    private final int myNumCols;
+    private final int myWordsPerRow;
+    private long[] myLive;
+    private long[] myDead;
+    private long[] myNextLive;
+    private long[] myNextDead;
+
+    /**
+     * Packs the current state of the grid into bit planes.
+     * @param grid the grid of a Game of Life simulation whose neighborhood is the Moore neighborhood
+     */
+    public BitPackedLifeEngine(Grid grid) {
+        myNumRows = grid.getNumRows();
+        myNumCols = grid.getNumCols();
+        myWordsPerRow = (myNumCols + Long.SIZE - 1) / Long.SIZE;
+        myLive = new long[myNumRows * myWordsPerRow];
+        myDead = new long[myNumRows * myWordsPerRow];
+        myNextLive = new long[myNumRows * myWordsPerRow];
+        myNextDead = new long[myNumRows * myWordsPerRow];
+        load(grid);
+    }
+
+    /**
+     * Re-reads the state of every cell from the grid; used when the grid has been changed by something other than
+     * this engine.
+     * @param grid the grid to read from
+     */
+    public void load(Grid grid) {
+        Arrays.fill(myLive, 0L);
+        Arrays.fill(myDead, 0L);
+        for (int row = 0; row < myNumRows; row++) {
+            for (int col = 0; col < myNumCols; col++) {
+                int state = grid.getState(row * myNumCols + col);
+                long bit = 1L << (col & (Long.SIZE - 1));
+                int word = row * myWordsPerRow + col / Long.SIZE;
+                if (state == GameOfLifeSimulation.LIVE) {
+                    myLive[word] |= bit;
+                } else if (state == GameOfLifeSimulation.DEAD) {
+                    myDead[word] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the next generation and sets the next state of every cell that changes on the grid.
+     * @param grid the grid the engine was created from
+     */
+    public void step(Grid grid) {
+        stepRows(grid, 0, myNumRows);
+        finishStep();
+    }
+
+    /**
+     * Computes the next generation of a band of rows and sets the next state of every cell of the band that changes.
+     * Distinct bands can be stepped at the same time from several threads, as long as finishStep is only called once
+     * all of them are done.
+     * @param grid the grid the engine was created from
+     * @param startRow the first row of the band
+     * @param endRow one past the last row of the band
+     */
+    public void stepRows(Grid grid, int startRow, int endRow) {
+        computeRows(startRow, endRow);
+        writeChanges(grid, startRow, endRow);
+    }
+
+    /**
+     * Makes the generation computed by stepRows the current generation of the engine.
+     */
+    public void finishStep() {
+        swapPlanes();
+    }
+
+    private void computeRows(int startRow, int endRow) {
+        for (int row = startRow; row < endRow; row++) {
+            int above = row > 0 ? (row - 1) * myWordsPerRow : -1;
+            int same = row * myWordsPerRow;
+            int below = row < myNumRows - 1 ? (row + 1) * myWordsPerRow : -1;
+            for (int w = 0; w < myWordsPerRow; w++) {
+                long s0 = 0;
+                long s1 = 0;
+                long s2 = 0;
+                long carry0;
+                long carry1;
+                long x;
+
+                long centerAbove = word(above, w);
+                long centerBelow = word(below, w);
+                long center = myLive[same + w];
+
+                x = west(above, w, centerAbove);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = centerAbove;
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = east(above, w, centerAbove);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = west(same, w, center);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = east(same, w, center);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = west(below, w, centerBelow);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = centerBelow;
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+                x = east(below, w, centerBelow);
+                carry0 = s0 & x; s0 ^= x; carry1 = s1 & carry0; s1 ^= carry0; s2 ^= carry1;
+
+                // the counter wraps at 8, which is fine since 0 and 8 neighbors give the same result
+                long twoOrThree = s1 & ~s2;
+                long three = twoOrThree & s0;
+                long live = center;
+                long dead = myDead[same + w];
+                long nextLive = (live & twoOrThree) | (dead & three);
+                myNextLive[same + w] = nextLive;
+                myNextDead[same + w] = (live | dead) & ~nextLive;
+            }
+        }
+    }
+
+    private void writeChanges(Grid grid, int startRow, int endRow) {
+        for (int row = startRow; row < endRow; row++) {
+            for (int w = 0; w < myWordsPerRow; w++) {
+                int word = row * myWordsPerRow + w;
+                long changed = (myLive[word] ^ myNextLive[word]) | (myDead[word] ^ myNextDead[word]);
+                while (changed != 0) {
+                    int bit = Long.numberOfTrailingZeros(changed);
+                    changed &= changed - 1;
+                    int id = row * myNumCols + w * Long.SIZE + bit;
+                    boolean live = (myNextLive[word] & (1L << bit)) != 0;
+                    grid.setNextState(id, live ? GameOfLifeSimulation.LIVE : GameOfLifeSimulation.DEAD);
+                }
+            }
+        }
+    }
+
+    private void swapPlanes() {
+        long[] swap = myLive;
+        myLive = myNextLive;
+        myNextLive = swap;
+        swap = myDead;
+        myDead = myNextDead;
+        myNextDead = swap;
+    }
+
+    private long word(int rowStart, int w) {
+        return rowStart < 0 ? 0L : myLive[rowStart + w];
+    }
+
+    // the neighbor to the west of column c is column c - 1, which sits one bit lower
+    private long west(int rowStart, int w, long center) {
+        if (rowStart < 0) {
+            return 0L;
+        }
+        long previous = w > 0 ? myLive[rowStart + w - 1] : 0L;
+        return (center << 1) | (previous >>> (Long.SIZE - 1));
+    }
+
+    private long east(int rowStart, int w, long center) {
+        if (rowStart < 0) {
+            return 0L;
+        }
+        long next = w < myWordsPerRow - 1 ? myLive[rowStart + w + 1] : 0L;
+        return (center >>> 1) | (next << (Long.SIZE - 1));
+    }
+}
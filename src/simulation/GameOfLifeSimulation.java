@@ -1,9 +1,10 @@
 package simulation;
 
-import config.XMLParser;
-import elements.Cell;
+import elements.CellRule;
 import elements.Grid;
 
+import java.util.StringJoiner;
+
 /**
  * This class represents the Game of Life Simulation. It is used by Game to run the Game of Life Simulation if that is
  * the file that the user selected.
@@ -17,42 +18,161 @@ public class GameOfLifeSimulation extends Simulation {
 
     private int minPopulationThreshold;
     private int maxPopulationThreshold;
-
+    private BitPackedLifeEngine myBitPackedEngine;
+    private HashLifeEngine myHashLifeEngine;
+    private RuleKernel myKernel;
+    private boolean myIsUnbounded;
 
     public GameOfLifeSimulation(Grid grid) {
         super(grid);
         minPopulationThreshold = 2;
         maxPopulationThreshold = 3;
+        TotalisticRule rule = compileRule(grid);
+        if (grid.setUnboundedRule(new UnboundedRule(rule))) {
+            myIsUnbounded = true;
+        } else if (grid.getStencil().isMoore()) {
+            myBitPackedEngine = new BitPackedLifeEngine(grid);
+        } else {
+            myKernel = RuleKernel.compile(grid, rule);
+        }
     }
 
     /**
      * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation based on the specified
-     * rules of the Game of Life.
+     * rules of the Game of Life. Grids with the standard Moore neighborhood are analyzed by a bit-packed engine that
+     * gives the same result 64 cells at a time; other neighborhoods run the thresholds as a compiled table. Grids that
+     * are windows on an unbounded universe are analyzed by the grid, tile by tile, with the same table.
      */
     @Override
     public void analyzeCells() {
-        for(Cell cell: getGrid()){
-                int liveNeighborsCount = countLiveNeighbors(cell.getMyNeighbors());
-                if (cell.getState() == LIVE) {
-                    if (liveNeighborsCount < minPopulationThreshold || liveNeighborsCount > maxPopulationThreshold) {
-                        cell.setMyNextState(DEAD);
-                    }
-                } else if (cell.getState() == DEAD) {
-                    if (liveNeighborsCount == maxPopulationThreshold) {
-                        cell.setMyNextState(LIVE);
-                    }
-                }
+        if (myIsUnbounded) {
+            getGrid().analyzeUnbounded();
+            return;
+        }
+        if (myBitPackedEngine != null) {
+            myBitPackedEngine.step(getGrid());
+            return;
+        }
+        analyzeCells(0, getNumCellsToAnalyze());
+    }
+
+    /**
+     * Every cell only sets its own next state, so the bands of Game of Life can be analyzed in parallel.
+     * @return true
+     */
+    @Override
+    public boolean isBandParallel() {
+        return true;
+    }
+
+    /**
+     * Gets the number of bands of this step; the bit-packed engine works on bands of whole rows.
+     * @return the number of bands
+     */
+    @Override
+    public int getNumBands() {
+        if (myIsUnbounded) {
+            return 1;
+        }
+        if (myBitPackedEngine != null) {
+            return (getGrid().getNumRows() + getRowsPerBand() - 1) / getRowsPerBand();
+        }
+        return getNumCellBands();
+    }
+
+    @Override
+    public void analyzeBand(int band) {
+        if (myBitPackedEngine != null) {
+            int startRow = band * getRowsPerBand();
+            myBitPackedEngine.stepRows(getGrid(), startRow, Math.min(getGrid().getNumRows(), startRow + getRowsPerBand()));
+            return;
+        }
+        analyzeCells(getBandStart(band), getBandEnd(band));
+    }
+
+    @Override
+    public void finishBands() {
+        if (myBitPackedEngine != null) {
+            myBitPackedEngine.finishStep();
+        }
+    }
+
+    private void analyzeCells(int start, int end) {
+        myKernel.analyze(getGrid().getActiveCells(), start, end);
+    }
+
+    // a LIVE cell dies outside of the thresholds and a DEAD cell with exactly the maximum comes alive; empty cells stay
+    private TotalisticRule compileRule(Grid grid) {
+        int maxNeighbors = grid.getStencil().size();
+        StringJoiner transitions = new StringJoiner(" / ");
+        transitions.add(DEAD + " " + maxPopulationThreshold + " " + LIVE);
+        for (int count = 0; count <= maxNeighbors; count++) {
+            if (count < minPopulationThreshold || count > maxPopulationThreshold) {
+                transitions.add(LIVE + " " + count + " " + DEAD);
             }
         }
+        int maxState = DEAD;
+        for (int id = 0; id < grid.getSize(); id++) {
+            maxState = Math.max(maxState, grid.getState(id));
+        }
+        return new TotalisticRule(null, transitions.toString(), maxState + 1, maxNeighbors);
+    }
+
+    private int getRowsPerBand() {
+        return Math.max(1, BAND_SIZE / getGrid().getNumCols());
+    }
 
+    /**
+     * The thresholds as a rule of the unbounded universe, in which every cell around the board starts DEAD.
+     */
+    private static final class UnboundedRule implements CellRule {
+        private final TotalisticRule myRule;
 
-    private int countLiveNeighbors(Cell[] neighbors) {
-        int liveNeighborsCount = 0;
-        for (Cell neighbor : neighbors) {
-            if (neighbor.getState() == LIVE) {
-                liveNeighborsCount++;
+        private UnboundedRule(TotalisticRule rule) {
+            myRule = rule;
+        }
+
+        @Override
+        public int getBackground() {
+            return DEAD;
+        }
+
+        @Override
+        public int getNextState(int state, int[] neighborCounts) {
+            return myRule.getNextState(state, neighborCounts[LIVE]);
+        }
+    }
+
+
+    /**
+     * Fast-forwards the simulation to the given generation. On a bounded grid with the Moore neighborhood this uses the
+     * HashLife engine, which jumps ahead by powers of two generations and is very fast for periodic and sparse
+     * patterns; otherwise the simulation is stepped one generation at a time. The interface does not offer this; it
+     * is meant for code that drives the simulation itself, and must not be called while a SimulationRunner is stepping
+     * the simulation.
+     * @param generation the generation to move to, which must not be before the current generation
+     */
+    public void fastForwardTo(long generation) {
+        long generations = generation - getGeneration();
+        if (generations < 0) {
+            throw new IllegalArgumentException("Cannot fast-forward to an earlier generation");
+        }
+        if (myBitPackedEngine == null) {
+            for (long i = 0; i < generations; i++) {
+                analyzeCells();
+                updateCells();
             }
+            return;
+        }
+        if (myHashLifeEngine == null) {
+            myHashLifeEngine = new HashLifeEngine(getGrid());
+        } else {
+            myHashLifeEngine.load(getGrid());
         }
-        return liveNeighborsCount;
+        myHashLifeEngine.advance(generations);
+        myHashLifeEngine.writeTo(getGrid());
+        updateCells();
+        setGeneration(generation);
+        myBitPackedEngine.load(getGrid());
     }
 }
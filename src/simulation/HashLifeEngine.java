@@ -0,0 +1,370 @@
+package simulation;
+
+import elements.Grid;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class runs the Game of Life rule with the HashLife algorithm, which lets GameOfLifeSimulation jump ahead by
+ * millions of generations when the pattern is periodic or sparse. The board is kept as a quadtree whose nodes are
+ * canonical, so that identical regions share one node, and every node remembers the result of advancing its center by
+ * a power of two generations.
+ *
+ * Memory is bounded by a collection pass rather than by evicting single nodes, since an evicted node stays reachable
+ * from the board and from the results of other nodes, and losing its canonical identity would only lower the hit rate
+ * of the results. Once a jump leaves more canonical nodes than the bound, every remembered result is dropped and only
+ * the nodes of the current board are kept, so they stay canonical and everything else can be garbage collected. The
+ * bound is checked between jumps, so a single large jump can go over it for a while.
+ *
+ * The grid is surrounded by empty cells, which never become live in the Game of Life rule, so running on the quadtree
+ * gives exactly the same result as stepping the bounded grid one generation at a time. Only the Moore neighborhood is
+ * supported.
+ * @author Sumer Vardhan
+ */
+public class HashLifeEngine {
+    public static final int DEFAULT_MAX_CACHED_NODES = 1 << 20;
+
+    private static final int EMPTY = 0;
+    private static final int MAX_JUMP = 60;
+
+    private final int myNumRows;
+    private final int myNumCols;
+    private final int myMaxCachedNodes;
+    private final Map<Node, Node> myNodes = new HashMap<>();
+    private final Node[] myEmptyNodes = new Node[Long.SIZE + 1];
+    private Node myRoot;
+    private long myOriginRow;
+    private long myOriginCol;
+
+    /**
+     * Creates an engine for the grid with the default node cache size and loads its current state.
+     * @param grid the grid of a Game of Life simulation whose neighborhood is the Moore neighborhood
+     */
+    public HashLifeEngine(Grid grid) {
+        this(grid, DEFAULT_MAX_CACHED_NODES);
+    }
+
+    /**
+     * Creates an engine for the grid and loads its current state.
+     * @param grid the grid of a Game of Life simulation whose neighborhood is the Moore neighborhood
+     * @param maxCachedNodes the number of canonical nodes above which the engine drops its remembered results and keeps
+     * only the nodes of the current board
+     */
+    public HashLifeEngine(Grid grid, int maxCachedNodes) {
+        myNumRows = grid.getNumRows();
+        myNumCols = grid.getNumCols();
+        myMaxCachedNodes = maxCachedNodes;
+        load(grid);
+    }
+
+    /**
+     * Rebuilds the quadtree from the current state of the grid. Results remembered by nodes that are still cached are
+     * kept until the next collection, so repeated fast-forwards of similar boards stay cheap.
+     * @param grid the grid the engine was created from
+     */
+    public void load(Grid grid) {
+        int level = 2;
+        while ((1L << level) < Math.max(myNumRows, myNumCols)) {
+            level++;
+        }
+        myOriginRow = 0;
+        myOriginCol = 0;
+        myRoot = build(grid, level, 0, 0);
+        collectIfFull();
+    }
+
+    /**
+     * Gets the number of canonical nodes the engine holds, which is what its memory use is proportional to.
+     * @return the number of cached nodes
+     */
+    public int getNumCachedNodes() {
+        return myNodes.size();
+    }
+
+    /**
+     * Advances the board by the given number of generations, jumping by the largest powers of two that fit.
+     * @param generations the number of generations to advance by
+     */
+    public void advance(long generations) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("Cannot advance by a negative number of generations");
+        }
+        while (generations > 0) {
+            int jump = Math.min(MAX_JUMP, Long.SIZE - 1 - Long.numberOfLeadingZeros(generations));
+            advanceByPowerOfTwo(jump);
+            generations -= 1L << jump;
+            collectIfFull();
+        }
+    }
+
+    /**
+     * Sets the next state on the grid of every cell whose state differs from the board held by the engine, so that
+     * updating the grid afterwards brings it to the generation the engine has reached.
+     * @param grid the grid the engine was created from
+     */
+    public void writeTo(Grid grid) {
+        write(grid, myRoot, -myOriginRow, -myOriginCol);
+    }
+
+    private void advanceByPowerOfTwo(int jump) {
+        while (myRoot.myLevel < jump + 2 || !isGridInCenter()) {
+            expand();
+        }
+        long quarter = 1L << (myRoot.myLevel - 2);
+        myRoot = successor(myRoot, jump);
+        myOriginRow -= quarter;
+        myOriginCol -= quarter;
+    }
+
+    // drops every remembered result and keeps only the nodes that make up the board and the empty nodes
+    private void collectIfFull() {
+        if (myNodes.size() <= myMaxCachedNodes) {
+            return;
+        }
+        for (Node node : myNodes.keySet()) {
+            node.myResult = null;
+            node.myResultJump = -1;
+        }
+        myNodes.clear();
+        for (Node node : myEmptyNodes) {
+            if (node != null) {
+                myNodes.put(node, node);
+            }
+        }
+        keep(myRoot);
+    }
+
+    private void keep(Node node) {
+        if (myNodes.putIfAbsent(node, node) != null || node.myLevel == 0) {
+            return;
+        }
+        keep(node.myNW);
+        keep(node.myNE);
+        keep(node.mySW);
+        keep(node.mySE);
+    }
+
+    private boolean isGridInCenter() {
+        long quarter = 1L << (myRoot.myLevel - 2);
+        return myOriginRow >= quarter && myOriginRow + myNumRows <= 3 * quarter
+                && myOriginCol >= quarter && myOriginCol + myNumCols <= 3 * quarter;
+    }
+
+    private void expand() {
+        int level = myRoot.myLevel;
+        Node border = empty(level - 1);
+        myRoot = join(join(border, border, border, myRoot.myNW),
+                join(border, border, myRoot.myNE, border),
+                join(border, myRoot.mySW, border, border),
+                join(myRoot.mySE, border, border, border));
+        myOriginRow += 1L << (level - 1);
+        myOriginCol += 1L << (level - 1);
+    }
+
+    // returns the center half of the node, advanced by 2^jump generations; jump is at most level - 2
+    private Node successor(Node node, int jump) {
+        if (node.myResult != null && node.myResultJump == jump) {
+            return node.myResult;
+        }
+        Node result;
+        if (node.myLevel == 2) {
+            result = stepCenter(node);
+        } else {
+            boolean full = jump == node.myLevel - 2;
+            Node nw = node.myNW;
+            Node ne = node.myNE;
+            Node sw = node.mySW;
+            Node se = node.mySE;
+
+            Node m00 = nw;
+            Node m01 = join(nw.myNE, ne.myNW, nw.mySE, ne.mySW);
+            Node m02 = ne;
+            Node m10 = join(nw.mySW, nw.mySE, sw.myNW, sw.myNE);
+            Node m11 = join(nw.mySE, ne.mySW, sw.myNE, se.myNW);
+            Node m12 = join(ne.mySW, ne.mySE, se.myNW, se.myNE);
+            Node m20 = sw;
+            Node m21 = join(sw.myNE, se.myNW, sw.mySE, se.mySW);
+            Node m22 = se;
+
+            Node s00 = firstStage(m00, full);
+            Node s01 = firstStage(m01, full);
+            Node s02 = firstStage(m02, full);
+            Node s10 = firstStage(m10, full);
+            Node s11 = firstStage(m11, full);
+            Node s12 = firstStage(m12, full);
+            Node s20 = firstStage(m20, full);
+            Node s21 = firstStage(m21, full);
+            Node s22 = firstStage(m22, full);
+
+            int secondJump = full ? node.myLevel - 3 : jump;
+            result = join(successor(join(s00, s01, s10, s11), secondJump),
+                    successor(join(s01, s02, s11, s12), secondJump),
+                    successor(join(s10, s11, s20, s21), secondJump),
+                    successor(join(s11, s12, s21, s22), secondJump));
+        }
+        node.myResult = result;
+        node.myResultJump = jump;
+        return result;
+    }
+
+    private Node firstStage(Node node, boolean full) {
+        if (full) {
+            return successor(node, node.myLevel - 2);
+        }
+        return join(node.myNW.mySE, node.myNE.mySW, node.mySW.myNE, node.mySE.myNW);
+    }
+
+    // advances the center 2x2 cells of a 4x4 node by one generation
+    private Node stepCenter(Node node) {
+        int[][] cells = new int[4][4];
+        Node[] quadrants = {node.myNW, node.myNE, node.mySW, node.mySE};
+        for (int q = 0; q < quadrants.length; q++) {
+            int row = (q / 2) * 2;
+            int col = (q % 2) * 2;
+            cells[row][col] = quadrants[q].myNW.myState;
+            cells[row][col + 1] = quadrants[q].myNE.myState;
+            cells[row + 1][col] = quadrants[q].mySW.myState;
+            cells[row + 1][col + 1] = quadrants[q].mySE.myState;
+        }
+        return join(leaf(nextState(cells, 1, 1)), leaf(nextState(cells, 1, 2)),
+                leaf(nextState(cells, 2, 1)), leaf(nextState(cells, 2, 2)));
+    }
+
+    private int nextState(int[][] cells, int row, int col) {
+        int liveNeighborsCount = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                if ((dr != 0 || dc != 0) && cells[row + dr][col + dc] == GameOfLifeSimulation.LIVE) {
+                    liveNeighborsCount++;
+                }
+            }
+        }
+        int state = cells[row][col];
+        if (state == GameOfLifeSimulation.LIVE) {
+            return liveNeighborsCount == 2 || liveNeighborsCount == 3 ? GameOfLifeSimulation.LIVE : GameOfLifeSimulation.DEAD;
+        } else if (state == GameOfLifeSimulation.DEAD) {
+            return liveNeighborsCount == 3 ? GameOfLifeSimulation.LIVE : GameOfLifeSimulation.DEAD;
+        }
+        return state;
+    }
+
+    private Node build(Grid grid, int level, long row, long col) {
+        long size = 1L << level;
+        if (row >= myNumRows || col >= myNumCols || row + size <= 0 || col + size <= 0) {
+            return empty(level);
+        }
+        if (level == 0) {
+            return leaf(grid.getState((int) row * myNumCols + (int) col));
+        }
+        long half = size / 2;
+        return join(build(grid, level - 1, row, col), build(grid, level - 1, row, col + half),
+                build(grid, level - 1, row + half, col), build(grid, level - 1, row + half, col + half));
+    }
+
+    private void write(Grid grid, Node node, long row, long col) {
+        long size = 1L << node.myLevel;
+        if (row >= myNumRows || col >= myNumCols || row + size <= 0 || col + size <= 0) {
+            return;
+        }
+        if (node.myLevel == 0) {
+            int id = (int) row * myNumCols + (int) col;
+            if (grid.getState(id) != node.myState) {
+                grid.setNextState(id, node.myState);
+            }
+            return;
+        }
+        long half = size / 2;
+        write(grid, node.myNW, row, col);
+        write(grid, node.myNE, row, col + half);
+        write(grid, node.mySW, row + half, col);
+        write(grid, node.mySE, row + half, col + half);
+    }
+
+    private Node empty(int level) {
+        if (myEmptyNodes[level] == null) {
+            if (level == 0) {
+                myEmptyNodes[level] = leaf(EMPTY);
+            } else {
+                Node child = empty(level - 1);
+                myEmptyNodes[level] = join(child, child, child, child);
+            }
+        }
+        return myEmptyNodes[level];
+    }
+
+    private Node leaf(int state) {
+        return canonical(new Node(state));
+    }
+
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        return canonical(new Node(nw, ne, sw, se));
+    }
+
+    private Node canonical(Node node) {
+        Node existing = myNodes.get(node);
+        if (existing != null) {
+            return existing;
+        }
+        myNodes.put(node, node);
+        return node;
+    }
+
+    /**
+     * A square of 2^level by 2^level cells. Leaves are single cells; other nodes are made of four children one level
+     * down. Two nodes are equal when they are at the same level and have the same children, so that the cache can
+     * hand out one canonical node for every distinct region.
+     */
+    private static final class Node {
+        private final int myLevel;
+        private final int myState;
+        private final Node myNW;
+        private final Node myNE;
+        private final Node mySW;
+        private final Node mySE;
+        private final int myHash;
+        private Node myResult;
+        private int myResultJump = -1;
+
+        private Node(int state) {
+            myLevel = 0;
+            myState = state;
+            myNW = null;
+            myNE = null;
+            mySW = null;
+            mySE = null;
+            myHash = state;
+        }
+
+        private Node(Node nw, Node ne, Node sw, Node se) {
+            myLevel = nw.myLevel + 1;
+            myState = EMPTY;
+            myNW = nw;
+            myNE = ne;
+            mySW = sw;
+            mySE = se;
+            myHash = ((nw.myHash * 31 + ne.myHash) * 31 + sw.myHash) * 31 + se.myHash + myLevel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            if (myLevel == 0) {
+                return other.myLevel == 0 && myState == other.myState;
+            }
+            return myLevel == other.myLevel && myNW == other.myNW && myNE == other.myNE
+                    && mySW == other.mySW && mySE == other.mySE;
+        }
+
+        @Override
+        public int hashCode() {
+            return myHash;
+        }
+    }
+}
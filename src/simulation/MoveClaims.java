@@ -0,0 +1,59 @@
+package simulation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class resolves the moves of agents that pick their target cells at the same time on several threads. Every
+ * agent claims its target with a lock-free compare-and-set, and when several agents claim the same cell the agent with
+ * the lowest id wins, so the outcome does not depend on which thread got there first.
+ *
+ * Each claim is stored together with the round it was made in, so starting a new round does not need to clear the
+ * claims of the previous one.
+ * @author Sumer Vardhan
+ */
+public class MoveClaims {
+    private final AtomicLongArray myClaims;
+    private long myRound;
+
+    /**
+     * Creates the claims for a grid.
+     * @param size the number of cells of the grid
+     */
+    public MoveClaims(int size) {
+        myClaims = new AtomicLongArray(size);
+    }
+
+    /**
+     * Starts a new round of claims; claims made in earlier rounds no longer count. Must not be called while agents
+     * are claiming.
+     */
+    public void startRound() {
+        myRound++;
+    }
+
+    /**
+     * Claims a cell for an agent. Safe to call from several threads at once.
+     * @param target the id of the cell the agent wants to move to
+     * @param agent the id of the cell the agent is in
+     */
+    public void claim(int target, int agent) {
+        long claim = (myRound << Integer.SIZE) | agent;
+        long current = myClaims.get(target);
+        while ((current >>> Integer.SIZE) != myRound || (int) current > agent) {
+            if (myClaims.compareAndSet(target, current, claim)) {
+                return;
+            }
+            current = myClaims.get(target);
+        }
+    }
+
+    /**
+     * Checks whether an agent won the cell it claimed in this round; only meaningful once every agent has claimed.
+     * @param target the id of the cell the agent claimed
+     * @param agent the id of the cell the agent is in
+     * @return true if no agent with a lower id claimed the same cell
+     */
+    public boolean isWinner(int target, int agent) {
+        return myClaims.get(target) == ((myRound << Integer.SIZE) | agent);
+    }
+}
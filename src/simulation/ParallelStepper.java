@@ -0,0 +1,144 @@
+package simulation;
+
+import elements.Grid;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * This class steps a simulation on a ForkJoinPool. The cells to analyze are split into the bands given by the
+ * simulation, which are analyzed in parallel, and the grid is then committed in parallel ranges of cells. Simulations
+ * that are not band parallel are analyzed on the calling thread, and grids whose storage cannot be written from several
+ * threads are stepped on the calling thread exactly as Game does without this class.
+ *
+ * When the grid tracks changes, each band records the cells it sets, and the commit ranges split those cells instead
+ * of the whole grid, so a parallel step costs as much as its changes just like a serial one.
+ * @author Sumer Vardhan
+ */
+public class ParallelStepper {
+    private static final int COMMIT_RANGE = 1 << 16;
+
+    private final ForkJoinPool myPool;
+
+    /**
+     * Creates a stepper that runs on the common pool, which has one thread per core.
+     */
+    public ParallelStepper() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a stepper that runs on the given pool.
+     * @param pool the pool that analyzes the bands and commits the grid
+     */
+    public ParallelStepper(ForkJoinPool pool) {
+        myPool = pool;
+    }
+
+    /**
+     * Moves the simulation forward by one generation; this has the same result as calling analyzeCells and then
+     * updateCells.
+     * @param simulation the simulation to step
+     */
+    public void step(Simulation simulation) {
+        Grid grid = simulation.getGrid();
+        int numBands = simulation.isBandParallel() && grid.supportsParallelSteps() ? simulation.getNumBands() : 1;
+        if (numBands <= 1) {
+            simulation.analyzeCells();
+            simulation.updateCells();
+            return;
+        }
+        grid.beginParallelStep(numBands);
+        try {
+            forEachBand(numBands, band -> grid.runBand(band, simulation::analyzeBand));
+        } finally {
+            grid.endParallelStep();
+        }
+        simulation.finishBands();
+        simulation.updateCells();
+    }
+
+    /**
+     * Moves every cell of the grid to its next state, committing ranges of cells in parallel. The grid must support
+     * parallel steps.
+     * @param grid the grid to update
+     */
+    public void commit(Grid grid) {
+        int numRanges = grid.beginCommit(COMMIT_RANGE);
+        if (numRanges == 1) {
+            grid.commitRange(0);
+        } else if (numRanges > 1) {
+            myPool.invoke(new CommitRanges(grid, 0, numRanges));
+        }
+        grid.endCommit();
+    }
+
+    /**
+     * Runs an action on every band, in parallel on the pool of this stepper, and returns once all of them are done.
+     * Used by simulations whose steps have phases that can run in parallel even though the simulation as a whole is
+     * not band parallel.
+     * @param numBands the number of bands
+     * @param action the action to run, which is given the band to work on
+     */
+    public void forEachBand(int numBands, IntConsumer action) {
+        if (numBands > 0) {
+            myPool.invoke(new EachBand(action, 0, numBands));
+        }
+    }
+
+    /**
+     * Runs the action on the bands from myStart up to myEnd, splitting the range in half until a single band is left.
+     */
+    private static final class EachBand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer myAction;
+        private final int myStart;
+        private final int myEnd;
+
+        private EachBand(IntConsumer action, int start, int end) {
+            myAction = action;
+            myStart = start;
+            myEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (myEnd - myStart == 1) {
+                myAction.accept(myStart);
+                return;
+            }
+            int middle = (myStart + myEnd) >>> 1;
+            invokeAll(new EachBand(myAction, myStart, middle), new EachBand(myAction, middle, myEnd));
+        }
+    }
+
+    /**
+     * Commits the ranges of COMMIT_RANGE cells from myStart up to myEnd, splitting the work in half until a single
+     * range is left.
+     */
+    private static final class CommitRanges extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid myGrid;
+        private final int myStart;
+        private final int myEnd;
+
+        private CommitRanges(Grid grid, int start, int end) {
+            myGrid = grid;
+            myStart = start;
+            myEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (myEnd - myStart == 1) {
+                myGrid.commitRange(myStart);
+                return;
+            }
+            int middle = (myStart + myEnd) >>> 1;
+            invokeAll(new CommitRanges(myGrid, myStart, middle), new CommitRanges(myGrid, middle, myEnd));
+        }
+    }
+}
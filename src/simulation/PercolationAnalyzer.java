@@ -0,0 +1,159 @@
+package simulation;
+
+import elements.Grid;
+import elements.NeighborIndex;
+
+/**
+ * This class works out in a single pass which cells a Percolation board ends up filling, instead of flooding outward
+ * one ring of neighbors per generation. Every OPEN cell that can be reached from a FULL cell through a chain of
+ * neighbors that are not BLOCKED is eventually filled.
+ *
+ * On a symmetric neighborhood the open and full cells are joined into clusters with a weighted union-find, and the
+ * clusters that contain a FULL cell are the ones that fill. On neighborhoods that list offsets in one direction only,
+ * such as the hexagonal configuration, fluid only flows from a cell to its listed neighbors, so the cells are found with
+ * a breadth-first search from the FULL cells instead. Both take time close to linear in the size of the board.
+ * @author Sumer Vardhan
+ */
+public class PercolationAnalyzer {
+    private final Grid myGrid;
+    private final int mySize;
+    private final boolean myIsSymmetric;
+    private final int[] myParents;
+    private final int[] myClusterSizes;
+    private final boolean[] myWillFill;
+    private final int[] myQueue;
+
+    /**
+     * Creates an analyzer for the board of a Percolation simulation.
+     * @param grid the grid of the simulation
+     */
+    public PercolationAnalyzer(Grid grid) {
+        myGrid = grid;
+        mySize = grid.getSize();
+        myIsSymmetric = grid.getStencil().isSymmetric();
+        myParents = myIsSymmetric ? new int[mySize + 1] : null;
+        myClusterSizes = myIsSymmetric ? new int[mySize + 1] : null;
+        myQueue = myIsSymmetric ? null : new int[mySize];
+        myWillFill = new boolean[mySize];
+    }
+
+    /**
+     * Works out which cells the current board ends up filling; the results are read with willFill and percolates.
+     */
+    public void analyze() {
+        if (myIsSymmetric) {
+            analyzeClusters();
+        } else {
+            analyzeFlow();
+        }
+    }
+
+    /**
+     * Checks whether a cell is FULL once the board has stopped changing. Only valid after analyze.
+     * @param id the id of the cell
+     * @return true if the cell is FULL or will be filled
+     */
+    public boolean willFill(int id) {
+        return myWillFill[id];
+    }
+
+    /**
+     * Checks whether the board percolates, meaning that the fluid reaches the bottom row of the grid. Only valid after
+     * analyze.
+     * @return true if a cell of the last row is FULL once the board has stopped changing
+     */
+    public boolean percolates() {
+        for (int id = mySize - myGrid.getNumCols(); id < mySize; id++) {
+            if (myWillFill[id]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the next state of every OPEN cell that the board ends up filling to FULL. Only valid after analyze.
+     */
+    public void writeFill() {
+        for (int id = 0; id < mySize; id++) {
+            if (myWillFill[id] && myGrid.getState(id) == PercolationSimulation.OPEN) {
+                myGrid.setNextState(id, PercolationSimulation.FULL);
+            }
+        }
+    }
+
+    private void analyzeClusters() {
+        int source = mySize;
+        for (int id = 0; id <= mySize; id++) {
+            myParents[id] = id;
+            myClusterSizes[id] = 1;
+        }
+        NeighborIndex neighbors = myGrid.getNeighbors();
+        for (int id = 0; id < mySize; id++) {
+            int state = myGrid.getState(id);
+            if (state == PercolationSimulation.BLOCKED) {
+                continue;
+            }
+            if (state == PercolationSimulation.FULL) {
+                union(id, source);
+            }
+            for (int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++) {
+                int neighbor = neighbors.getNeighbor(k);
+                if (neighbor > id && myGrid.getState(neighbor) != PercolationSimulation.BLOCKED) {
+                    union(id, neighbor);
+                }
+            }
+        }
+        int sourceRoot = find(source);
+        for (int id = 0; id < mySize; id++) {
+            myWillFill[id] = myGrid.getState(id) != PercolationSimulation.BLOCKED && find(id) == sourceRoot;
+        }
+    }
+
+    private void analyzeFlow() {
+        int head = 0;
+        int tail = 0;
+        for (int id = 0; id < mySize; id++) {
+            myWillFill[id] = myGrid.getState(id) == PercolationSimulation.FULL;
+            if (myWillFill[id]) {
+                myQueue[tail++] = id;
+            }
+        }
+        NeighborIndex neighbors = myGrid.getNeighbors();
+        while (head < tail) {
+            int id = myQueue[head++];
+            for (int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++) {
+                int neighbor = neighbors.getNeighbor(k);
+                if (!myWillFill[neighbor] && myGrid.getState(neighbor) == PercolationSimulation.OPEN) {
+                    myWillFill[neighbor] = true;
+                    myQueue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    // follows parents to the root, pointing every other cell on the way at its grandparent
+    private int find(int id) {
+        while (myParents[id] != id) {
+            myParents[id] = myParents[myParents[id]];
+            id = myParents[id];
+        }
+        return id;
+    }
+
+    // joins the smaller cluster under the root of the larger one, which keeps the trees shallow
+    private void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (myClusterSizes[firstRoot] < myClusterSizes[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        }
+        myParents[secondRoot] = firstRoot;
+        myClusterSizes[firstRoot] += myClusterSizes[secondRoot];
+    }
+}
@@ -1,14 +1,15 @@
 package simulation;
 
-import elements.Cell;
 import elements.Grid;
-
-import java.util.ArrayList;
-import java.util.List;
+import elements.NeighborIndex;
 
 /**
  * This class represents the Percolation Simulation. It is used by Game to run the Percolation Simulation if that is
  * the file that the user selected.
+ *
+ * A FULL cell never changes and fills its OPEN neighbors on the step after it was filled, so each step only has to look
+ * at the frontier of cells filled on the previous step. Whether the board percolates, and what it looks like once it
+ * stops changing, can be answered without stepping through a PercolationAnalyzer.
  * @author Shreya Hurli
  */
 public class PercolationSimulation extends Simulation {
@@ -16,32 +17,75 @@ public class PercolationSimulation extends Simulation {
     public static final int FULL = 1;
     public static final int BLOCKED = 2;
 
-    public PercolationSimulation(Grid grid) { super(grid); }
+    private int[] myFrontier;
+    private int myFrontierSize;
+    private int[] myNextFrontier;
+    private PercolationAnalyzer myAnalyzer;
+
+    public PercolationSimulation(Grid grid) {
+        super(grid);
+        myFrontier = new int[grid.getSize()];
+        myNextFrontier = new int[grid.getSize()];
+        for (int id = 0; id < grid.getSize(); id++) {
+            if (grid.getState(id) == FULL) {
+                myFrontier[myFrontierSize++] = id;
+            }
+        }
+    }
 
     /**
      * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation based on the specified
-     * rules of Percolation.
+     * rules of Percolation. Only the cells filled on the previous step are visited, since every other FULL cell has
+     * already filled its neighbors.
      */
     @Override
     public void analyzeCells(){
-        for(Cell cell: getGrid()){
-            Cell[] neighborsToFill = openNeighbors(cell.getMyNeighbors());
-            if(cell.getState() == FULL && neighborsToFill.length != 0){
-                for(Cell openNeighbor : neighborsToFill){
-                    openNeighbor.setMyNextState(FULL);
-                }
-            }
+        int nextFrontierSize = 0;
+        for(int i = 0; i < myFrontierSize; i++){
+            nextFrontierSize = fillOpenNeighbors(myFrontier[i], nextFrontierSize);
+        }
+        int[] swap = myFrontier;
+        myFrontier = myNextFrontier;
+        myNextFrontier = swap;
+        myFrontierSize = nextFrontierSize;
+    }
+
+    /**
+     * Checks whether the board percolates, meaning that the fluid eventually reaches the bottom row of the grid. This is
+     * answered in a single pass over the board, without stepping.
+     * @return true if a cell of the last row ends up FULL
+     */
+    public boolean percolates() {
+        getAnalyzer().analyze();
+        return getAnalyzer().percolates();
+    }
+
+    /**
+     * Moves the board straight to the state it would stop changing in, as a single generation.
+     */
+    public void fillToCompletion() {
+        getAnalyzer().analyze();
+        getAnalyzer().writeFill();
+        updateCells();
+        myFrontierSize = 0;
+    }
 
+    private PercolationAnalyzer getAnalyzer() {
+        if (myAnalyzer == null) {
+            myAnalyzer = new PercolationAnalyzer(getGrid());
         }
+        return myAnalyzer;
     }
 
-    private Cell[] openNeighbors(Cell[] neighbors){
-        List<Cell> openCells = new ArrayList<>();
-        for(Cell neighbor : neighbors){
-            if(neighbor.getState() == OPEN){
-                openCells.add(neighbor);
+    private int fillOpenNeighbors(int id, int nextFrontierSize){
+        NeighborIndex neighbors = getGrid().getNeighbors();
+        for(int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++){
+            int neighbor = neighbors.getNeighbor(k);
+            if(getGrid().getState(neighbor) == OPEN && getGrid().getNextState(neighbor) == OPEN){
+                getGrid().setNextState(neighbor, FULL);
+                myNextFrontier[nextFrontierSize++] = neighbor;
             }
         }
-        return openCells.toArray(new Cell[0]);
+        return nextFrontierSize;
     }
 }
@@ -1,11 +1,13 @@
 package simulation;
 
 import config.XMLSimulationParser;
-import elements.Cell;
+import elements.AgentAttribute;
 import elements.Grid;
+import elements.IndexedIntSet;
+import elements.NeighborIndex;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class represents the Predator and Prey Simulation. It is used by Game to run the Predator and Prey Simulation if that is
@@ -17,15 +19,26 @@ public class PredatorPreySimulation extends Simulation {
     public static final int FISH = 1;
     public static final int SHARK = 2;
 
+    private static final int NO_TARGET = -1;
+    private static final int STARVED = -2;
+
     private XMLSimulationParser myXMLParser;
     private double myStartingSharkEnergy;
     private double mySharkEnergyGain;
     private double mySharkEnergyLoss;
     private double mySharkReproducibilityThreshold;
     private double myFishReproducibilityThreshold;
-    private HashMap<Cell, Double> mySharkEnergyMap = new HashMap<>();
-    private HashMap<Cell, Double> mySharkMovesMap = new HashMap<>();
-    private HashMap<Cell, Double> myFishMovesMap = new HashMap<>();
+    private AgentAttribute mySharkEnergy;
+    private AgentAttribute mySharkMoves;
+    private AgentAttribute myFishMoves;
+    private int[] myTargets;
+    private MoveClaims myClaims;
+    private IndexedIntSet myFish;
+    private IndexedIntSet mySharks;
+    private int[] myAgents;
+    private int myNumAgents;
+    private int[][] myEmptyNeighbors = new int[0][];
+    private int[][] myFishNeighbors = new int[0][];
 
     public PredatorPreySimulation(Grid grid) {
         super(grid);
@@ -35,168 +48,254 @@ public class PredatorPreySimulation extends Simulation {
         mySharkEnergyLoss = myXMLParser.getParameters().get("shark_energy_loss");
         mySharkReproducibilityThreshold = myXMLParser.getParameters().get("shark_reproducibility_threshold");
         myFishReproducibilityThreshold = myXMLParser.getParameters().get("fish_reproducibility_threshold");
+        myTargets = new int[grid.getSize()];
+        myClaims = new MoveClaims(grid.getSize());
+        mySharkEnergy = new AgentAttribute(grid.getSize());
+        mySharkMoves = new AgentAttribute(grid.getSize());
+        myFishMoves = new AgentAttribute(grid.getSize());
+        myFish = new IndexedIntSet(grid.getSize());
+        mySharks = new IndexedIntSet(grid.getSize());
+        myAgents = new int[grid.getSize()];
 
         for(int id = 0; id < getGrid().getSize(); id++){
-            Cell cell = getGrid().getCell(id);
-            if (cell.getState() == FISH) {
-                myFishMovesMap.put(cell, 0.0);
-            } else if (cell.getState() == SHARK) {
-                mySharkMovesMap.put(cell, 0.0);
-                mySharkEnergyMap.put(cell, myStartingSharkEnergy);
+            if (getGrid().getState(id) == FISH) {
+                myFish.add(id);
+            } else if (getGrid().getState(id) == SHARK) {
+                mySharks.add(id);
+                mySharkEnergy.set(id, myStartingSharkEnergy);
             }
         }
     }
 
     /**
      * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation based on the specified
-     * rules of the Predator and Prey.
+     * rules of the Predator and Prey. Fish move first and sharks second. In each of the two phases every agent proposes
+     * a target cell, which can be done in parallel since proposals only read the grid; the agents then claim their
+     * targets, and when several agents want the same cell the one with the lowest id gets it while the others stay put.
+     * Since every cell is won by at most one agent, the moves only write to cells of their own and are applied in
+     * parallel as well, so the result does not depend on the number of threads.
+     *
+     * The simulation keeps lists of the cells that hold fish and sharks, so a step only visits the agents and empty
+     * water costs nothing.
      */
     @Override
     public void analyzeCells() {
-        clearCellAvailability();
-        analyzeFishCells();
+        myNumAgents = myFish.copyTo(myAgents);
+        int numBands = (myNumAgents + BAND_SIZE - 1) / BAND_SIZE;
+        ensureNeighborBuffers(numBands);
+        myClaims.startRound();
+        forEachBand(numBands, this::proposeFishMoves);
+        forEachBandSettingStates(numBands, this::applyFishMoves);
+        updateFishList();
 
-        clearCellAvailability();
-        analyzeSharkCells();
+        myNumAgents = mySharks.copyTo(myAgents);
+        numBands = (myNumAgents + BAND_SIZE - 1) / BAND_SIZE;
+        ensureNeighborBuffers(numBands);
+        myClaims.startRound();
+        forEachBand(numBands, this::proposeSharkMoves);
+        forEachBandSettingStates(numBands, this::applySharkMoves);
+        updateSharkList();
     }
 
-    private void analyzeFishCells() {
-        for(int id = 0; id < getGrid().getSize(); id++){
-            Cell cell = getGrid().getCell(id);
-            if (cell.getState() == FISH) {
-                Cell[] emptyNeighbors = checkNeighborsForCondition(FISH, EMPTY, cell.getMyNeighbors());
-                if (emptyNeighbors.length != 0) {
-                    moveFishToNeighbor(cell, emptyNeighbors);
-                }
+    // every band gets neighbor buffers of its own, which are kept from step to step
+    private void ensureNeighborBuffers(int numBands) {
+        if (myEmptyNeighbors.length >= numBands) {
+            return;
+        }
+        int numNeighbors = getGrid().getStencil().size();
+        int oldNumBands = myEmptyNeighbors.length;
+        myEmptyNeighbors = Arrays.copyOf(myEmptyNeighbors, numBands);
+        myFishNeighbors = Arrays.copyOf(myFishNeighbors, numBands);
+        for (int band = oldNumBands; band < numBands; band++) {
+            myEmptyNeighbors[band] = new int[numNeighbors];
+            myFishNeighbors[band] = new int[numNeighbors];
+        }
+    }
+
+    private void proposeFishMoves(int band) {
+        SplittableRandom random = getRandom(2 * band);
+        int[] emptyNeighbors = myEmptyNeighbors[band];
+        int end = Math.min(myNumAgents, (band + 1) * BAND_SIZE);
+        for (int i = band * BAND_SIZE; i < end; i++) {
+            int id = myAgents[i];
+            myTargets[id] = NO_TARGET;
+            int numEmptyNeighbors = checkNeighborsForCondition(FISH, EMPTY, id, emptyNeighbors);
+            if (numEmptyNeighbors != 0) {
+                proposeMove(id, selectRandomNeighbor(emptyNeighbors, numEmptyNeighbors, random));
             }
         }
     }
 
-    private void analyzeSharkCells() {
-        for(int id = 0; id < getGrid().getSize(); id++){
-            Cell cell = getGrid().getCell(id);
-            if (cell.getState() == SHARK) {
-                Cell[] fishNeighbors = checkNeighborsForCondition(SHARK, FISH, cell.getMyNeighbors());
-                Cell[] emptyNeighbors = checkNeighborsForCondition(SHARK, EMPTY, cell.getMyNeighbors());
-
-                if (fishNeighbors.length != 0) {
-                    moveSharkToNeighbor(cell, fishNeighbors);
-                } else if (emptyNeighbors.length != 0) {
-                    moveSharkToNeighbor(cell, emptyNeighbors);
-                } else {
-                    sharkStay(cell);
+    private void applyFishMoves(int band) {
+        int end = Math.min(myNumAgents, (band + 1) * BAND_SIZE);
+        for (int i = band * BAND_SIZE; i < end; i++) {
+            int id = myAgents[i];
+            if (hasWonTarget(id)) {
+                moveFishToNeighbor(id, myTargets[id]);
+            }
+        }
+    }
+
+    private void updateFishList() {
+        for (int i = 0; i < myNumAgents; i++) {
+            int id = myAgents[i];
+            if (hasWonTarget(id)) {
+                myFish.add(myTargets[id]);
+                if (getGrid().getNextState(id) != FISH) {
+                    myFish.remove(id);
                 }
             }
         }
     }
 
-    private void sharkStay(Cell cell) {
-        mySharkEnergyMap.put(cell, mySharkEnergyMap.get(cell) - 1);
-        if (! (mySharkEnergyMap.get(cell) > 0)) {
-            cell.setMyNextState(EMPTY);
+    private void proposeSharkMoves(int band) {
+        SplittableRandom random = getRandom(2 * band + 1);
+        int[] fishNeighbors = myFishNeighbors[band];
+        int[] emptyNeighbors = myEmptyNeighbors[band];
+        int end = Math.min(myNumAgents, (band + 1) * BAND_SIZE);
+        for (int i = band * BAND_SIZE; i < end; i++) {
+            int id = myAgents[i];
+            myTargets[id] = NO_TARGET;
+            int numFishNeighbors = checkNeighborsForCondition(SHARK, FISH, id, fishNeighbors);
+            int numEmptyNeighbors = checkNeighborsForCondition(SHARK, EMPTY, id, emptyNeighbors);
+            if (numFishNeighbors == 0 && numEmptyNeighbors == 0) {
+                continue;
+            }
+            if (! canMove(id)) {
+                myTargets[id] = STARVED;
+            } else if (numFishNeighbors != 0) {
+                proposeMove(id, selectRandomNeighbor(fishNeighbors, numFishNeighbors, random));
+            } else {
+                proposeMove(id, selectRandomNeighbor(emptyNeighbors, numEmptyNeighbors, random));
+            }
+        }
+    }
+
+    private void applySharkMoves(int band) {
+        int end = Math.min(myNumAgents, (band + 1) * BAND_SIZE);
+        for (int i = band * BAND_SIZE; i < end; i++) {
+            int id = myAgents[i];
+            if (myTargets[id] == STARVED) {
+                mySharkMoves.clear(id);
+                mySharkEnergy.clear(id);
+                getGrid().setNextState(id, EMPTY);
+            } else if (hasWonTarget(id)) {
+                moveSharkToNeighbor(id, myTargets[id]);
+            } else {
+                sharkStay(id);
+            }
+        }
+    }
+
+    private void updateSharkList() {
+        for (int i = 0; i < myNumAgents; i++) {
+            int id = myAgents[i];
+            if (hasWonTarget(id)) {
+                myFish.remove(myTargets[id]);
+                mySharks.add(myTargets[id]);
+            }
+            if (getGrid().getNextState(id) != SHARK) {
+                mySharks.remove(id);
+            }
+        }
+    }
+
+    private void proposeMove(int agent, int target) {
+        myTargets[agent] = target;
+        myClaims.claim(target, agent);
+    }
+
+    private boolean hasWonTarget(int agent) {
+        return myTargets[agent] >= 0 && myClaims.isWinner(myTargets[agent], agent);
+    }
+
+    private void sharkStay(int cell) {
+        mySharkEnergy.add(cell, -1);
+        if (! (mySharkEnergy.get(cell) > 0)) {
+            getGrid().setNextState(cell, EMPTY);
         }
     }
 
-    private void moveFishToNeighbor (Cell currentCell, Cell[] qualifyingNeighbors) {
-        Cell targetCell = selectRandomNeighbor(qualifyingNeighbors);
-        targetCell.setMyNextState(FISH);
-        double movesToTransfer = myFishMovesMap.get(currentCell) + 1;
+    private void moveFishToNeighbor (int currentCell, int targetCell) {
+        getGrid().setNextState(targetCell, FISH);
+        double movesToTransfer = myFishMoves.get(currentCell) + 1;
         if (movesToTransfer < myFishReproducibilityThreshold) {
             moveFishNoReproduce(currentCell, targetCell, movesToTransfer);
         } else {
             moveFishAndReproduce(currentCell, targetCell);
         }
-        targetCell.setMyIsAvailable(false);
     }
 
-    private void moveFishNoReproduce(Cell currentCell, Cell targetCell, double movesToTransfer) {
-        transferMapValues(currentCell, targetCell,movesToTransfer, myFishMovesMap);
-        currentCell.setMyNextState(EMPTY);
-        targetCell.setMyNextState(FISH);
+    private void moveFishNoReproduce(int currentCell, int targetCell, double movesToTransfer) {
+        myFishMoves.move(currentCell, targetCell, movesToTransfer);
+        getGrid().setNextState(currentCell, EMPTY);
+        getGrid().setNextState(targetCell, FISH);
     }
 
-    private void moveFishAndReproduce(Cell currentCell, Cell targetCell) {
-        myFishMovesMap.put(currentCell, 0.0);
-        myFishMovesMap.put(targetCell, 0.0);
-        targetCell.setMyNextState(FISH);
+    private void moveFishAndReproduce(int currentCell, int targetCell) {
+        myFishMoves.set(currentCell, 0);
+        myFishMoves.set(targetCell, 0);
+        getGrid().setNextState(targetCell, FISH);
     }
 
-    private void moveSharkToNeighbor (Cell currentCell, Cell[] qualifyingNeighbors) {
-        if (! canMove(currentCell)) {
-            mySharkMovesMap.remove(currentCell);
-            mySharkEnergyMap.remove(currentCell);
-            currentCell.setMyNextState(EMPTY);
-        } else {
-            Cell targetCell = selectRandomNeighbor(qualifyingNeighbors);
-            double movesToTransfer = mySharkMovesMap.get(currentCell) + 1;
-            double energyToTransfer = mySharkEnergyMap.get(currentCell) - mySharkEnergyLoss;
+    private void moveSharkToNeighbor (int currentCell, int targetCell) {
+        double movesToTransfer = mySharkMoves.get(currentCell) + 1;
+        double energyToTransfer = mySharkEnergy.get(currentCell) - mySharkEnergyLoss;
 
-            if (movesToTransfer < mySharkReproducibilityThreshold) {
-                moveSharkNoReproduce(currentCell, targetCell, energyToTransfer, movesToTransfer);
-            } else {
-                moveSharkAndReproduce(currentCell, targetCell, energyToTransfer);
-            }
-            targetCell.setMyIsAvailable(false);
+        if (movesToTransfer < mySharkReproducibilityThreshold) {
+            moveSharkNoReproduce(currentCell, targetCell, energyToTransfer, movesToTransfer);
+        } else {
+            moveSharkAndReproduce(currentCell, targetCell, energyToTransfer);
         }
     }
 
-    private void moveSharkNoReproduce(Cell currentCell, Cell targetCell, double energyToTransfer, double movesToTransfer) {
-        transferMapValues(currentCell, targetCell, energyToTransfer, mySharkEnergyMap);
-        transferMapValues(currentCell, targetCell, movesToTransfer, mySharkMovesMap);
+    private void moveSharkNoReproduce(int currentCell, int targetCell, double energyToTransfer, double movesToTransfer) {
+        mySharkEnergy.move(currentCell, targetCell, energyToTransfer);
+        mySharkMoves.move(currentCell, targetCell, movesToTransfer);
 
-        if (targetCell.getNextState() == FISH) {
-            mySharkEnergyMap.put(targetCell, mySharkEnergyMap.get(targetCell) + mySharkEnergyGain);
+        if (getGrid().getNextState(targetCell) == FISH) {
+            mySharkEnergy.add(targetCell, mySharkEnergyGain);
         }
-        targetCell.setMyNextState(SHARK);
-        currentCell.setMyNextState(EMPTY);
+        getGrid().setNextState(targetCell, SHARK);
+        getGrid().setNextState(currentCell, EMPTY);
     }
 
-    private void moveSharkAndReproduce(Cell currentCell, Cell targetCell, double energyToTransfer) {
-        mySharkMovesMap.put(currentCell, 0.0);
-        mySharkMovesMap.put(targetCell, 0.0);
-        mySharkEnergyMap.put(targetCell, energyToTransfer);
-        mySharkEnergyMap.put(currentCell, myStartingSharkEnergy);
+    private void moveSharkAndReproduce(int currentCell, int targetCell, double energyToTransfer) {
+        mySharkMoves.set(currentCell, 0);
+        mySharkMoves.set(targetCell, 0);
+        mySharkEnergy.set(targetCell, energyToTransfer);
+        mySharkEnergy.set(currentCell, myStartingSharkEnergy);
 
-        if (targetCell.getNextState() == FISH) {
-            mySharkEnergyMap.put(targetCell, mySharkEnergyMap.get(targetCell) + mySharkEnergyGain);
+        if (getGrid().getNextState(targetCell) == FISH) {
+            mySharkEnergy.add(targetCell, mySharkEnergyGain);
         }
-        targetCell.setMyNextState(SHARK);
+        getGrid().setNextState(targetCell, SHARK);
     }
 
-    private boolean canMove(Cell cell) {
-        if (mySharkEnergyMap.get(cell) > 0) {
+    private boolean canMove(int cell) {
+        if (mySharkEnergy.get(cell) > 0) {
             return true;
         } else {
             return false;
         }
     }
 
-    private void transferMapValues(Cell currentCell, Cell targetCell, double transferValue, HashMap<Cell, Double> map) {
-        map.remove(currentCell);
-        map.put(targetCell, transferValue);
-    }
-
-    private Cell[] checkNeighborsForCondition(int currentState, int condition, Cell[] neighbors) {
-        ArrayList<Cell> cellsWithCondition = new ArrayList<>();
-        for (Cell neighbor : neighbors) {
-            if (currentState == FISH && neighbor.getMyIsAvailable() && neighbor.getState() == condition) {
-                cellsWithCondition.add(neighbor);
-            } else if (currentState == SHARK && neighbor.getMyIsAvailable() && neighbor.getNextState() == condition) {
-                cellsWithCondition.add(neighbor);
+    private int checkNeighborsForCondition(int currentState, int condition, int id, int[] cellsWithCondition) {
+        NeighborIndex neighbors = getGrid().getNeighbors();
+        int count = 0;
+        for (int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++) {
+            int neighbor = neighbors.getNeighbor(k);
+            if (currentState == FISH && getGrid().getState(neighbor) == condition) {
+                cellsWithCondition[count++] = neighbor;
+            } else if (currentState == SHARK && getGrid().getNextState(neighbor) == condition) {
+                cellsWithCondition[count++] = neighbor;
             }
         }
-        return cellsWithCondition.toArray(new Cell[0]);
+        return count;
     }
 
-    private Cell selectRandomNeighbor(Cell[] qualifyingNeighbors) {
-        int randomCellIndex = (int) (Math.random() * (qualifyingNeighbors.length));
+    private int selectRandomNeighbor(int[] qualifyingNeighbors, int numQualifyingNeighbors, SplittableRandom random) {
+        int randomCellIndex = random.nextInt(numQualifyingNeighbors);
         return qualifyingNeighbors[randomCellIndex];
     }
-
-    private void clearCellAvailability() {
-        for(int id = 0; id < getGrid().getSize(); id++){
-            Cell cell = getGrid().getCell(id);
-            cell.setMyIsAvailable(true);
-        }
-    }
 }
@@ -0,0 +1,49 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class hands out the random number streams used by the stochastic simulations. Every stream is derived from the
+ * run seed, the generation and the band it is used for, so a band draws the same numbers whichever thread analyzes it
+ * and in whatever order the bands run. Running the same seed serially or in parallel therefore gives the same result.
+ * @author Sumer Vardhan
+ */
+public class RandomStreams {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long mySeed;
+
+    /**
+     * Creates the streams of a run.
+     * @param seed the seed of the run
+     */
+    public RandomStreams(long seed) {
+        mySeed = seed;
+    }
+
+    /**
+     * Gets the seed of the run.
+     * @return the seed the streams are derived from
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Gets the stream for one band of one generation. Asking for the same generation and band again gives a new stream
+     * that draws the same numbers.
+     * @param generation the generation being analyzed
+     * @param band the band being analyzed, or 0 for simulations that are not split into bands
+     * @return a random number generator that only the caller uses
+     */
+    public SplittableRandom getStream(long generation, int band) {
+        return new SplittableRandom(mix(mix(mySeed + GOLDEN_GAMMA * generation) + GOLDEN_GAMMA * (band + 1L)));
+    }
+
+    // the finalizer of SplitMix64, which spreads nearby inputs over unrelated outputs
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
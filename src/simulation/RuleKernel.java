@@ -0,0 +1,251 @@
+package simulation;
+
+import elements.CellSet;
+import elements.Grid;
+import elements.NeighborIndex;
+import elements.NeighborhoodStencil;
+
+/**
+ * This class is the inner loop of a totalistic rule, specialized for the configuration that was loaded. compile picks
+ * a kernel class for the size of the neighborhood, whose neighbor offsets are unrolled into final fields, so every
+ * loop the JIT sees is small, has a fixed number of neighbor reads and only calls one kind of kernel.
+ *
+ * Every neighbor of a cell away from the edges is at a fixed distance in ids, id + rowOffset * numCols + colOffset,
+ * so those cells are counted without reading the neighbor index. Cells on the edges, which have fewer neighbors, are
+ * counted through the neighbor index.
+ * @author Sumer Vardhan
+ */
+public abstract class RuleKernel {
+    protected final Grid myGrid;
+    protected final NeighborIndex myNeighbors;
+    protected final int myStencilSize;
+    protected final int[] myTable;
+    protected final int myNumCounts;
+    protected final int[] myAliveCounts;
+    protected final int[] myOffsets;
+
+    private RuleKernel(Grid grid, TotalisticRule rule) {
+        NeighborhoodStencil stencil = grid.getStencil();
+        myGrid = grid;
+        myNeighbors = grid.getNeighbors();
+        myStencilSize = stencil.size();
+        myTable = rule.getTable();
+        myNumCounts = rule.getNumCounts();
+        myAliveCounts = new int[rule.getNumStates()];
+        myAliveCounts[TotalisticRule.ALIVE] = 1;
+        myOffsets = new int[stencil.size()];
+        for (int i = 0; i < stencil.size(); i++) {
+            myOffsets[i] = stencil.getRowOffset(i) * grid.getNumCols() + stencil.getColOffset(i);
+        }
+    }
+
+    /**
+     * Compiles a rule into the kernel specialized for the neighborhood of a grid.
+     * @param grid the grid the rule runs on
+     * @param rule the compiled rule, which must cover every state of the grid
+     * @return the kernel that analyzes the cells of the grid
+     */
+    public static RuleKernel compile(Grid grid, TotalisticRule rule) {
+        switch (grid.getStencil().size()) {
+            case 4:
+                return new FourNeighborKernel(grid, rule);
+            case 6:
+                return new SixNeighborKernel(grid, rule);
+            case 8:
+                return new EightNeighborKernel(grid, rule);
+            default:
+                return new StencilKernel(grid, rule);
+        }
+    }
+
+    /**
+     * Analyzes a range of the cells to analyze and sets the next state of every cell whose state changes.
+     * @param cells the cells to analyze, or null if every cell of the grid is analyzed, in which case positions are ids
+     * @param start the position of the first cell to analyze
+     * @param end one past the position of the last cell to analyze
+     */
+    public abstract void analyze(CellSet cells, int start, int end);
+
+    /**
+     * Checks whether every neighbor of a cell lies inside the grid, in which case they are at the fixed offsets.
+     * @param id the id of the cell
+     * @return true if the cell has a full neighborhood
+     */
+    protected final boolean hasFullNeighborhood(int id) {
+        return myNeighbors.getNumNeighbors(id) == myStencilSize;
+    }
+
+    /**
+     * Counts the ALIVE neighbors of a cell through the neighbor index; used for the cells on the edges of the grid.
+     * @param id the id of the cell
+     * @return the number of ALIVE neighbors
+     */
+    protected final int countAliveThroughIndex(int id) {
+        int count = 0;
+        for (int k = myNeighbors.getStart(id); k < myNeighbors.getEnd(id); k++) {
+            count += myAliveCounts[myGrid.getState(myNeighbors.getNeighbor(k))];
+        }
+        return count;
+    }
+
+    /**
+     * Looks up the next state of a cell and sets it if the cell changes.
+     * @param id the id of the cell
+     * @param count the number of ALIVE neighbors of the cell
+     */
+    protected final void setNextState(int id, int count) {
+        int state = myGrid.getState(id);
+        int next = myTable[state * myNumCounts + count];
+        if (next != state) {
+            myGrid.setNextState(id, next);
+        }
+    }
+
+    /**
+     * The kernel for neighborhoods of four cells, such as the von Neumann neighborhood.
+     */
+    private static final class FourNeighborKernel extends RuleKernel {
+        private final int myOffset0;
+        private final int myOffset1;
+        private final int myOffset2;
+        private final int myOffset3;
+
+        private FourNeighborKernel(Grid grid, TotalisticRule rule) {
+            super(grid, rule);
+            myOffset0 = myOffsets[0];
+            myOffset1 = myOffsets[1];
+            myOffset2 = myOffsets[2];
+            myOffset3 = myOffsets[3];
+        }
+
+        @Override
+        public void analyze(CellSet cells, int start, int end) {
+            Grid grid = myGrid;
+            int[] alive = myAliveCounts;
+            for (int i = start; i < end; i++) {
+                int id = cells == null ? i : cells.get(i);
+                int count;
+                if (hasFullNeighborhood(id)) {
+                    count = alive[grid.getState(id + myOffset0)] + alive[grid.getState(id + myOffset1)]
+                            + alive[grid.getState(id + myOffset2)] + alive[grid.getState(id + myOffset3)];
+                } else {
+                    count = countAliveThroughIndex(id);
+                }
+                setNextState(id, count);
+            }
+        }
+    }
+
+    /**
+     * The kernel for neighborhoods of six cells, such as the hexagonal neighborhood.
+     */
+    private static final class SixNeighborKernel extends RuleKernel {
+        private final int myOffset0;
+        private final int myOffset1;
+        private final int myOffset2;
+        private final int myOffset3;
+        private final int myOffset4;
+        private final int myOffset5;
+
+        private SixNeighborKernel(Grid grid, TotalisticRule rule) {
+            super(grid, rule);
+            myOffset0 = myOffsets[0];
+            myOffset1 = myOffsets[1];
+            myOffset2 = myOffsets[2];
+            myOffset3 = myOffsets[3];
+            myOffset4 = myOffsets[4];
+            myOffset5 = myOffsets[5];
+        }
+
+        @Override
+        public void analyze(CellSet cells, int start, int end) {
+            Grid grid = myGrid;
+            int[] alive = myAliveCounts;
+            for (int i = start; i < end; i++) {
+                int id = cells == null ? i : cells.get(i);
+                int count;
+                if (hasFullNeighborhood(id)) {
+                    count = alive[grid.getState(id + myOffset0)] + alive[grid.getState(id + myOffset1)]
+                            + alive[grid.getState(id + myOffset2)] + alive[grid.getState(id + myOffset3)]
+                            + alive[grid.getState(id + myOffset4)] + alive[grid.getState(id + myOffset5)];
+                } else {
+                    count = countAliveThroughIndex(id);
+                }
+                setNextState(id, count);
+            }
+        }
+    }
+
+    /**
+     * The kernel for neighborhoods of eight cells, such as the Moore neighborhood.
+     */
+    private static final class EightNeighborKernel extends RuleKernel {
+        private final int myOffset0;
+        private final int myOffset1;
+        private final int myOffset2;
+        private final int myOffset3;
+        private final int myOffset4;
+        private final int myOffset5;
+        private final int myOffset6;
+        private final int myOffset7;
+
+        private EightNeighborKernel(Grid grid, TotalisticRule rule) {
+            super(grid, rule);
+            myOffset0 = myOffsets[0];
+            myOffset1 = myOffsets[1];
+            myOffset2 = myOffsets[2];
+            myOffset3 = myOffsets[3];
+            myOffset4 = myOffsets[4];
+            myOffset5 = myOffsets[5];
+            myOffset6 = myOffsets[6];
+            myOffset7 = myOffsets[7];
+        }
+
+        @Override
+        public void analyze(CellSet cells, int start, int end) {
+            Grid grid = myGrid;
+            int[] alive = myAliveCounts;
+            for (int i = start; i < end; i++) {
+                int id = cells == null ? i : cells.get(i);
+                int count;
+                if (hasFullNeighborhood(id)) {
+                    count = alive[grid.getState(id + myOffset0)] + alive[grid.getState(id + myOffset1)]
+                            + alive[grid.getState(id + myOffset2)] + alive[grid.getState(id + myOffset3)]
+                            + alive[grid.getState(id + myOffset4)] + alive[grid.getState(id + myOffset5)]
+                            + alive[grid.getState(id + myOffset6)] + alive[grid.getState(id + myOffset7)];
+                } else {
+                    count = countAliveThroughIndex(id);
+                }
+                setNextState(id, count);
+            }
+        }
+    }
+
+    /**
+     * The kernel for neighborhoods of any other size, which loops over the fixed offsets.
+     */
+    private static final class StencilKernel extends RuleKernel {
+        private StencilKernel(Grid grid, TotalisticRule rule) {
+            super(grid, rule);
+        }
+
+        @Override
+        public void analyze(CellSet cells, int start, int end) {
+            Grid grid = myGrid;
+            int[] alive = myAliveCounts;
+            int[] offsets = myOffsets;
+            for (int i = start; i < end; i++) {
+                int id = cells == null ? i : cells.get(i);
+                int count = 0;
+                if (hasFullNeighborhood(id)) {
+                    for (int offset : offsets) {
+                        count += alive[grid.getState(id + offset)];
+                    }
+                } else {
+                    count = countAliveThroughIndex(id);
+                }
+                setNextState(id, count);
+            }
+        }
+    }
+}
@@ -1,62 +1,193 @@
 package simulation;
 
 import config.XMLSimulationParser;
-import elements.Cell;
+import elements.CellSet;
 import elements.Grid;
+import elements.IndexedIntSet;
+import elements.NeighborIndex;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class represents the Segregation Simulation. It is used by Game to run the Segregation Simulation if that is
  * the file that the user selected.
+ *
+ * The simulation keeps the empty cells in a set it can pick a random cell from, the number of similar neighbors of
+ * every cell, and the set of unhappy agents. These are updated incrementally from the cells that change on every
+ * step, so a step only visits the unhappy agents and the neighborhoods of the cells they move between.
+ *
+ * When the simulation runs in parallel, the agents move in one batch instead of one after another: the unhappy agents
+ * and the empty cells are both put in order of id, the empty cells are shuffled with the random stream of the step,
+ * and every agent moves to the empty cell at its position, all in parallel. Cells left in the batch only become
+ * available on the next step. The result only depends on the seed, not on the number of threads.
  * @author Sumer Vardhan
  */
 public class SegregationSimulation extends Simulation {
+    private static final int EMPTY = 0;
+
     private XMLSimulationParser myXMLParser;
     private double mySegregationThreshold;
 
-    private List<Cell> myAvailableCells;
+    private IndexedIntSet myVacancies;
+    private IndexedIntSet myUnhappyAgents;
+    private int[] mySimilarNeighbors;
+    private int[] myAgentsToMove;
+    private int[] myTargetCells;
+    private int myNumMoves;
+    private CellSet myMovedCells;
+    private int[] myPreviousStates;
 
     public SegregationSimulation(Grid grid) {
         super(grid);
         myXMLParser = new XMLSimulationParser(grid.getMyConfigFile());
-        myAvailableCells = new ArrayList<>();
         mySegregationThreshold = myXMLParser.getParameters().get("segregation_threshold");
+        myVacancies = new IndexedIntSet(grid.getSize());
+        myUnhappyAgents = new IndexedIntSet(grid.getSize());
+        mySimilarNeighbors = new int[grid.getSize()];
+        myAgentsToMove = new int[grid.getSize()];
+        myTargetCells = new int[grid.getSize()];
+        myMovedCells = new CellSet(grid.getSize());
+        myPreviousStates = new int[grid.getSize()];
+        for (int id = 0; id < grid.getSize(); id++) {
+            if (grid.getState(id) == EMPTY) {
+                myVacancies.add(id);
+            }
+            mySimilarNeighbors[id] = countSimilarNeighbors(id);
+            updateHappiness(id);
+        }
     }
 
     /**
      * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation based on the specified
-     * rules of Segregation.
+     * rules of Segregation. Every agent that is unhappy with its current neighbors moves to a random empty cell; the
+     * cells agents leave become available to the agents that move after them.
      */
     @Override
     public void analyzeCells() {
-        Random random = new Random();
-        int id = 0;
-        myAvailableCells = super.getGrid().getEmptyCells();
-        for (int i = 0; i < super.getGrid().getNumRows(); i++) {
-            for (int j = 0; j < super.getGrid().getNumCols(); j++) {
-                Cell cell = super.getGrid().getCell(id);
-                id++;
-                double similarNeighbors = countSimilarNeighbors(cell, cell.getMyNeighbors());
-                if (cell.getState()!= 0 && (similarNeighbors / cell.getMyNeighbors().length < mySegregationThreshold)) {
-                    Cell random_cell = myAvailableCells.get(random.nextInt(myAvailableCells.size()));
-                    random_cell.setMyIsAvailable(false);
-                    random_cell.setMyNextState(cell.getState());
-                    cell.setMyNextState(0);
-                    myAvailableCells.remove(random_cell);
-                    myAvailableCells.add(cell);
+        if (isParallel()) {
+            moveInBatch();
+            return;
+        }
+        SplittableRandom random = getRandom(0);
+        Grid grid = super.getGrid();
+        myMovedCells.clear();
+        int numAgentsToMove = myUnhappyAgents.copyTo(myAgentsToMove);
+        for (int i = 0; i < numAgentsToMove && myVacancies.size() > 0; i++) {
+            int cell = myAgentsToMove[i];
+            int randomCell = myVacancies.getRandom(random);
+            grid.setNextState(randomCell, grid.getState(cell));
+            grid.setNextState(cell, EMPTY);
+            myVacancies.remove(randomCell);
+            myVacancies.add(cell);
+            recordMove(randomCell);
+            recordMove(cell);
+        }
+    }
+
+    private void moveInBatch() {
+        SplittableRandom random = getRandom(0);
+        myMovedCells.clear();
+        int numAgents = myUnhappyAgents.copyTo(myAgentsToMove);
+        int numVacancies = myVacancies.copyTo(myTargetCells);
+        Arrays.parallelSort(myAgentsToMove, 0, numAgents);
+        Arrays.parallelSort(myTargetCells, 0, numVacancies);
+        myNumMoves = Math.min(numAgents, numVacancies);
+        shuffleStart(myTargetCells, numVacancies, myNumMoves, random);
+        if (numAgents > myNumMoves) {
+            shuffleStart(myAgentsToMove, numAgents, myNumMoves, random);
+        }
+
+        for (int i = 0; i < myNumMoves; i++) {
+            recordMove(myAgentsToMove[i]);
+            recordMove(myTargetCells[i]);
+        }
+        forEachBandSettingStates((myNumMoves + BAND_SIZE - 1) / BAND_SIZE, this::applyMoves);
+        for (int i = 0; i < myNumMoves; i++) {
+            myVacancies.remove(myTargetCells[i]);
+            myVacancies.add(myAgentsToMove[i]);
+        }
+    }
+
+    private void applyMoves(int band) {
+        Grid grid = getGrid();
+        int end = Math.min(myNumMoves, (band + 1) * BAND_SIZE);
+        for (int i = band * BAND_SIZE; i < end; i++) {
+            grid.setNextState(myTargetCells[i], grid.getState(myAgentsToMove[i]));
+            grid.setNextState(myAgentsToMove[i], EMPTY);
+        }
+    }
+
+    // puts a uniformly random choice of count of the first size cells, in random order, at the start of the array
+    private void shuffleStart(int[] cells, int size, int count, SplittableRandom random) {
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(size - i);
+            int swap = cells[i];
+            cells[i] = cells[j];
+            cells[j] = swap;
+        }
+    }
+
+    /**
+     * Updates the grid, then brings the similar neighbor counts and the set of unhappy agents up to date with the
+     * cells that changed.
+     */
+    @Override
+    public void updateCells() {
+        super.updateCells();
+        Grid grid = getGrid();
+        NeighborIndex dependents = grid.getDependents();
+        for (int i = 0; i < myMovedCells.size(); i++) {
+            int cell = myMovedCells.get(i);
+            int previousState = myPreviousStates[cell];
+            int state = grid.getState(cell);
+            if (previousState == state) {
+                continue;
+            }
+            for (int k = dependents.getStart(cell); k < dependents.getEnd(cell); k++) {
+                int dependent = dependents.getNeighbor(k);
+                if (myMovedCells.contains(dependent)) {
+                    continue;
+                }
+                int dependentState = grid.getState(dependent);
+                if (dependentState == previousState) {
+                    mySimilarNeighbors[dependent]--;
+                } else if (dependentState == state) {
+                    mySimilarNeighbors[dependent]++;
                 }
+                updateHappiness(dependent);
             }
         }
+        for (int i = 0; i < myMovedCells.size(); i++) {
+            int cell = myMovedCells.get(i);
+            mySimilarNeighbors[cell] = countSimilarNeighbors(cell);
+            updateHappiness(cell);
+        }
+    }
+
+    private void recordMove(int cell) {
+        if (!myMovedCells.contains(cell)) {
+            myMovedCells.add(cell);
+            myPreviousStates[cell] = getGrid().getState(cell);
+        }
+    }
+
+    private void updateHappiness(int cell) {
+        double similarNeighbors = mySimilarNeighbors[cell];
+        if (getGrid().getState(cell) != EMPTY
+                && similarNeighbors / getGrid().getNeighbors().getNumNeighbors(cell) < mySegregationThreshold) {
+            myUnhappyAgents.add(cell);
+        } else {
+            myUnhappyAgents.remove(cell);
+        }
     }
 
-    private double countSimilarNeighbors(Cell cell, Cell[] neighbors){
+    private int countSimilarNeighbors(int cell){
+        NeighborIndex neighbors = getGrid().getNeighbors();
         int similarNeighborsCount = 0;
-        int state = cell.getState();
-        for(Cell neighbor: neighbors){
-            if(neighbor.getState() == state){
+        int state = getGrid().getState(cell);
+        for(int k = neighbors.getStart(cell); k < neighbors.getEnd(cell); k++){
+            if(getGrid().getState(neighbors.getNeighbor(k)) == state){
                 similarNeighborsCount++;
             }
         }
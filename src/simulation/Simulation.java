@@ -1,7 +1,11 @@
 package simulation;
 
+import elements.CellSet;
 import elements.Grid;
 
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
 /**
  * This abstract class represents a Simulation. It is a superclass that is subclassed by each of the Simulation in order
  * to implement their own rules on the Simulation.
@@ -10,7 +14,11 @@ import elements.Grid;
  * @author Shreya Hurli
  */
 public abstract class Simulation {
+    protected static final int BAND_SIZE = 1 << 14;
+
     private Grid myGrid;
+    private RandomStreams myRandomStreams = new RandomStreams(System.nanoTime());
+    private ParallelStepper myParallelStepper;
 
     /**
      * Initializes the simulation with the Grid object given by game.
@@ -26,15 +34,184 @@ public abstract class Simulation {
      */
     public abstract void analyzeCells();
 
+    /**
+     * Checks whether the bands of this simulation can be analyzed at the same time on separate threads. This holds for
+     * rules where analyzing a cell only sets the next state of that cell, and is used by ParallelStepper.
+     * @return true if analyzeBand can be called on several bands at once
+     */
+    public boolean isBandParallel() {
+        return false;
+    }
+
+    /**
+     * Gets the number of bands the cells to analyze on this step are split into. Analyzing every band and then
+     * calling finishBands is the same as calling analyzeCells.
+     * @return the number of bands, 1 unless the simulation is band parallel
+     */
+    public int getNumBands() {
+        return 1;
+    }
+
+    /**
+     * Analyzes the cells of one band.
+     * @param band a band between 0 and getNumBands() - 1
+     */
+    public void analyzeBand(int band) {
+        analyzeCells();
+    }
+
+    /**
+     * Called once every band of the step has been analyzed, before the cells are updated.
+     */
+    public void finishBands() {
+    }
+
     /**
      * This method in Game is called to update the state of each cell once all the neighbors analysis has finished.
      */
     public void updateCells() {
-        for(int id = 0; id < myGrid.getSize(); id++){
-            myGrid.getCell(id).updateState();
+        if (myParallelStepper != null && myGrid.supportsParallelSteps()) {
+            myParallelStepper.commit(myGrid);
+        } else {
+            myGrid.updateStates();
+        }
+    }
+
+    /**
+     * Gets the number of cells analyzeCells has to visit on this step. This is every cell of the grid, unless the grid
+     * tracks changes, in which case only the cells near the last changes are visited.
+     * @return the number of cells to analyze
+     */
+    protected int getNumCellsToAnalyze() {
+        CellSet activeCells = myGrid.getActiveCells();
+        return activeCells == null ? myGrid.getSize() : activeCells.size();
+    }
+
+    /**
+     * Gets the id of the i-th cell analyzeCells has to visit on this step.
+     * @param i a position between 0 and getNumCellsToAnalyze() - 1
+     * @return the id of the cell to analyze
+     */
+    protected int getCellToAnalyze(int i) {
+        CellSet activeCells = myGrid.getActiveCells();
+        return activeCells == null ? i : activeCells.get(i);
+    }
+
+    /**
+     * Gets the number of bands of BAND_SIZE cells that the cells to analyze on this step split into.
+     * @return the number of bands of cells to analyze
+     */
+    protected int getNumCellBands() {
+        return Math.max(1, (getNumCellsToAnalyze() + BAND_SIZE - 1) / BAND_SIZE);
+    }
+
+    /**
+     * Gets the position, among the cells to analyze, of the first cell of a band.
+     * @param band a band between 0 and getNumCellBands() - 1
+     * @return the position to pass to getCellToAnalyze
+     */
+    protected int getBandStart(int band) {
+        return band * BAND_SIZE;
+    }
+
+    /**
+     * Gets one past the position, among the cells to analyze, of the last cell of a band.
+     * @param band a band between 0 and getNumCellBands() - 1
+     * @return the position to stop at
+     */
+    protected int getBandEnd(int band) {
+        return Math.min(getNumCellsToAnalyze(), (band + 1) * BAND_SIZE);
+    }
+
+    /**
+     * Lets the simulation run the phases of its steps that can run in parallel on the given stepper.
+     * @param stepper the stepper to run on, or null to run every phase on the calling thread
+     */
+    public void setParallelStepper(ParallelStepper stepper) {
+        myParallelStepper = stepper;
+    }
+
+    /**
+     * Checks whether the simulation was given a stepper to run its phases in parallel on.
+     * @return true if the simulation runs in parallel
+     */
+    protected boolean isParallel() {
+        return myParallelStepper != null;
+    }
+
+    /**
+     * Runs an action on every band, in parallel if the simulation was given a stepper and in order otherwise. The
+     * action must give the same result either way.
+     * @param numBands the number of bands
+     * @param action the action to run, which is given the band to work on
+     */
+    protected void forEachBand(int numBands, IntConsumer action) {
+        if (myParallelStepper != null) {
+            myParallelStepper.forEachBand(numBands, action);
+            return;
+        }
+        for (int band = 0; band < numBands; band++) {
+            action.accept(band);
         }
     }
 
+    /**
+     * Runs an action that sets next states of the grid on every band, like forEachBand. The action must only set the
+     * next state of cells that no other band sets. Runs in order when the storage of the grid cannot be written from
+     * several threads.
+     * @param numBands the number of bands
+     * @param action the action to run, which is given the band to work on
+     */
+    protected void forEachBandSettingStates(int numBands, IntConsumer action) {
+        if (myParallelStepper == null || !myGrid.supportsParallelSteps() || numBands <= 1) {
+            for (int band = 0; band < numBands; band++) {
+                action.accept(band);
+            }
+            return;
+        }
+        myGrid.beginParallelStep(numBands);
+        try {
+            myParallelStepper.forEachBand(numBands, band -> myGrid.runBand(band, action));
+        } finally {
+            myGrid.endParallelStep();
+        }
+    }
+
+    /**
+     * Sets the seed that the random numbers drawn by the simulation are derived from, so that a run can be reproduced.
+     * Without it, every simulation uses a seed of its own.
+     * @param seed the seed of the run
+     */
+    public void setRandomSeed(long seed) {
+        myRandomStreams = new RandomStreams(seed);
+    }
+
+    /**
+     * Gets the random number stream for one band of the current generation. Simulations that are not split into bands
+     * use band 0.
+     * @param band the band being analyzed
+     * @return a random number generator that draws the same numbers for the same seed, generation and band
+     */
+    protected SplittableRandom getRandom(int band) {
+        return myRandomStreams.getStream(myGrid.getGeneration(), band);
+    }
+
+    /**
+     * Gets the number of generations the simulation has gone through, counting those of a restored board.
+     * @return the current generation, 0 for the initial configuration
+     */
+    public long getGeneration() {
+        return myGrid.getGeneration();
+    }
+
+    /**
+     * Used by simulations that can jump ahead by many generations at once to record the generation they reached.
+     * @param generation the generation the grid is now at
+     */
+    protected void setGeneration(long generation) {
+        myGrid.setGeneration(generation);
+    }
+
     /**
      * This method is used to get the Grid of the Simulation; this is useful for the Simulation class, which must display
      * this grid to the GUI
@@ -0,0 +1,222 @@
+package simulation;
+
+import elements.CellSet;
+import elements.Grid;
+import elements.GridSnapshot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class steps a simulation on a worker thread of its own, so a slow step never holds up the user interface and
+ * the simulation is not limited to one generation per frame. The worker steps at a target number of generations per
+ * second, or as fast as it can in turbo mode, and hands the state of the grid to the interface as a GridSnapshot.
+ *
+ * The hand-off is lock-free. The snapshot is passed back and forth through two atomic slots: the worker captures the
+ * grid into it when it finds it in the free slot and puts it in the ready slot, and the interface takes it from the
+ * ready slot, draws it and puts it back in the free slot. While the interface draws, the worker keeps stepping and
+ * collects the cells that change, so the next snapshot is captured as soon as the last one is given back, holds every
+ * change since then, and generations the interface had no time to draw are simply skipped.
+ *
+ * If a step throws, the worker stops and keeps what was thrown, so the interface can report it with getFailure
+ * instead of silently showing a frozen grid.
+ * @author Sumer Vardhan
+ */
+public class SimulationRunner {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int MAX_CHANGED_CELLS_FRACTION = 8;
+
+    private final Simulation mySimulation;
+    private final ParallelStepper myParallelStepper;
+    private final Grid myGrid;
+    private final Thread myWorker;
+    private final AtomicReference<GridSnapshot> myReadySnapshot = new AtomicReference<>();
+    private final AtomicReference<GridSnapshot> myFreeSnapshot = new AtomicReference<>();
+    private final AtomicInteger myStepRequests = new AtomicInteger();
+    private final CellSet myUnpublishedChanges;
+    private boolean myHasUnpublishedState;
+    private boolean myAreUnpublishedChangesKnown;
+    private long myNextStepTime;
+    private volatile boolean myIsRunning;
+    private volatile boolean myIsPlaying;
+    private volatile boolean myIsTurbo;
+    private volatile double myGenerationsPerSecond = 1;
+    private volatile Throwable myFailure;
+
+    /**
+     * Creates a paused runner for a simulation. The simulation must not be used by any other thread once the runner
+     * is started.
+     * @param simulation the simulation to step
+     * @param stepper the stepper to step it with, or null to step it on the worker thread alone
+     */
+    public SimulationRunner(Simulation simulation, ParallelStepper stepper) {
+        mySimulation = simulation;
+        myParallelStepper = stepper;
+        myGrid = simulation.getGrid();
+        myUnpublishedChanges = new CellSet(myGrid.getSize());
+        myHasUnpublishedState = true;
+        myFreeSnapshot.set(new GridSnapshot(myGrid.getSize()));
+        myWorker = new Thread(this::run, "simulation");
+        myWorker.setDaemon(true);
+    }
+
+    /**
+     * Starts the worker thread, which publishes the initial state of the grid and then waits to be played.
+     */
+    public void start() {
+        myIsRunning = true;
+        myWorker.start();
+    }
+
+    /**
+     * Stops the worker thread and waits for it to end. It finishes the step it is on, if any, and does not step the
+     * simulation again, so once this returns the simulation and its grid can be used by the calling thread.
+     */
+    public void stop() {
+        myIsRunning = false;
+        LockSupport.unpark(myWorker);
+        try {
+            myWorker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets what a step of the simulation threw, if one did. The worker stops when that happens.
+     * @return the exception or error thrown by the simulation, or null if every step succeeded
+     */
+    public Throwable getFailure() {
+        return myFailure;
+    }
+
+    /**
+     * Lets the worker step the simulation continuously.
+     */
+    public void play() {
+        myIsPlaying = true;
+        LockSupport.unpark(myWorker);
+    }
+
+    /**
+     * Stops the worker from stepping the simulation until play or step is called.
+     */
+    public void pause() {
+        myIsPlaying = false;
+    }
+
+    /**
+     * Asks the worker to step the simulation once more, whether it is playing or not.
+     */
+    public void step() {
+        myStepRequests.incrementAndGet();
+        LockSupport.unpark(myWorker);
+    }
+
+    /**
+     * Sets the number of generations the worker steps per second while it is playing, outside turbo mode.
+     * @param generationsPerSecond the target rate, which must be positive
+     */
+    public void setGenerationsPerSecond(double generationsPerSecond) {
+        myGenerationsPerSecond = generationsPerSecond;
+        LockSupport.unpark(myWorker);
+    }
+
+    /**
+     * Turns turbo mode on or off. In turbo mode the worker ignores the target rate and steps as fast as it can, so
+     * many generations can go by between two frames.
+     * @param value true to turn turbo mode on
+     */
+    public void setTurbo(boolean value) {
+        myIsTurbo = value;
+        LockSupport.unpark(myWorker);
+    }
+
+    /**
+     * Takes the latest snapshot of the grid, if one was published since the last one was taken. It has to be given
+     * back with recycle once it has been drawn, and no new snapshot is published until then.
+     * @return the snapshot, or null if there is nothing new to draw
+     */
+    public GridSnapshot takeSnapshot() {
+        return myReadySnapshot.getAndSet(null);
+    }
+
+    /**
+     * Gives back a snapshot taken with takeSnapshot, so the worker can capture the next state of the grid into it.
+     * @param snapshot the snapshot that was drawn
+     */
+    public void recycle(GridSnapshot snapshot) {
+        myFreeSnapshot.set(snapshot);
+        LockSupport.unpark(myWorker);
+    }
+
+    private void run() {
+        try {
+            myNextStepTime = System.nanoTime();
+            while (myIsRunning) {
+                if (myHasUnpublishedState) {
+                    publish();
+                }
+                if (myStepRequests.get() > 0) {
+                    myStepRequests.decrementAndGet();
+                    stepSimulation();
+                } else if (!myIsPlaying) {
+                    LockSupport.park(this);
+                    myNextStepTime = System.nanoTime();
+                } else if (myIsTurbo) {
+                    stepSimulation();
+                    myNextStepTime = System.nanoTime();
+                } else {
+                    long now = System.nanoTime();
+                    long period = (long) (NANOS_PER_SECOND / myGenerationsPerSecond);
+                    if (now < myNextStepTime) {
+                        LockSupport.parkNanos(this, Math.min(myNextStepTime - now, period));
+                    } else {
+                        myNextStepTime = Math.max(myNextStepTime + period, now - period);
+                        stepSimulation();
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            myFailure = e;
+            myIsRunning = false;
+        }
+    }
+
+    private void stepSimulation() {
+        if (myParallelStepper != null) {
+            myParallelStepper.step(mySimulation);
+        } else {
+            mySimulation.analyzeCells();
+            mySimulation.updateCells();
+        }
+        myHasUnpublishedState = true;
+        if (!myAreUnpublishedChangesKnown) {
+            return;
+        }
+        CellSet changedCells = myGrid.getChangedCells();
+        if (changedCells == null
+                || myUnpublishedChanges.size() + changedCells.size() > myGrid.getSize() / MAX_CHANGED_CELLS_FRACTION) {
+            myAreUnpublishedChangesKnown = false;
+            return;
+        }
+        for (int i = 0; i < changedCells.size(); i++) {
+            myUnpublishedChanges.add(changedCells.get(i));
+        }
+    }
+
+    // captures the grid if the interface has given the snapshot back, and hands it over
+    private void publish() {
+        GridSnapshot snapshot = myFreeSnapshot.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        snapshot.capture(myGrid, mySimulation.getGeneration(),
+                myAreUnpublishedChangesKnown ? myUnpublishedChanges : null);
+        myUnpublishedChanges.clear();
+        myAreUnpublishedChangesKnown = true;
+        myHasUnpublishedState = false;
+        myReadySnapshot.set(snapshot);
+    }
+}
@@ -1,14 +1,27 @@
 package simulation;
 
-import config.XMLParser;
-import elements.Cell;
+import elements.CellRule;
+import elements.CellSet;
 import elements.Grid;
+import elements.IndexedIntSet;
+import elements.NeighborIndex;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
- * This class represents the Segregation Simulation. It is used by Game to run the Segregation Simulation if that is
- * the file that the user selected.
+ * This class represents the Spreading of Fire Simulation. It is used by Game to run the Spreading of Fire Simulation if
+ * that is the file that the user selected.
+ *
+ * Only trees next to a burning cell can catch fire, and a burning cell always burns out on the next step, so the
+ * simulation keeps the list of burning cells as a frontier and only tests the trees next to it. When trees can grow
+ * back, the empty cells next to a tree are kept in a set, updated from the cells that change on every step. A step
+ * therefore takes time proportional to the length of the fire front, not to the size of the forest. A cell that burns
+ * out stays empty for at least one step before a tree can grow in it.
+ *
+ * On a grid that can be a window on an unbounded universe, the forest is stepped by the grid tile by tile instead, in
+ * a universe that is empty around the board, so a fire can burn through any forest that grows out of the board, and
+ * burnt-out ground stops taking memory.
  * @author Shreya Hurli
  */
 public class SpreadingOfFireSimulation extends Simulation {
@@ -16,72 +29,263 @@ public class SpreadingOfFireSimulation extends Simulation {
     private final static int TREE = 1;
     private final static int BURNING = 2;
 
-    private XMLParser myXMLParser;
     private double myBurnProbability;
     private double myTreeProbability;
 
-    private int myEmptyTurns;
+    private int[] myBurningCells;
+    private int myNumBurningCells;
+    private int[] myIgnitedCells;
+    private int myNumIgnitedCells;
+    private int[] myGrownCells;
+    private int myNumGrownCells;
+    private CellSet myCandidates;
+    private boolean[] myWillChange;
+    private int[] myTreeNeighbors;
+    private IndexedIntSet myGrowthSites;
+    private BernoulliSampler[] myBurnSamplers = new BernoulliSampler[0];
+    private BernoulliSampler[] myGrowSamplers = new BernoulliSampler[0];
+    private boolean myIsUnbounded;
 
     public SpreadingOfFireSimulation(Grid grid) {
         super(grid);
         myBurnProbability = 1;
         myTreeProbability = 0;
+        myIsUnbounded = grid.setUnboundedRule(new UnboundedRule());
+        if (myIsUnbounded) {
+            return;
+        }
+        myBurningCells = new int[grid.getSize()];
+        myIgnitedCells = new int[grid.getSize()];
+        myGrownCells = new int[grid.getSize()];
+        myCandidates = new CellSet(grid.getSize());
+        myWillChange = new boolean[grid.getSize()];
+        for (int id = 0; id < grid.getSize(); id++) {
+            if (grid.getState(id) == BURNING) {
+                myBurningCells[myNumBurningCells++] = id;
+            }
+        }
     }
 
     /**
      * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation based on the specified
-     * rules of Spreading of Fire.
+     * rules of Spreading of Fire. Every tree next to a burning cell catches fire with the burn probability once for each
+     * burning neighbor, every empty cell next to a tree grows a tree with the tree probability once for each tree
+     * neighbor, and every burning cell burns out. The candidates are tested in bands, in parallel when the simulation
+     * runs in parallel.
      */
     @Override
     public void analyzeCells(){
-        for(Cell cell: getGrid()){
-            if (cell.getMyID() == 37) {
+        if(myIsUnbounded){
+            getGrid().analyzeUnbounded();
+            return;
+        }
+        collectCandidates();
+        int numBands = (myCandidates.size() + BAND_SIZE - 1) / BAND_SIZE;
+        ensureSamplers(numBands);
+        forEachBand(numBands, this::testCandidates);
 
-                System.out.println("Cell: " + cell.getMyID() + " \n");
-                for (Cell neighbor : cell.getMyNeighbors()) {
-                    System.out.print(neighbor.getMyID() + ", ");
-                }
-                System.out.println();
+        Grid grid = getGrid();
+        myNumIgnitedCells = 0;
+        myNumGrownCells = 0;
+        for(int i = 0; i < myCandidates.size(); i++){
+            int id = myCandidates.get(i);
+            if(!myWillChange[id]){
+                continue;
             }
-                if(cell.getState() == EMPTY){
-                    myEmptyTurns = 1;
-                    willTreeGrow(cell, cell.getMyNeighbors());
-                }
-                if(cell.getState() == TREE){
-                    willBurn(cell, cell.getMyNeighbors());
-                }
-                if(cell.getState() == BURNING){
-                    cell.setMyNextState(EMPTY);
+            myWillChange[id] = false;
+            if(grid.getState(id) == TREE){
+                grid.setNextState(id, BURNING);
+                myIgnitedCells[myNumIgnitedCells++] = id;
+            }
+            else {
+                grid.setNextState(id, TREE);
+                myGrownCells[myNumGrownCells++] = id;
+            }
+        }
+        for(int i = 0; i < myNumBurningCells; i++){
+            grid.setNextState(myBurningCells[i], EMPTY);
+        }
+    }
+
+    /**
+     * Updates the grid, then makes the trees that caught fire the new frontier and brings the empty cells next to a tree
+     * up to date with the cells that changed.
+     */
+    @Override
+    public void updateCells() {
+        super.updateCells();
+        if(myIsUnbounded){
+            return;
+        }
+        if(myGrowthSites != null){
+            updateGrowthSites();
+        }
+        int[] swap = myBurningCells;
+        myBurningCells = myIgnitedCells;
+        myIgnitedCells = swap;
+        myNumBurningCells = myNumIgnitedCells;
+        myNumIgnitedCells = 0;
+        myNumGrownCells = 0;
+    }
+
+    private void collectCandidates(){
+        Grid grid = getGrid();
+        NeighborIndex dependents = grid.getDependents();
+        myCandidates.clear();
+        for(int i = 0; i < myNumBurningCells; i++){
+            int id = myBurningCells[i];
+            for(int k = dependents.getStart(id); k < dependents.getEnd(id); k++){
+                int dependent = dependents.getNeighbor(k);
+                if(grid.getState(dependent) == TREE){
+                    myCandidates.add(dependent);
                 }
             }
         }
+        if(myTreeProbability > 0){
+            if(myGrowthSites == null){
+                findGrowthSites();
+            }
+            for(int i = 0; i < myGrowthSites.size(); i++){
+                myCandidates.add(myGrowthSites.get(i));
+            }
+        }
+    }
+
+    // every band keeps the samplers it draws with from step to step, and resets them to its random stream
+    private void ensureSamplers(int numBands){
+        if(myBurnSamplers.length >= numBands){
+            return;
+        }
+        int oldNumBands = myBurnSamplers.length;
+        myBurnSamplers = Arrays.copyOf(myBurnSamplers, numBands);
+        myGrowSamplers = Arrays.copyOf(myGrowSamplers, numBands);
+        for(int band = oldNumBands; band < numBands; band++){
+            myBurnSamplers[band] = new BernoulliSampler(myBurnProbability, getRandom(band));
+            myGrowSamplers[band] = new BernoulliSampler(myTreeProbability, getRandom(band));
+        }
+    }
+
+    private void testCandidates(int band){
+        SplittableRandom random = getRandom(band);
+        BernoulliSampler burns = myBurnSamplers[band];
+        BernoulliSampler grows = myGrowSamplers[band];
+        burns.reset(random);
+        grows.reset(random);
+        Grid grid = getGrid();
+        NeighborIndex neighbors = grid.getNeighbors();
+        int end = Math.min(myCandidates.size(), (band + 1) * BAND_SIZE);
+        for(int i = band * BAND_SIZE; i < end; i++){
+            int id = myCandidates.get(i);
+            boolean isTree = grid.getState(id) == TREE;
+            int spreadingState = isTree ? BURNING : TREE;
+            BernoulliSampler spreads = isTree ? burns : grows;
+            boolean willChange = false;
+            for(int k = neighbors.getStart(id); k < neighbors.getEnd(id) && !willChange; k++){
+                willChange = grid.getState(neighbors.getNeighbor(k)) == spreadingState
+                        && spreads.next();
+            }
+            myWillChange[id] = willChange;
+        }
+    }
 
-    private void willBurn(Cell curr, Cell[] neighbors){
-        for(Cell neighbor : neighbors){
-            if(curr.getState() == TREE && neighbor.getState() == BURNING && probability(myBurnProbability)){
-                curr.setMyNextState(BURNING);
+    // counts the tree neighbors of every cell the first time trees can grow back
+    private void findGrowthSites(){
+        Grid grid = getGrid();
+        NeighborIndex neighbors = grid.getNeighbors();
+        myTreeNeighbors = new int[grid.getSize()];
+        myGrowthSites = new IndexedIntSet(grid.getSize());
+        for(int id = 0; id < grid.getSize(); id++){
+            for(int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++){
+                if(grid.getState(neighbors.getNeighbor(k)) == TREE){
+                    myTreeNeighbors[id]++;
+                }
             }
+            updateGrowthSite(id);
         }
     }
 
-    private void willTreeGrow(Cell curr, Cell[] neighbors){
-        if(curr.getState() == EMPTY && myEmptyTurns == 1){
-            curr.setMyNextState(EMPTY);
-            myEmptyTurns++;
+    private void updateGrowthSites(){
+        NeighborIndex dependents = getGrid().getDependents();
+        for(int i = 0; i < myNumIgnitedCells; i++){
+            int id = myIgnitedCells[i];
+            for(int k = dependents.getStart(id); k < dependents.getEnd(id); k++){
+                int dependent = dependents.getNeighbor(k);
+                myTreeNeighbors[dependent]--;
+                updateGrowthSite(dependent);
+            }
         }
-        for(Cell neighbor : neighbors){
-            if(curr.getState() == EMPTY && neighbor.getState() == TREE &&
-                    probability(myTreeProbability) && myEmptyTurns == 2){
-                curr.setMyNextState(TREE);
+        for(int i = 0; i < myNumGrownCells; i++){
+            int id = myGrownCells[i];
+            updateGrowthSite(id);
+            for(int k = dependents.getStart(id); k < dependents.getEnd(id); k++){
+                int dependent = dependents.getNeighbor(k);
+                myTreeNeighbors[dependent]++;
+                updateGrowthSite(dependent);
             }
         }
+        for(int i = 0; i < myNumBurningCells; i++){
+            updateGrowthSite(myBurningCells[i]);
+        }
     }
 
-    private boolean probability(double probEvent){
-        Random random = new Random();
-        int randNum = random.nextInt(100);
+    private void updateGrowthSite(int id){
+        if(getGrid().getState(id) == EMPTY && myTreeNeighbors[id] > 0){
+            myGrowthSites.add(id);
+        }
+        else {
+            myGrowthSites.remove(id);
+        }
+    }
+
+    /**
+     * The rules of Spreading of Fire as a rule of the unbounded universe, in which every cell around the board starts
+     * EMPTY. Every tile draws from a random stream of its own, so the forest burns the same whatever order the tiles
+     * are analyzed in.
+     */
+    private final class UnboundedRule implements CellRule {
+        private BernoulliSampler myBurns;
+        private BernoulliSampler myGrows;
 
-        return (randNum < (probEvent * 100) - 1);
+        @Override
+        public int getBackground() {
+            return EMPTY;
+        }
+
+        @Override
+        public void beginTile(int tileRow, int tileCol) {
+            long key = (((long) tileRow << 32) | (tileCol & 0xffffffffL)) * 0x9e3779b97f4a7c15L;
+            SplittableRandom random = getRandom((int) (key ^ (key >>> 32)));
+            if(myBurns == null){
+                myBurns = new BernoulliSampler(myBurnProbability, random);
+                myGrows = new BernoulliSampler(myTreeProbability, random);
+            }
+            myBurns.reset(random);
+            myGrows.reset(random);
+        }
+
+        // a tree catches fire once for each burning neighbor, and a tree grows once for each tree neighbor
+        @Override
+        public int getNextState(int state, int[] neighborCounts) {
+            if(state == BURNING){
+                return EMPTY;
+            }
+            int spreadingState = state == TREE ? BURNING : TREE;
+            BernoulliSampler spreads = state == TREE ? myBurns : myGrows;
+            if(state != TREE && state != EMPTY){
+                return state;
+            }
+            for(int i = 0; i < neighborCounts[spreadingState]; i++){
+                if(spreads.next()){
+                    return spreadingState;
+                }
+            }
+            return state;
+        }
+
+        // without regrowth a cell only changes next to a fire, which was lit on the last step
+        @Override
+        public boolean isChangeDriven() {
+            return myTreeProbability <= 0;
+        }
     }
 }
-
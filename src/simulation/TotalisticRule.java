@@ -0,0 +1,175 @@
+package simulation;
+
+import config.XMLException;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class compiles the rule of an outer totalistic cellular automaton into a flat lookup table. The next state of a
+ * cell only depends on its own state and on how many of its neighbors are ALIVE, so the table holds one entry for every
+ * pair of a state and a neighbor count, and a step is a single array lookup per cell.
+ *
+ * The rule is written in B/S notation: "B36/S23" means a DEAD cell with 3 or 6 ALIVE neighbors is born and an ALIVE
+ * cell with 2 or 3 ALIVE neighbors survives. An optional third part, as in "B2/S/C3", gives the number of states of a
+ * Generations rule: an ALIVE cell that does not survive goes through the decaying states 2, 3, ... one step at a time
+ * before it is DEAD again, and decaying cells do not count as ALIVE. Counts are single digits, so rules can only name
+ * neighbor counts up to 9.
+ *
+ * Explicit transitions, written as "state count next" triples separated by slashes, override the entries of the rule;
+ * without a rule every pair they do not name keeps its state. Grids store states in a byte, so a rule can have at most
+ * MAX_STATES states.
+ * @author Sumer Vardhan
+ */
+public class TotalisticRule {
+    public static final int DEAD = 0;
+    public static final int ALIVE = 1;
+    public static final int MAX_STATES = Byte.MAX_VALUE + 1;
+
+    private static final Pattern RULE_PATTERN = Pattern.compile("[Bb](\\d*)/[Ss](\\d*)(?:/[Cc]?(\\d+))?");
+
+    private final int myNumStates;
+    private final int myNumCounts;
+    private final int[] myTable;
+
+    /**
+     * Compiles a rule and a table of transitions.
+     * @param rule the rule in B/S notation, or null to only use the transitions
+     * @param transitionTable the explicit transitions, or null if there are none
+     * @param minNumStates the number of states the grid already uses, which the table covers even if the rule does not
+     *                     name them; states the rule does not mention keep their state
+     * @param maxNeighbors the largest number of neighbors a cell can have
+     * @throws XMLException if the rule or the transitions cannot be read, or if they need more than MAX_STATES states
+     */
+    public TotalisticRule(String rule, String transitionTable, int minNumStates, int maxNeighbors) {
+        Matcher matcher = null;
+        if (rule != null) {
+            matcher = RULE_PATTERN.matcher(rule.replaceAll("\\s", ""));
+            if (!matcher.matches()) {
+                throw new XMLException("Invalid totalistic rule %s", rule);
+            }
+        }
+        int[][] transitions = parseTransitions(transitionTable);
+        int numStates = Math.max(2, minNumStates);
+        if (matcher != null && matcher.group(3) != null) {
+            numStates = Math.max(numStates, parseNumStates(matcher.group(3), rule));
+        }
+        for (int[] transition : transitions) {
+            if (Math.max(transition[0], transition[2]) >= MAX_STATES) {
+                throw new XMLException("Transition %d %d %d names a state past the %d a totalistic rule can have", transition[0],
+                        transition[1], transition[2], MAX_STATES);
+            }
+            numStates = Math.max(numStates, Math.max(transition[0], transition[2]) + 1);
+        }
+        if (numStates > MAX_STATES) {
+            throw new XMLException("Totalistic rules can have at most %d states, not %d", MAX_STATES, numStates);
+        }
+        myNumStates = numStates;
+        myNumCounts = maxNeighbors + 1;
+        myTable = new int[myNumStates * myNumCounts];
+        for (int state = 0; state < myNumStates; state++) {
+            Arrays.fill(myTable, state * myNumCounts, (state + 1) * myNumCounts, state);
+        }
+        if (matcher != null) {
+            int numRuleStates = matcher.group(3) == null ? 2 : Math.max(2, parseNumStates(matcher.group(3), rule));
+            fillRule(matcher.group(1), matcher.group(2), numRuleStates);
+        }
+        for (int[] transition : transitions) {
+            if (transition[1] < myNumCounts) {
+                myTable[transition[0] * myNumCounts + transition[1]] = transition[2];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of states the table covers.
+     * @return the number of states
+     */
+    public int getNumStates() {
+        return myNumStates;
+    }
+
+    /**
+     * Gets the number of neighbor counts per state in the table, one more than the largest number of neighbors.
+     * @return the stride between the rows of consecutive states
+     */
+    public int getNumCounts() {
+        return myNumCounts;
+    }
+
+    /**
+     * Gets the next state of a cell.
+     * @param state the current state of the cell
+     * @param count the number of its neighbors that are ALIVE
+     * @return the state the cell moves to
+     */
+    public int getNextState(int state, int count) {
+        return myTable[state * myNumCounts + count];
+    }
+
+    /**
+     * Gets the compiled table, in which the next state of a cell in state s with c ALIVE neighbors is at
+     * s * getNumCounts() + c. Simulations read it directly in their inner loop.
+     * @return the table, which must not be modified
+     */
+    public int[] getTable() {
+        return myTable;
+    }
+
+    private void fillRule(String births, String survivals, int numRuleStates) {
+        int decayState = numRuleStates > 2 ? 2 : DEAD;
+        for (int count = 0; count < myNumCounts; count++) {
+            myTable[DEAD * myNumCounts + count] = DEAD;
+            myTable[ALIVE * myNumCounts + count] = decayState;
+        }
+        for (char digit : births.toCharArray()) {
+            setIfCounted(DEAD, digit - '0', ALIVE);
+        }
+        for (char digit : survivals.toCharArray()) {
+            setIfCounted(ALIVE, digit - '0', ALIVE);
+        }
+        for (int state = 2; state < numRuleStates; state++) {
+            int next = state + 1 < numRuleStates ? state + 1 : DEAD;
+            Arrays.fill(myTable, state * myNumCounts, (state + 1) * myNumCounts, next);
+        }
+    }
+
+    private void setIfCounted(int state, int count, int next) {
+        if (count < myNumCounts) {
+            myTable[state * myNumCounts + count] = next;
+        }
+    }
+
+    private static int[][] parseTransitions(String transitionTable) {
+        if (transitionTable == null || transitionTable.isBlank()) {
+            return new int[0][];
+        }
+        String[] entries = transitionTable.trim().split("/");
+        int[][] transitions = new int[entries.length][];
+        for (int i = 0; i < entries.length; i++) {
+            String[] values = entries[i].trim().split("\\s+");
+            if (values.length != 3) {
+                throw new XMLException("Invalid transition %s", entries[i].trim());
+            }
+            try {
+                transitions[i] = new int[]{Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                        Integer.parseInt(values[2])};
+            } catch (NumberFormatException e) {
+                throw new XMLException(e, "Invalid transition %s", entries[i].trim());
+            }
+            if (transitions[i][0] < 0 || transitions[i][1] < 0 || transitions[i][2] < 0) {
+                throw new XMLException("Invalid transition %s", entries[i].trim());
+            }
+        }
+        return transitions;
+    }
+
+    private static int parseNumStates(String numStates, String rule) {
+        try {
+            return Integer.parseInt(numStates);
+        } catch (NumberFormatException e) {
+            throw new XMLException(e, "Invalid number of states in totalistic rule %s", rule);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package simulation;
+
+import config.XMLSimulationParser;
+import elements.Grid;
+
+/**
+ * This class represents a Totalistic Simulation, which runs any Life-like, Generations or table-driven rule given in the
+ * configuration file. It is used by Game to run the Totalistic Simulation if that is the file that the user selected.
+ *
+ * The rule is compiled into a flat lookup table by TotalisticRule when the file is loaded, so analyzing a cell is a
+ * count of its ALIVE neighbors followed by a single table lookup, with no branching on the rule. The loop itself is a
+ * RuleKernel specialized for the neighborhood of the file.
+ * @author Sumer Vardhan
+ */
+public class TotalisticSimulation extends Simulation {
+    private XMLSimulationParser myXMLParser;
+    private TotalisticRule myRule;
+    private RuleKernel myKernel;
+
+    public TotalisticSimulation(Grid grid) {
+        super(grid);
+        myXMLParser = new XMLSimulationParser(grid.getMyConfigFile());
+        int maxState = 0;
+        for (int id = 0; id < grid.getSize(); id++) {
+            maxState = Math.max(maxState, grid.getState(id));
+        }
+        myRule = new TotalisticRule(myXMLParser.getRule(), myXMLParser.getTransitionTable(), maxState + 1,
+                grid.getStencil().size());
+        myKernel = RuleKernel.compile(grid, myRule);
+    }
+
+    /**
+     * Overrides analyzeCells in the Simulation superclass and analyzes the cells for the simulation by looking up the
+     * next state of every cell in the compiled rule.
+     */
+    @Override
+    public void analyzeCells() {
+        analyzeCells(0, getNumCellsToAnalyze());
+    }
+
+    /**
+     * Every cell only sets its own next state, so the bands of a Totalistic Simulation can be analyzed in parallel.
+     * @return true
+     */
+    @Override
+    public boolean isBandParallel() {
+        return true;
+    }
+
+    @Override
+    public int getNumBands() {
+        return getNumCellBands();
+    }
+
+    @Override
+    public void analyzeBand(int band) {
+        analyzeCells(getBandStart(band), getBandEnd(band));
+    }
+
+    /**
+     * Gets the compiled rule of the simulation.
+     * @return the rule given in the configuration file
+     */
+    public TotalisticRule getRule() {
+        return myRule;
+    }
+
+    private void analyzeCells(int start, int end) {
+        myKernel.analyze(getGrid().getActiveCells(), start, end);
+    }
+}
@@ -0,0 +1,317 @@
+package checks;
+
+import elements.Grid;
+import simulation.GameOfLifeSimulation;
+import simulation.ParallelStepper;
+import simulation.PercolationSimulation;
+import simulation.PredatorPreySimulation;
+import simulation.SegregationSimulation;
+import simulation.Simulation;
+import simulation.SpreadingOfFireSimulation;
+import simulation.TotalisticSimulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+
+/**
+ * This class holds what the checks share: failing with a message, writing simulation files for boards of any size,
+ * loading grids and stepping simulations. The checks are run from the root of the project, where the configuration
+ * files are.
+ * @author Sumer Vardhan
+ */
+public final class Check {
+    public static final File CONFIG_DIRECTORY = new File("Resources/simulation_config_files");
+    public static final String MOORE = "-1 -1 3 0 -1 3 1 -1 3";
+    public static final String HEXAGONAL = "-1 0 2 0 -1 3 1 0 2";
+    public static final String VON_NEUMANN = "-1 0 1 0 -1 3 1 0 1";
+    public static final long SEED = 20201004;
+    public static final String[] STORAGES = {Grid.CELL_STORAGE, Grid.PRIMITIVE_STORAGE, Grid.SPARSE_STORAGE,
+            Grid.MAPPED_STORAGE};
+    public static final Map<String, Function<Grid, Simulation>> SIMULATIONS = Map.of(
+            "GameOfLifeConfig.xml", GameOfLifeSimulation::new,
+            "PercolationConfig.xml", PercolationSimulation::new,
+            "PredatorPreyConfig.xml", PredatorPreySimulation::new,
+            "SegregationConfig.xml", SegregationSimulation::new,
+            "SpreadingOfFireConfig.xml", SpreadingOfFireSimulation::new,
+            "TotalisticConfig.xml", TotalisticSimulation::new);
+
+    private static final AtomicInteger NUM_LOADS = new AtomicInteger();
+
+    private Check() {
+    }
+
+    /**
+     * Fails the running check if a condition does not hold.
+     * @param condition the condition that must hold
+     * @param message the message of the failure, formatted with the values
+     * @param values the values of the message
+     * @throws AssertionError if the condition does not hold
+     */
+    public static void require(boolean condition, String message, Object... values) {
+        if (!condition) {
+            throw new AssertionError(String.format(message, values));
+        }
+    }
+
+    /**
+     * Gets one of the configuration files of the project.
+     * @param name the name of the file
+     * @return the configuration file
+     */
+    public static File config(String name) {
+        return new File(CONFIG_DIRECTORY, name);
+    }
+
+    /**
+     * Draws the states of a random board.
+     * @param size the number of cells
+     * @param seed the seed of the board
+     * @param weights how likely every state is, in order of state
+     * @return the state of every cell
+     */
+    public static int[] randomStates(int size, long seed, double... weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] states = new int[size];
+        for (int id = 0; id < size; id++) {
+            double u = random.nextDouble() * total;
+            int state = 0;
+            while (state < weights.length - 1 && u >= weights[state]) {
+                u -= weights[state];
+                state++;
+            }
+            states[id] = state;
+        }
+        return states;
+    }
+
+    /**
+     * Writes a copy of a configuration file of the project with another board and, optionally, other values for some
+     * of its elements. The file is deleted when the checks end.
+     * @param template the name of the configuration file to copy
+     * @param numRows the number of rows of the board
+     * @param numCols the number of columns of the board
+     * @param states the state of every cell, row by row
+     * @param replacements pairs of an element name and the text it should hold, such as "rule" and "B36/S23"
+     * @return the new configuration file
+     */
+    public static File writeConfig(String template, int numRows, int numCols, int[] states, String... replacements) {
+        try {
+            String xml = Files.readString(config(template).toPath(), StandardCharsets.UTF_8);
+            xml = replaceElement(xml, "num_rows", Integer.toString(numRows));
+            xml = replaceElement(xml, "num_columns", Integer.toString(numCols));
+            StringBuilder grid = new StringBuilder("\n");
+            for (int row = 0; row < numRows; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    grid.append(col == 0 ? "" : " ").append(states[row * numCols + col]);
+                }
+                grid.append('\n');
+            }
+            xml = replaceElement(xml, "initial_rectangular_grid", grid.toString());
+            for (int i = 0; i < replacements.length; i += 2) {
+                xml = replaceElement(xml, replacements[i], replacements[i + 1]);
+            }
+            File file = File.createTempFile("check", ".xml");
+            file.deleteOnExit();
+            Files.writeString(file.toPath(), xml, StandardCharsets.UTF_8);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the board of a configuration file. Every grid gets a storage directory of its own, so mapped grids of the
+     * same configuration never share a file.
+     * @param config the configuration file
+     * @param storage the storage of the grid, one of STORAGES
+     * @param isTrackingChanges true to track changes
+     * @return the configured grid
+     */
+    public static Grid load(File config, String storage, boolean isTrackingChanges) {
+        File directory = new File(getStorageDirectory(), Integer.toString(NUM_LOADS.incrementAndGet()));
+        Grid grid = new Grid(config, storage, directory);
+        grid.configureCells();
+        grid.setChangeTracking(isTrackingChanges);
+        return grid;
+    }
+
+    /**
+     * Steps a simulation a number of generations, on the stepper if there is one and on the calling thread otherwise.
+     * @param simulation the simulation to step
+     * @param stepper the stepper, or null
+     * @param steps the number of generations
+     */
+    public static void step(Simulation simulation, ParallelStepper stepper, int steps) {
+        for (int i = 0; i < steps; i++) {
+            if (stepper == null) {
+                simulation.analyzeCells();
+                simulation.updateCells();
+            } else {
+                stepper.step(simulation);
+            }
+        }
+    }
+
+    /**
+     * Loads a board, steps a simulation of it with the seed SEED and closes the grid.
+     * @param config the configuration file
+     * @param storage the storage of the grid, one of STORAGES
+     * @param isTrackingChanges true to track changes
+     * @param stepper the stepper, or null to step on the calling thread
+     * @param steps the number of generations
+     * @param simulation creates the simulation of the grid
+     * @return the states of every cell after every generation
+     */
+    public static int[][] run(File config, String storage, boolean isTrackingChanges, ParallelStepper stepper,
+                              int steps, Function<Grid, Simulation> simulation) {
+        Grid grid = load(config, storage, isTrackingChanges);
+        Simulation running = simulation.apply(grid);
+        running.setRandomSeed(SEED);
+        running.setParallelStepper(stepper);
+        int[][] boards = new int[steps][];
+        for (int step = 0; step < steps; step++) {
+            step(running, stepper, 1);
+            boards[step] = states(grid);
+            require(grid.getGeneration() == step + 1, "%s: generation %d after %d steps", storage,
+                    grid.getGeneration(), step + 1);
+        }
+        grid.close();
+        return boards;
+    }
+
+    /**
+     * Gets the states of every cell of a grid.
+     * @param grid the grid
+     * @return the state of every cell, by id
+     */
+    public static int[] states(Grid grid) {
+        int[] states = new int[grid.getSize()];
+        for (int id = 0; id < states.length; id++) {
+            states[id] = grid.getState(id);
+        }
+        return states;
+    }
+
+    /**
+     * Fails the running check if two boards differ, naming the first cell that does.
+     * @param expected the expected states, by id
+     * @param actual the states found, by id
+     * @param what what is being compared, for the message
+     */
+    public static void requireSameStates(int[] expected, int[] actual, String what) {
+        require(expected.length == actual.length, "%s: %d cells instead of %d", what, actual.length, expected.length);
+        for (int id = 0; id < expected.length; id++) {
+            require(expected[id] == actual[id], "%s: cell %d is %d instead of %d", what, id, actual[id], expected[id]);
+        }
+    }
+
+    /**
+     * Fails the running check if two runs differ, naming the first generation and cell that do.
+     * @param expected the expected boards, by generation
+     * @param actual the boards found, by generation
+     * @param what what is being compared, for the message
+     */
+    public static void requireSameRun(int[][] expected, int[][] actual, String what) {
+        require(expected.length == actual.length, "%s: %d generations instead of %d", what, actual.length,
+                expected.length);
+        for (int step = 0; step < expected.length; step++) {
+            requireSameStates(expected[step], actual[step], what + ", generation " + (step + 1));
+        }
+    }
+
+    /**
+     * Reads a private field, for checks of state that the classes keep to themselves.
+     * @param object the object that holds the field
+     * @param name the name of the field
+     * @return the value of the field
+     */
+    public static Object field(Object object, String name) {
+        try {
+            return getField(object, name).get(object);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sets a private field, for checks of settings that the classes do not expose.
+     * @param object the object that holds the field
+     * @param name the name of the field
+     * @param value the new value of the field
+     */
+    public static void setField(Object object, String name, Object value) {
+        Field field = getField(object, name);
+        try {
+            field.set(object, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the directory the checks keep mapped boards in, which is deleted when the checks end.
+     * @return the storage directory of the checks
+     */
+    public static File getStorageDirectory() {
+        return StorageDirectory.DIRECTORY;
+    }
+
+    private static Field getField(Object object, String name) {
+        for (Class<?> type = object.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // look in the superclass
+            }
+        }
+        throw new IllegalArgumentException("No field " + name + " in " + object.getClass());
+    }
+
+    private static String replaceElement(String xml, String name, String text) {
+        String replaced = xml.replaceFirst("<" + name + ">[^<]*</" + name + ">",
+                Matcher.quoteReplacement("<" + name + ">" + text + "</" + name + ">"));
+        require(!replaced.equals(xml) || xml.contains("<" + name + ">" + text + "</" + name + ">"),
+                "The template has no element %s", name);
+        return replaced;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    // created the first time a check needs it
+    private static final class StorageDirectory {
+        private static final File DIRECTORY = create();
+
+        private static File create() {
+            try {
+                File directory = Files.createTempDirectory("checks").toFile();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(directory)));
+                return directory;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package checks;
+
+import elements.ChangeTrackingCheck;
+import elements.MappedStorageCheck;
+import elements.SparseTileStorageCheck;
+import game.GridImageCheck;
+import simulation.BitPackedLifeCheck;
+import simulation.HashLifeCheck;
+import simulation.ParallelStepCheck;
+import simulation.PercolationCheck;
+import simulation.PredatorPreyCheck;
+import simulation.RuleKernelCheck;
+import simulation.SegregationCheck;
+import simulation.SpreadingOfFireCheck;
+import simulation.TotalisticRuleCheck;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Runs every check, reports the ones that fail and exits with status 1 if any did. The checks compare the fast paths
+ * of the simulations, storages and renderer with straightforward versions of the same rules, so they are run after
+ * any change to those.
+ * @author Sumer Vardhan
+ */
+public class RunAllChecks {
+    private static final Map<String, Consumer<String[]>> CHECKS = new LinkedHashMap<>();
+
+    static {
+        CHECKS.put("BitPackedLifeCheck", BitPackedLifeCheck::main);
+        CHECKS.put("HashLifeCheck", HashLifeCheck::main);
+        CHECKS.put("ChangeTrackingCheck", ChangeTrackingCheck::main);
+        CHECKS.put("SparseTileStorageCheck", SparseTileStorageCheck::main);
+        CHECKS.put("MappedStorageCheck", MappedStorageCheck::main);
+        CHECKS.put("ParallelStepCheck", ParallelStepCheck::main);
+        CHECKS.put("PredatorPreyCheck", PredatorPreyCheck::main);
+        CHECKS.put("SegregationCheck", SegregationCheck::main);
+        CHECKS.put("PercolationCheck", PercolationCheck::main);
+        CHECKS.put("SpreadingOfFireCheck", SpreadingOfFireCheck::main);
+        CHECKS.put("TotalisticRuleCheck", TotalisticRuleCheck::main);
+        CHECKS.put("RuleKernelCheck", RuleKernelCheck::main);
+        CHECKS.put("GridImageCheck", GridImageCheck::main);
+    }
+
+    public static void main(String[] args) {
+        int numFailed = 0;
+        for (Map.Entry<String, Consumer<String[]>> check : CHECKS.entrySet()) {
+            try {
+                check.getValue().accept(args);
+            } catch (Throwable e) {
+                numFailed++;
+                System.out.println("FAILED " + check.getKey());
+                e.printStackTrace(System.out);
+            }
+        }
+        System.out.printf("%d of %d checks passed%n", CHECKS.size() - numFailed, CHECKS.size());
+        System.exit(numFailed == 0 ? 0 : 1);
+    }
+}
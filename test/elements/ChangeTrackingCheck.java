@@ -0,0 +1,65 @@
+package elements;
+
+import checks.Check;
+import simulation.Simulation;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Checks that tracking changes never changes the result of a simulation: every simulation of the project gives the same
+ * boards whether the grid analyzes every cell or only the cells near the last changes, and the cells the grid reports
+ * as changed are exactly the cells whose state differs from the generation before.
+ * @author Sumer Vardhan
+ */
+public class ChangeTrackingCheck {
+    private static final int STEPS = 40;
+
+    public static void main(String[] args) {
+        for (Map.Entry<String, Function<Grid, Simulation>> simulation : Check.SIMULATIONS.entrySet()) {
+            checkTracking(simulation.getKey(), Check.config(simulation.getKey()), simulation.getValue());
+        }
+        int[] states = Check.randomStates(150 * 203, 17, 0.05, 0.3, 0.65);
+        checkTracking("GameOfLifeConfig.xml", Check.writeConfig("GameOfLifeConfig.xml", 150, 203, states),
+                Check.SIMULATIONS.get("GameOfLifeConfig.xml"));
+        states = Check.randomStates(97 * 131, 19, 0.8, 0.2);
+        checkTracking("TotalisticConfig.xml", Check.writeConfig("TotalisticConfig.xml", 97, 131, states,
+                "neighbor_configuration", Check.HEXAGONAL), Check.SIMULATIONS.get("TotalisticConfig.xml"));
+        System.out.println("ok ChangeTrackingCheck");
+    }
+
+    private static void checkTracking(String name, File config, Function<Grid, Simulation> simulation) {
+        for (String storage : new String[]{Grid.CELL_STORAGE, Grid.PRIMITIVE_STORAGE}) {
+            int[][] expected = Check.run(config, storage, false, null, STEPS, simulation);
+            Check.requireSameRun(expected, runTracked(config, storage, simulation), name + " tracking changes on "
+                    + storage);
+        }
+    }
+
+    // steps with change tracking and checks the changed cells the grid reports against the boards
+    private static int[][] runTracked(File config, String storage, Function<Grid, Simulation> simulation) {
+        Grid grid = Check.load(config, storage, true);
+        Simulation tracked = simulation.apply(grid);
+        tracked.setRandomSeed(Check.SEED);
+        int[][] boards = new int[STEPS][];
+        int[] previous = Check.states(grid);
+        for (int step = 0; step < STEPS; step++) {
+            Check.step(tracked, null, 1);
+            boards[step] = Check.states(grid);
+            CellSet changedCells = grid.getChangedCells();
+            int numChanged = 0;
+            for (int id = 0; id < previous.length; id++) {
+                boolean isChanged = previous[id] != boards[step][id];
+                Check.require(changedCells.contains(id) == isChanged, "%s generation %d: cell %d %s", storage,
+                        step + 1, id, isChanged ? "changed but is not reported" : "is reported but did not change");
+                numChanged += isChanged ? 1 : 0;
+            }
+            Check.require(changedCells.size() == numChanged, "%s generation %d: %d changed cells reported for %d",
+                    storage, step + 1, changedCells.size(), numChanged);
+            previous = boards[step];
+        }
+        grid.close();
+        return boards;
+    }
+}
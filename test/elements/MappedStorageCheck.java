@@ -0,0 +1,120 @@
+package elements;
+
+import checks.Check;
+import simulation.GameOfLifeSimulation;
+import simulation.Simulation;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Checks that the mapped storage gives every simulation of the project the same boards as the primitive storage, and
+ * that a mapped board is only picked up from an earlier run when asked to be, with its generation, and never half
+ * written.
+ * @author Sumer Vardhan
+ */
+public class MappedStorageCheck {
+    private static final int STEPS = 40;
+
+    public static void main(String[] args) {
+        for (Map.Entry<String, Function<Grid, Simulation>> simulation : Check.SIMULATIONS.entrySet()) {
+            checkMapped(simulation.getKey(), Check.config(simulation.getKey()), simulation.getValue());
+        }
+        checkRestore();
+        checkTornCommit();
+        System.out.println("ok MappedStorageCheck");
+    }
+
+    private static void checkMapped(String name, File config, Function<Grid, Simulation> simulation) {
+        int[][] expected = Check.run(config, Grid.PRIMITIVE_STORAGE, false, null, STEPS, simulation);
+        for (boolean isTrackingChanges : new boolean[]{false, true}) {
+            Check.requireSameRun(expected, Check.run(config, Grid.MAPPED_STORAGE, isTrackingChanges, null, STEPS,
+                    simulation), name + " on mapped storage" + (isTrackingChanges ? ", tracking changes" : ""));
+        }
+    }
+
+    private static void checkRestore() {
+        int[] states = Check.randomStates(45 * 70, 23, 0, 0.35, 0.65);
+        File config = Check.writeConfig("GameOfLifeConfig.xml", 45, 70, states);
+        File directory = new File(Check.getStorageDirectory(), "restore");
+        Grid reference = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        Simulation referenceSimulation = new GameOfLifeSimulation(reference);
+
+        Grid first = load(config, directory, false);
+        Check.require(!first.isRestored(), "A board that was never saved was restored");
+        Simulation simulation = new GameOfLifeSimulation(first);
+        Check.step(simulation, null, 37);
+        Check.step(referenceSimulation, null, 37);
+        first.close();
+
+        Grid restored = load(config, directory, true);
+        Check.require(restored.isRestored(), "The saved board was not restored");
+        Check.require(restored.getGeneration() == 37, "The board was restored at generation %d instead of 37",
+                restored.getGeneration());
+        Check.requireSameStates(Check.states(reference), Check.states(restored), "Restored board");
+        simulation = new GameOfLifeSimulation(restored);
+        Check.require(simulation.getGeneration() == 37, "The restored simulation is at generation %d",
+                simulation.getGeneration());
+        Check.step(simulation, null, 20);
+        Check.step(referenceSimulation, null, 20);
+        Check.requireSameStates(Check.states(reference), Check.states(restored), "Board stepped after restoring");
+        restored.close();
+
+        Grid reloaded = load(config, directory, false);
+        Check.require(!reloaded.isRestored() && reloaded.getGeneration() == 0,
+                "Loading without restoring kept generation %d", reloaded.getGeneration());
+        Check.requireSameStates(states, Check.states(reloaded), "Board loaded without restoring");
+        reloaded.close();
+
+        File edited = Check.writeConfig("GameOfLifeConfig.xml", 45, 70, states, "neighbor_configuration",
+                Check.HEXAGONAL);
+        Check.require(!MappedStorage.getStorageFile(edited, directory).equals(
+                MappedStorage.getStorageFile(config, directory)), "Two configurations share a storage file");
+        Grid other = load(edited, directory, true);
+        Check.require(!other.isRestored(), "Another configuration restored the board of the first");
+        other.close();
+    }
+
+    private static Grid load(File config, File directory, boolean restore) {
+        Grid grid = new Grid(config, Grid.MAPPED_STORAGE, directory, restore);
+        grid.configureCells();
+        grid.setChangeTracking(true);
+        return grid;
+    }
+
+    // a storage opened while an update was half copied must see the whole generation the header names
+    private static void checkTornCommit() {
+        File file = new File(Check.getStorageDirectory(), "torn.grid");
+        MappedStorage storage = new MappedStorage(file, 10, 10, false);
+        for (int id = 0; id < 100; id++) {
+            storage.setState(id, id % 3);
+        }
+        storage.beginUpdate(1);
+        storage.updateStates();
+        for (int id = 0; id < 100; id++) {
+            storage.setNextState(id, (id + 1) % 3);
+        }
+        storage.beginUpdate(2);
+        for (int id = 0; id < 50; id++) {
+            storage.updateState(id);
+        }
+        MappedStorage reopened = new MappedStorage(file, 10, 10, true);
+        Check.require(reopened.isRestored() && reopened.getGeneration() == 2,
+                "The board was reopened at generation %d", reopened.getGeneration());
+        for (int id = 0; id < 100; id++) {
+            Check.require(reopened.getState(id) == (id + 1) % 3 && reopened.getNextState(id) == (id + 1) % 3,
+                    "Cell %d of the reopened board is %d, next %d", id, reopened.getState(id),
+                    reopened.getNextState(id));
+        }
+        reopened.close();
+        storage.close();
+        MappedStorage cleared = new MappedStorage(file, 10, 10, false);
+        Check.require(!cleared.isRestored() && cleared.getGeneration() == 0,
+                "A board opened without restoring is at generation %d", cleared.getGeneration());
+        cleared.close();
+        MappedStorage resized = new MappedStorage(file, 10, 11, true);
+        Check.require(!resized.isRestored(), "A board of another size was restored");
+        resized.close();
+    }
+}
@@ -0,0 +1,213 @@
+package elements;
+
+import checks.Check;
+import simulation.GameOfLifeSimulation;
+import simulation.Simulation;
+import simulation.SpreadingOfFireSimulation;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Checks that the sparse storage gives the simulations that stay on the board the same boards as the primitive
+ * storage, that Game of Life and Spreading of Fire step an unbounded universe whose window matches a bounded run on a
+ * board with a wide enough margin, that patterns leaving the board keep going while the memory stays bounded, and that
+ * tiles are only kept while they hold something other than the background state.
+ * @author Sumer Vardhan
+ */
+public class SparseTileStorageCheck {
+    private static final int STEPS = 40;
+    private static final int EMPTY = 0;
+    private static final int TREE = 1;
+    private static final int BURNING = 2;
+    private static final Map<String, Integer> UNIVERSE_BACKGROUNDS = Map.of(
+            "GameOfLifeConfig.xml", GameOfLifeSimulation.DEAD,
+            "SpreadingOfFireConfig.xml", EMPTY);
+
+    public static void main(String[] args) {
+        for (Map.Entry<String, Function<Grid, Simulation>> simulation : Check.SIMULATIONS.entrySet()) {
+            checkSparse(simulation.getKey(), Check.config(simulation.getKey()), simulation.getValue());
+        }
+        // a board that ends part way through the last row and column of tiles
+        int[] states = Check.randomStates(150 * 203, 17, 0, 0.3, 0.7);
+        checkSparse("GameOfLifeConfig.xml", Check.writeConfig("GameOfLifeConfig.xml", 150, 203, states),
+                Check.SIMULATIONS.get("GameOfLifeConfig.xml"));
+        checkRandomFire();
+        checkGlider();
+        checkFireFront();
+        checkTiles();
+        System.out.println("ok SparseTileStorageCheck");
+    }
+
+    private static void checkSparse(String name, File config, Function<Grid, Simulation> simulation) {
+        int[][] expected = UNIVERSE_BACKGROUNDS.containsKey(name) ? runWithMargin(name, config, simulation)
+                : Check.run(config, Grid.PRIMITIVE_STORAGE, false, null, STEPS, simulation);
+        for (boolean isTrackingChanges : new boolean[]{false, true}) {
+            Check.requireSameRun(expected, Check.run(config, Grid.SPARSE_STORAGE, isTrackingChanges, null, STEPS,
+                    simulation), name + " on sparse storage" + (isTrackingChanges ? ", tracking changes" : ""));
+        }
+    }
+
+    // nothing from the edge of a board with a margin of STEPS cells on every side reaches its middle within STEPS steps
+    private static int[][] runWithMargin(String name, File config, Function<Grid, Simulation> simulation) {
+        Grid grid = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        int numRows = grid.getNumRows();
+        int numCols = grid.getNumCols();
+        int margin = STEPS * grid.getStencil().getReach();
+        int[] window = Check.states(grid);
+        grid.close();
+        int paddedCols = numCols + 2 * margin;
+        int[] padded = new int[(numRows + 2 * margin) * paddedCols];
+        Arrays.fill(padded, UNIVERSE_BACKGROUNDS.get(name));
+        for (int row = 0; row < numRows; row++) {
+            System.arraycopy(window, row * numCols, padded, (row + margin) * paddedCols + margin, numCols);
+        }
+        int[][] boards = Check.run(Check.writeConfig(name, numRows + 2 * margin, paddedCols, padded),
+                Grid.PRIMITIVE_STORAGE, false, null, STEPS, simulation);
+        for (int step = 0; step < STEPS; step++) {
+            int[] board = new int[window.length];
+            for (int row = 0; row < numRows; row++) {
+                System.arraycopy(boards[step], (row + margin) * paddedCols + margin, board, row * numCols, numCols);
+            }
+            boards[step] = board;
+        }
+        return boards;
+    }
+
+    // a random forest burns the same for a seed whether changes are tracked, and only the way the rules allow
+    private static void checkRandomFire() {
+        int[] states = Check.randomStates(61 * 147, 7, 0.4, 0.55, 0.05);
+        File config = Check.writeConfig("SpreadingOfFireConfig.xml", 61, 147, states);
+        Function<Grid, Simulation> simulation = grid -> {
+            Simulation fire = new SpreadingOfFireSimulation(grid);
+            Check.setField(fire, "myBurnProbability", 0.6);
+            Check.setField(fire, "myTreeProbability", 0.1);
+            return fire;
+        };
+        int[][] boards = Check.run(config, Grid.SPARSE_STORAGE, false, null, STEPS, simulation);
+        Check.requireSameRun(boards, Check.run(config, Grid.SPARSE_STORAGE, true, null, STEPS, simulation),
+                "Random fire on sparse storage, tracking changes");
+        int[] previous = states;
+        for (int step = 0; step < STEPS; step++) {
+            for (int id = 0; id < previous.length; id++) {
+                int state = boards[step][id];
+                boolean isAllowed = previous[id] == BURNING ? state == EMPTY
+                        : state == previous[id] || state == (previous[id] == TREE ? BURNING : TREE);
+                Check.require(isAllowed, "Random fire generation %d: cell %d went from %d to %d", step + 1, id,
+                        previous[id], state);
+            }
+            previous = boards[step];
+        }
+    }
+
+    // a glider flies off a small board and keeps flying, in at most four tiles, leaving the board empty behind it
+    private static void checkGlider() {
+        int dead = GameOfLifeSimulation.DEAD;
+        int live = GameOfLifeSimulation.LIVE;
+        int[] glider = {dead, live, dead, dead, dead, live, live, live, live};
+        int[] states = new int[8 * 8];
+        Arrays.fill(states, dead);
+        for (int i = 0; i < glider.length; i++) {
+            states[(1 + i / 3) * 8 + 1 + i % 3] = glider[i];
+        }
+        Grid grid = Check.load(Check.writeConfig("GameOfLifeConfig.xml", 8, 8, states), Grid.SPARSE_STORAGE, true);
+        Simulation simulation = new GameOfLifeSimulation(grid);
+        SparseTileStorage universe = (SparseTileStorage) Check.field(grid, "myUniverse");
+        Check.require(grid.isUnbounded(), "Game of Life on sparse storage is not unbounded");
+        int[] previous = Check.states(grid);
+        int periods = 3 * SparseTileStorage.TILE_SIZE;
+        for (int step = 1; step <= 4 * periods; step++) {
+            Check.step(simulation, null, 1);
+            int[] current = Check.states(grid);
+            requireChangedCells(grid.getChangedCells(), previous, current, "Glider generation " + step);
+            Check.require(universe.getNumTiles() <= 4, "Glider generation %d takes %d tiles", step,
+                    universe.getNumTiles());
+            previous = current;
+        }
+        for (int id = 0; id < previous.length; id++) {
+            Check.require(previous[id] == dead, "The glider left cell %d of the board in state %d", id, previous[id]);
+        }
+        for (int i = 0; i < glider.length; i++) {
+            int row = 1 + i / 3 + periods;
+            int column = 1 + i % 3 + periods;
+            Check.require(universe.getState(row, column) == glider[i], "Cell (%d, %d) of the glider is %d", row,
+                    column, universe.getState(row, column));
+        }
+        grid.close();
+    }
+
+    // a fire burning down a long strip of forest frees the tiles it leaves behind
+    private static void checkFireFront() {
+        int length = 20 * SparseTileStorage.TILE_SIZE;
+        int[] states = new int[3 * length];
+        Arrays.fill(states, TREE);
+        for (int row = 0; row < 3; row++) {
+            states[row * length] = BURNING;
+        }
+        Grid grid = Check.load(Check.writeConfig("SpreadingOfFireConfig.xml", 3, length, states,
+                "neighbor_configuration", Check.MOORE), Grid.SPARSE_STORAGE, false);
+        Simulation simulation = new SpreadingOfFireSimulation(grid);
+        SparseTileStorage universe = (SparseTileStorage) Check.field(grid, "myUniverse");
+        int numTiles = universe.getNumTiles();
+        Check.require(numTiles == 20, "The forest takes %d tiles instead of 20", numTiles);
+        for (int step = 1; step <= length; step++) {
+            Check.step(simulation, null, 1);
+            Check.require(universe.getNumTiles() <= numTiles, "Fire generation %d takes %d tiles", step,
+                    universe.getNumTiles());
+            numTiles = universe.getNumTiles();
+        }
+        Check.require(numTiles == 0, "%d tiles are left once the forest burned down", numTiles);
+        grid.close();
+    }
+
+    private static void requireChangedCells(CellSet changedCells, int[] previous, int[] current, String what) {
+        int numChanged = 0;
+        for (int id = 0; id < previous.length; id++) {
+            boolean isChanged = previous[id] != current[id];
+            Check.require(changedCells.contains(id) == isChanged, "%s: cell %d %s", what, id,
+                    isChanged ? "changed but is not reported" : "is reported but did not change");
+            numChanged += isChanged ? 1 : 0;
+        }
+        Check.require(changedCells.size() == numChanged, "%s: %d changed cells reported for %d", what,
+                changedCells.size(), numChanged);
+    }
+
+    // tiles must come and go with the cells that are not in the background state
+    private static void checkTiles() {
+        int size = 3 * SparseTileStorage.TILE_SIZE + 5;
+        SparseTileStorage storage = new SparseTileStorage(size, size, 2);
+        Check.require(storage.getNumTiles() == 0, "An empty board has %d tiles", storage.getNumTiles());
+        int corner = size * size - 1;
+        storage.setState(0, 1);
+        storage.setState(corner, 1);
+        storage.setState(1, 2);
+        Check.require(storage.getNumTiles() == 2, "Two cells in different tiles allocated %d tiles",
+                storage.getNumTiles());
+        Check.require(storage.getState(0) == 1 && storage.getState(1) == 2 && storage.getState(size) == 2,
+                "A tile does not hold the states it was given");
+
+        storage.setNextState(0, 2);
+        storage.setNextState(corner, 1);
+        storage.updateStates();
+        Check.require(storage.getNumTiles() == 1, "%d tiles are left after one tile went back to the background",
+                storage.getNumTiles());
+        Check.require(storage.getState(0) == 2 && storage.getState(corner) == 1,
+                "The states were not moved to their next states");
+
+        storage.setNextState(corner, 2);
+        storage.updateState(corner);
+        Check.require(storage.getNumTiles() == 0, "%d tiles are left on a board of background cells",
+                storage.getNumTiles());
+        Check.require(storage.getState(corner) == 2, "A freed cell is not in the background state");
+
+        storage.setState(-5, -7, 1);
+        storage.setBackground(1);
+        Check.require(storage.getState(-5, -7) == 1 && storage.getState(-500, 900) == 1,
+                "Cells outside the board did not move to the new background");
+        Check.require(storage.getState(0) == 2 && storage.getState(corner) == 2,
+                "Cells of the board lost their state when the background changed");
+        Check.require(storage.getNumTiles() == 16, "The board takes %d tiles instead of 16", storage.getNumTiles());
+    }
+}
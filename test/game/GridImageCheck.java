@@ -0,0 +1,147 @@
+package game;
+
+import checks.Check;
+import elements.Grid;
+import elements.GridSnapshot;
+import simulation.Simulation;
+import simulation.TotalisticSimulation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that drawing only the cells that changed gives the same pixels as drawing the whole grid from scratch with the
+ * same view, for every shape of cell, both when cells are drawn as shapes and when pixels show the majority of a block
+ * of cells, that rows outside the dirty rows never change, and that the pyramid of majority states always matches the
+ * majority of every block counted from the grid.
+ * @author Sumer Vardhan
+ */
+public class GridImageCheck {
+    private static final int[] PALETTE = {0xFFFFFFFF, 0xFF0000FF, 0xFFFFFF00, 0xFF00FF00};
+    private static final String[] SHAPES = {GridGeometry.RECTANGULAR, GridGeometry.TRIANGULAR,
+            GridGeometry.HEXAGONAL};
+
+    public static void main(String[] args) {
+        for (String shape : SHAPES) {
+            int[] states = Check.randomStates(60 * 80, 29, 0.7, 0.2, 0.1);
+            checkImage(shape, Check.writeConfig("TotalisticConfig.xml", 60, 80, states), 320, 240, 40, 1);
+            // cells smaller than a pixel until the view is zoomed in far enough
+            states = Check.randomStates(1200 * 1200, 31, 0.7, 0.2, 0.1);
+            checkImage(shape, Check.writeConfig("TotalisticConfig.xml", 1200, 1200, states), 300, 300, 12, 3);
+        }
+        System.out.println("ok GridImageCheck");
+    }
+
+    // steps the board, drawing every generation and moving the view now and then, and compares with fresh images
+    private static void checkImage(String shape, File config, int width, int height, int steps, int comparePeriod) {
+        Grid grid = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        Simulation simulation = new TotalisticSimulation(grid);
+        GridSnapshot snapshot = new GridSnapshot(grid.getSize());
+        GridImage image = new GridImage(grid, shape, width, height, PALETTE);
+        List<double[]> viewChanges = new ArrayList<>();
+        snapshot.capture(grid, 0, null);
+        image.render(snapshot);
+        int[] previous = image.getPixels().clone();
+        for (int step = 1; step <= steps; step++) {
+            String what = String.format("%s %dx%d, generation %d", shape, grid.getNumRows(), grid.getNumCols(), step);
+            Check.step(simulation, null, 1);
+            snapshot.capture(grid, step, grid.getChangedCells());
+            image.render(snapshot);
+            requireDirtyRows(image, previous, width, what);
+            double[] viewChange = changeView(step, width, height);
+            if (viewChange != null) {
+                viewChanges.add(viewChange);
+                applyViewChange(image, viewChange);
+                requireDirtyRows(image, previous, width, what + " after moving the view");
+            }
+            if (step % comparePeriod == 0 || step == steps) {
+                requireSameAsFresh(image, grid, shape, width, height, viewChanges, what);
+                requirePyramid(image.getPyramid(), Check.states(grid), grid.getNumRows(), grid.getNumCols(), what);
+            }
+        }
+        grid.close();
+    }
+
+    // zooms in, pans and zooms out again in a fixed pattern; a change is a zoom factor and point, or NaN and a drag
+    private static double[] changeView(int step, int width, int height) {
+        switch (step % 6) {
+            case 1:
+                return new double[]{2.5, width * 0.3, height * 0.7};
+            case 2:
+                return new double[]{Double.NaN, -width * 0.2, height * 0.15};
+            case 3:
+                return new double[]{4, width * 0.8, height * 0.2};
+            case 5:
+                return new double[]{0.2, width * 0.5, height * 0.5};
+            default:
+                return null;
+        }
+    }
+
+    private static void applyViewChange(GridImage image, double[] viewChange) {
+        if (Double.isNaN(viewChange[0])) {
+            image.pan(viewChange[1], viewChange[2]);
+        } else {
+            image.zoom(viewChange[0], viewChange[1], viewChange[2]);
+        }
+    }
+
+    // a fresh image moved to the same view and given the whole grid must show exactly the same pixels
+    private static void requireSameAsFresh(GridImage image, Grid grid, String shape, int width, int height,
+                                           List<double[]> viewChanges, String what) {
+        GridImage fresh = new GridImage(grid, shape, width, height, PALETTE);
+        for (double[] viewChange : viewChanges) {
+            applyViewChange(fresh, viewChange);
+        }
+        GridSnapshot snapshot = new GridSnapshot(grid.getSize());
+        snapshot.capture(grid, grid.getGeneration(), null);
+        fresh.render(snapshot);
+        int[] pixels = image.getPixels();
+        int[] expected = fresh.getPixels();
+        for (int p = 0; p < pixels.length; p++) {
+            Check.require(pixels[p] == expected[p], "%s: pixel (%d, %d) is %08x instead of %08x", what, p % width,
+                    p / width, pixels[p], expected[p]);
+        }
+    }
+
+    // only the rows the image reports as dirty may differ from the last frame, which is then brought up to date
+    private static void requireDirtyRows(GridImage image, int[] previous, int width, String what) {
+        int[] pixels = image.getPixels();
+        for (int p = 0; p < pixels.length; p++) {
+            int row = p / width;
+            if (row < image.getDirtyTop() || row > image.getDirtyBottom()) {
+                Check.require(pixels[p] == previous[p], "%s: row %d changed outside the dirty rows %d to %d", what,
+                        row, image.getDirtyTop(), image.getDirtyBottom());
+            }
+        }
+        System.arraycopy(pixels, 0, previous, 0, pixels.length);
+    }
+
+    private static void requirePyramid(MipPyramid pyramid, int[] states, int numRows, int numCols, String what) {
+        int lastState = PALETTE.length - 1;
+        for (int level = 1; level < pyramid.getNumLevels(); level++) {
+            int blockSize = 1 << level;
+            for (int blockRow = 0; blockRow * blockSize < numRows; blockRow++) {
+                for (int blockCol = 0; blockCol * blockSize < numCols; blockCol++) {
+                    int[] counts = new int[PALETTE.length];
+                    for (int row = blockRow * blockSize; row < Math.min(numRows, (blockRow + 1) * blockSize); row++) {
+                        for (int col = blockCol * blockSize; col < Math.min(numCols, (blockCol + 1) * blockSize);
+                             col++) {
+                            counts[Math.min(states[row * numCols + col], lastState)]++;
+                        }
+                    }
+                    int majority = 0;
+                    for (int state = 1; state < counts.length; state++) {
+                        majority = counts[state] > counts[majority] ? state : majority;
+                    }
+                    Check.require(pyramid.getMajority(level, blockRow, blockCol) == majority,
+                            "%s: block (%d, %d) of level %d has majority %d instead of %d, counts %s", what, blockRow,
+                            blockCol, level, pyramid.getMajority(level, blockRow, blockCol), majority,
+                            Arrays.toString(counts));
+                }
+            }
+        }
+    }
+}
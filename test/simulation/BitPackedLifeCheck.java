@@ -0,0 +1,78 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.NeighborIndex;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that Game of Life gives the result of its scalar rule on every neighborhood: through the bit-packed engine on
+ * the Moore neighborhood, whatever the number of columns, and through the compiled table on the others. Every
+ * generation is compared with the rule applied cell by cell.
+ * @author Sumer Vardhan
+ */
+public class BitPackedLifeCheck {
+    private static final int EMPTY = 0;
+    private static final int LIVE = 1;
+    private static final int DEAD = 2;
+
+    public static void main(String[] args) {
+        int[][] sizes = {{1, 1}, {3, 64}, {37, 130}, {64, 63}, {129, 517}};
+        for (int[] size : sizes) {
+            for (String neighbors : new String[]{Check.MOORE, Check.HEXAGONAL}) {
+                checkAgainstScalarRule(size[0], size[1], neighbors, 40);
+            }
+        }
+        checkAgainstScalarRule(300, 300, Check.MOORE, 10);
+        System.out.println("ok BitPackedLifeCheck");
+    }
+
+    // steps every way a Game of Life can be stepped and compares each generation with the scalar rule
+    private static void checkAgainstScalarRule(int numRows, int numCols, String neighbors, int steps) {
+        int[] states = Check.randomStates(numRows * numCols, numRows * 31L + numCols, 0.1, 0.35, 0.55);
+        File config = Check.writeConfig("GameOfLifeConfig.xml", numRows, numCols, states,
+                "neighbor_configuration", neighbors);
+        Grid serial = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        Grid tracked = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        Grid parallel = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        Simulation serialLife = new GameOfLifeSimulation(serial);
+        Simulation trackedLife = new GameOfLifeSimulation(tracked);
+        Simulation parallelLife = new GameOfLifeSimulation(parallel);
+        ParallelStepper stepper = new ParallelStepper(new ForkJoinPool(4));
+        parallelLife.setParallelStepper(stepper);
+        NeighborIndex index = serial.getNeighbors();
+        for (int step = 0; step < steps; step++) {
+            states = stepScalar(states, index);
+            Check.step(serialLife, null, 1);
+            Check.step(trackedLife, null, 1);
+            Check.step(parallelLife, stepper, 1);
+            String what = String.format("%dx%d %s generation %d", numRows, numCols, neighbors, step + 1);
+            Check.requireSameStates(states, Check.states(serial), what);
+            Check.requireSameStates(states, Check.states(tracked), what + " tracking changes");
+            Check.requireSameStates(states, Check.states(parallel), what + " in parallel");
+        }
+    }
+
+    // a LIVE cell with fewer than 2 or more than 3 LIVE neighbors dies, a DEAD cell with exactly 3 comes alive
+    private static int[] stepScalar(int[] states, NeighborIndex index) {
+        int[] next = states.clone();
+        for (int id = 0; id < states.length; id++) {
+            int live = 0;
+            for (int k = index.getStart(id); k < index.getEnd(id); k++) {
+                if (states[index.getNeighbor(k)] == LIVE) {
+                    live++;
+                }
+            }
+            if (states[id] == LIVE && (live < 2 || live > 3)) {
+                next[id] = DEAD;
+            } else if (states[id] == DEAD && live == 3) {
+                next[id] = LIVE;
+            } else if (states[id] == EMPTY) {
+                next[id] = EMPTY;
+            }
+        }
+        return next;
+    }
+}
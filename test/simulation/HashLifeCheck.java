@@ -0,0 +1,53 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+
+import java.io.File;
+
+/**
+ * Checks that fast-forwarding Game of Life with HashLife, in uneven jumps and with a node cache small enough to be
+ * collected between jumps, gives the board that stepping one generation at a time gives.
+ * @author Sumer Vardhan
+ */
+public class HashLifeCheck {
+
+    public static void main(String[] args) {
+        checkFastForward(64, 200, 500);
+        checkFastForward(150, 97, 1000);
+        checkFastForward(1, 1, 10);
+        System.out.println("ok HashLifeCheck");
+    }
+
+    private static void checkFastForward(int numRows, int numCols, long generation) {
+        int[] states = Check.randomStates(numRows * numCols, generation, 0, 0.3, 0.7);
+        File config = Check.writeConfig("GameOfLifeConfig.xml", numRows, numCols, states);
+        Grid stepped = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        Check.step(new GameOfLifeSimulation(stepped), null, (int) generation);
+        int[] expected = Check.states(stepped);
+        String what = String.format("%dx%d fast-forwarded to %d", numRows, numCols, generation);
+
+        Grid jumped = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        GameOfLifeSimulation jumpedLife = new GameOfLifeSimulation(jumped);
+        jumpedLife.fastForwardTo(generation / 3);
+        Check.step(jumpedLife, null, 1);
+        jumpedLife.fastForwardTo(generation);
+        Check.require(jumpedLife.getGeneration() == generation, "%s: stopped at generation %d", what,
+                jumpedLife.getGeneration());
+        Check.requireSameStates(expected, Check.states(jumped), what);
+        // the bit-packed engine must pick up the board HashLife left
+        Check.step(jumpedLife, null, 5);
+        Check.step(new GameOfLifeSimulation(stepped), null, 5);
+        Check.requireSameStates(Check.states(stepped), Check.states(jumped), what + " and stepped on");
+
+        for (int maxCachedNodes : new int[]{50, 1 << 20}) {
+            Grid bounded = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+            HashLifeEngine engine = new HashLifeEngine(bounded, maxCachedNodes);
+            engine.advance(generation);
+            engine.writeTo(bounded);
+            bounded.updateStates();
+            Check.requireSameStates(expected, Check.states(bounded),
+                    String.format("%s with at most %d cached nodes", what, maxCachedNodes));
+        }
+    }
+}
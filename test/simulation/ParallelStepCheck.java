@@ -0,0 +1,52 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Checks that stepping a simulation in bands on a pool gives the same boards as stepping it on one thread, on every
+ * storage and whether changes are tracked, and that the boards do not depend on the number of threads.
+ * @author Sumer Vardhan
+ */
+public class ParallelStepCheck {
+    private static final int STEPS = 40;
+
+    public static void main(String[] args) {
+        ParallelStepper single = new ParallelStepper(new ForkJoinPool(1));
+        ParallelStepper pooled = new ParallelStepper(new ForkJoinPool(4));
+        for (Map.Entry<String, Function<Grid, Simulation>> simulation : Check.SIMULATIONS.entrySet()) {
+            checkParallel(simulation.getKey(), Check.config(simulation.getKey()), simulation.getValue(), single,
+                    pooled);
+        }
+        int[] states = Check.randomStates(150 * 203, 17, 0, 0.3, 0.7);
+        checkParallel("GameOfLifeConfig.xml", Check.writeConfig("GameOfLifeConfig.xml", 150, 203, states),
+                Check.SIMULATIONS.get("GameOfLifeConfig.xml"), single, pooled);
+        System.out.println("ok ParallelStepCheck");
+    }
+
+    private static void checkParallel(String name, File config, Function<Grid, Simulation> simulation,
+                                      ParallelStepper single, ParallelStepper pooled) {
+        // the sparse storage steps Game of Life and Spreading of Fire as an unbounded universe, so every storage is
+        // compared with its own run on one thread
+        for (String storage : Check.STORAGES) {
+            int[][] expected = Check.run(config, storage, false, single, STEPS, simulation);
+            // a segregation batch moves agents in an order of its own, so it is only compared with other parallel runs
+            if (!name.equals("SegregationConfig.xml")) {
+                Check.requireSameRun(Check.run(config, storage, false, null, STEPS, simulation), expected,
+                        name + " on " + storage + " storage in parallel");
+            }
+            for (ParallelStepper stepper : new ParallelStepper[]{single, pooled}) {
+                for (boolean isTrackingChanges : new boolean[]{false, true}) {
+                    Check.requireSameRun(expected, Check.run(config, storage, isTrackingChanges, stepper, STEPS,
+                            simulation), String.format("%s on %s storage%s, in parallel on %d threads", name,
+                            storage, isTrackingChanges ? ", tracking changes" : "", stepper == single ? 1 : 4));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.NeighborIndex;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Checks that stepping a Percolation Simulation fills the cells a full scan of the board would fill, that filling a
+ * board to completion gives the board stepping stops at, and that a board percolates exactly when its last row ends up
+ * with a FULL cell, on symmetric neighborhoods and on neighborhoods that only list offsets in one direction.
+ * @author Sumer Vardhan
+ */
+public class PercolationCheck {
+    private static final String DOWNWARD = "0 -1 1 0 1 1 1 -1 3";
+
+    public static void main(String[] args) {
+        checkBoard(Check.config("PercolationConfig.xml"));
+        String[] neighborhoods = {Check.VON_NEUMANN, Check.MOORE, Check.HEXAGONAL, DOWNWARD};
+        int numPercolating = 0;
+        for (String neighbors : neighborhoods) {
+            for (int seed = 0; seed < 12; seed++) {
+                int numRows = 5 + seed * 7;
+                int numCols = 3 + seed * 11;
+                double open = 0.4 + 0.03 * seed;
+                int[] states = Check.randomStates(numRows * numCols, seed, open, 0.02, 1 - open);
+                File config = Check.writeConfig("PercolationConfig.xml", numRows, numCols, states,
+                        "neighbor_configuration", neighbors);
+                numPercolating += checkBoard(config) ? 1 : 0;
+            }
+        }
+        Check.require(numPercolating > 0 && numPercolating < 4 * 12, "%d of the boards percolate", numPercolating);
+        System.out.println("ok PercolationCheck");
+    }
+
+    // returns whether the board percolates, so the caller can tell that both outcomes were checked
+    private static boolean checkBoard(File config) {
+        Grid stepped = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        Grid tracked = Check.load(config, Grid.SPARSE_STORAGE, true);
+        Grid filled = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        Simulation steppedSimulation = new PercolationSimulation(stepped);
+        Simulation trackedSimulation = new PercolationSimulation(tracked);
+        PercolationSimulation filledSimulation = new PercolationSimulation(filled);
+        boolean percolates = filledSimulation.percolates();
+
+        NeighborIndex neighbors = stepped.getNeighbors();
+        int[] states = Check.states(stepped);
+        for (int step = 1; ; step++) {
+            int[] next = states.clone();
+            for (int id = 0; id < states.length; id++) {
+                if (states[id] != PercolationSimulation.FULL) {
+                    continue;
+                }
+                for (int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++) {
+                    if (states[neighbors.getNeighbor(k)] == PercolationSimulation.OPEN) {
+                        next[neighbors.getNeighbor(k)] = PercolationSimulation.FULL;
+                    }
+                }
+            }
+            Check.step(steppedSimulation, null, 1);
+            Check.step(trackedSimulation, null, 1);
+            String what = String.format("%s generation %d", config.getName(), step);
+            Check.requireSameStates(next, Check.states(stepped), what);
+            Check.requireSameStates(next, Check.states(tracked), what + " tracking changes");
+            if (Arrays.equals(next, states)) {
+                break;
+            }
+            states = next;
+        }
+
+        filledSimulation.fillToCompletion();
+        Check.requireSameStates(states, Check.states(filled), config.getName() + " filled to completion");
+        Check.require(filledSimulation.getGeneration() == 1, "Filling to completion took %d generations",
+                filledSimulation.getGeneration());
+        boolean isLastRowFull = false;
+        for (int id = states.length - stepped.getNumCols(); id < states.length; id++) {
+            isLastRowFull |= states[id] == PercolationSimulation.FULL;
+        }
+        Check.require(percolates == isLastRowFull, "%s: percolates is %b but the last row is %s", config.getName(),
+                percolates, isLastRowFull ? "reached" : "not reached");
+        stepped.close();
+        tracked.close();
+        filled.close();
+        return percolates;
+    }
+}
@@ -0,0 +1,84 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.IndexedIntSet;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the lists of fish and sharks a Predator and Prey Simulation keeps always hold exactly the cells of the
+ * grid in those states, and that for a given seed the simulation gives the same board whatever the storage, whether
+ * changes are tracked and however many threads step it.
+ * @author Sumer Vardhan
+ */
+public class PredatorPreyCheck {
+    private static final int STEPS = 25;
+
+    public static void main(String[] args) {
+        checkSmallBoards();
+        // large enough for the agents to be split into several bands
+        int numRows = 150;
+        int numCols = 240;
+        int[] states = Check.randomStates(numRows * numCols, 13, 0.35, 0.5, 0.15);
+        File config = Check.writeConfig("PredatorPreyConfig.xml", numRows, numCols, states);
+        int[][] expected = run(config, Grid.PRIMITIVE_STORAGE, false, null);
+        for (String storage : Check.STORAGES) {
+            for (boolean isTrackingChanges : new boolean[]{false, true}) {
+                Check.requireSameRun(expected, run(config, storage, isTrackingChanges, null),
+                        storage + (isTrackingChanges ? " tracking changes" : ""));
+            }
+        }
+        for (int numThreads : new int[]{1, 4}) {
+            ParallelStepper stepper = new ParallelStepper(new ForkJoinPool(numThreads));
+            Check.requireSameRun(expected, run(config, Grid.PRIMITIVE_STORAGE, true, stepper),
+                    "Primitive on " + numThreads + " threads");
+            Check.requireSameRun(expected, run(config, Grid.MAPPED_STORAGE, false, stepper),
+                    "Mapped on " + numThreads + " threads");
+        }
+        System.out.println("ok PredatorPreyCheck");
+    }
+
+    private static void checkSmallBoards() {
+        Check.requireSameRun(run(Check.config("PredatorPreyConfig.xml"), Grid.PRIMITIVE_STORAGE, false, null),
+                run(Check.config("PredatorPreyConfig.xml"), Grid.CELL_STORAGE, true,
+                        new ParallelStepper(new ForkJoinPool(2))), "PredatorPreyConfig.xml");
+        for (int seed = 0; seed < 20; seed++) {
+            int[] states = Check.randomStates(7 * 9, seed, 0.2, 0.4, 0.4);
+            File config = Check.writeConfig("PredatorPreyConfig.xml", 7, 9, states);
+            Check.requireSameRun(run(config, Grid.PRIMITIVE_STORAGE, false, null),
+                    run(config, Grid.SPARSE_STORAGE, true, new ParallelStepper(new ForkJoinPool(3))),
+                    "7x9 board " + seed);
+        }
+    }
+
+    // steps the simulation and checks its lists after every step; returns the board of every generation
+    private static int[][] run(File config, String storage, boolean isTrackingChanges, ParallelStepper stepper) {
+        Grid grid = Check.load(config, storage, isTrackingChanges);
+        PredatorPreySimulation simulation = new PredatorPreySimulation(grid);
+        simulation.setRandomSeed(Check.SEED);
+        simulation.setParallelStepper(stepper);
+        int[][] boards = new int[STEPS][];
+        for (int step = 0; step < STEPS; step++) {
+            Check.step(simulation, stepper, 1);
+            boards[step] = Check.states(grid);
+            requireList(simulation, "myFish", PredatorPreySimulation.FISH, boards[step], step);
+            requireList(simulation, "mySharks", PredatorPreySimulation.SHARK, boards[step], step);
+        }
+        grid.close();
+        return boards;
+    }
+
+    private static void requireList(PredatorPreySimulation simulation, String name, int state, int[] states, int step) {
+        IndexedIntSet list = (IndexedIntSet) Check.field(simulation, name);
+        int numInState = 0;
+        for (int id = 0; id < states.length; id++) {
+            Check.require(list.contains(id) == (states[id] == state), "Generation %d: %s %s cell %d in state %d",
+                    step + 1, name, list.contains(id) ? "holds" : "misses", id, states[id]);
+            numInState += states[id] == state ? 1 : 0;
+        }
+        Check.require(list.size() == numInState, "Generation %d: %s holds %d cells instead of %d", step + 1, name,
+                list.size(), numInState);
+    }
+}
@@ -0,0 +1,70 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.NeighborIndex;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the compiled kernels of a Totalistic Simulation give the next state the rule gives every cell, on each
+ * neighborhood a kernel is specialized for and on one none is, serially, tracking changes and in parallel.
+ * @author Sumer Vardhan
+ */
+public class RuleKernelCheck {
+    private static final String GENERIC = "-2 0 1 -1 -1 3 0 -1 3 1 -1 3";
+
+    public static void main(String[] args) {
+        String[] rules = {"B2/S/C3", "B36/S23", "B2/S345/C6", "B/S0123456789"};
+        String[] neighborhoods = {Check.MOORE, Check.HEXAGONAL, Check.VON_NEUMANN, GENERIC};
+        for (String rule : rules) {
+            for (String neighbors : neighborhoods) {
+                checkAgainstTable(rule, neighbors, 33, 71);
+            }
+        }
+        checkAgainstTable("B2/S/C3", Check.MOORE, 1, 1);
+        checkAgainstTable("B1/S1", Check.VON_NEUMANN, 2, 5);
+        System.out.println("ok RuleKernelCheck");
+    }
+
+    // steps serially, tracking changes and in parallel, and compares every generation with a lookup of the rule
+    private static void checkAgainstTable(String rule, String neighbors, int numRows, int numCols) {
+        int[] states = Check.randomStates(numRows * numCols, rule.hashCode() + neighbors.hashCode(), 0.5, 0.3, 0.2);
+        File config = Check.writeConfig("TotalisticConfig.xml", numRows, numCols, states,
+                "rule", rule, "neighbor_configuration", neighbors);
+        Grid serial = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        Grid tracked = Check.load(config, Grid.SPARSE_STORAGE, true);
+        Grid parallel = Check.load(config, Grid.PRIMITIVE_STORAGE, true);
+        TotalisticSimulation serialSimulation = new TotalisticSimulation(serial);
+        Simulation trackedSimulation = new TotalisticSimulation(tracked);
+        Simulation parallelSimulation = new TotalisticSimulation(parallel);
+        ParallelStepper stepper = new ParallelStepper(new ForkJoinPool(4));
+        parallelSimulation.setParallelStepper(stepper);
+        TotalisticRule table = serialSimulation.getRule();
+        NeighborIndex index = serial.getNeighbors();
+        for (int step = 1; step <= 30; step++) {
+            int[] next = new int[states.length];
+            for (int id = 0; id < states.length; id++) {
+                int alive = 0;
+                for (int k = index.getStart(id); k < index.getEnd(id); k++) {
+                    if (states[index.getNeighbor(k)] == TotalisticRule.ALIVE) {
+                        alive++;
+                    }
+                }
+                next[id] = table.getNextState(states[id], alive);
+            }
+            states = next;
+            Check.step(serialSimulation, null, 1);
+            Check.step(trackedSimulation, null, 1);
+            Check.step(parallelSimulation, stepper, 1);
+            String what = String.format("%s on %s, %dx%d, generation %d", rule, neighbors, numRows, numCols, step);
+            Check.requireSameStates(states, Check.states(serial), what);
+            Check.requireSameStates(states, Check.states(tracked), what + " tracking changes");
+            Check.requireSameStates(states, Check.states(parallel), what + " in parallel");
+        }
+        serial.close();
+        tracked.close();
+        parallel.close();
+    }
+}
@@ -0,0 +1,124 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.IndexedIntSet;
+import elements.NeighborIndex;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the counts of similar neighbors, the set of unhappy agents and the set of empty cells a Segregation
+ * Simulation updates incrementally always equal what recounting the grid gives, that no agent is lost or created, and
+ * that for a given seed the result does not depend on the storage, on whether changes are tracked or, when the agents
+ * move in a batch, on the number of threads.
+ * @author Sumer Vardhan
+ */
+public class SegregationCheck {
+    private static final int EMPTY = 0;
+
+    public static void main(String[] args) {
+        File config = Check.config("SegregationConfig.xml");
+        checkRuns(config, 30);
+        for (String neighbors : new String[]{Check.MOORE, Check.VON_NEUMANN}) {
+            for (String threshold : new String[]{"0.3", "0.7"}) {
+                int[] states = Check.randomStates(41 * 67, threshold.hashCode(), 0.25, 0.4, 0.35);
+                checkRuns(Check.writeConfig("SegregationConfig.xml", 41, 67, states, "neighbor_configuration",
+                        neighbors, "parameter0", "segregation_threshold:" + threshold), 20);
+            }
+        }
+        // enough unhappy agents for the batch to be split into several bands
+        int[] states = Check.randomStates(260 * 260, 5, 0.35, 0.35, 0.3);
+        checkRuns(Check.writeConfig("SegregationConfig.xml", 260, 260, states, "neighbor_configuration", Check.MOORE,
+                "parameter0", "segregation_threshold:0.75"), 4);
+        System.out.println("ok SegregationCheck");
+    }
+
+    private static void checkRuns(File config, int steps) {
+        int[][] serial = run(config, Grid.PRIMITIVE_STORAGE, false, null, steps);
+        for (String storage : Check.STORAGES) {
+            Check.requireSameRun(serial, run(config, storage, true, null, steps), storage + " tracking changes");
+        }
+        int[][] batch = run(config, Grid.PRIMITIVE_STORAGE, false, new ParallelStepper(new ForkJoinPool(1)), steps);
+        for (String storage : Check.STORAGES) {
+            Check.requireSameRun(batch, run(config, storage, true, new ParallelStepper(new ForkJoinPool(4)), steps),
+                    storage + " on 4 threads");
+        }
+    }
+
+    // steps the simulation and checks what it keeps after every step; returns the board of every generation
+    private static int[][] run(File config, String storage, boolean isTrackingChanges, ParallelStepper stepper,
+                               int steps) {
+        Grid grid = Check.load(config, storage, isTrackingChanges);
+        SegregationSimulation simulation = new SegregationSimulation(grid);
+        simulation.setRandomSeed(Check.SEED);
+        simulation.setParallelStepper(stepper);
+        double threshold = (Double) Check.field(simulation, "mySegregationThreshold");
+        int[] initialCounts = countStates(Check.states(grid));
+        int[][] boards = new int[steps][];
+        int[] previous = Check.states(grid);
+        for (int step = 0; step < steps; step++) {
+            int numUnhappy = ((IndexedIntSet) Check.field(simulation, "myUnhappyAgents")).size();
+            int numVacancies = ((IndexedIntSet) Check.field(simulation, "myVacancies")).size();
+            Check.step(simulation, stepper, 1);
+            boards[step] = Check.states(grid);
+            String what = String.format("%s generation %d", storage, step + 1);
+            requireRecounted(simulation, grid, threshold, what);
+            int[] counts = countStates(boards[step]);
+            for (int state = 0; state < counts.length; state++) {
+                Check.require(counts[state] == initialCounts[state], "%s: %d cells in state %d instead of %d", what,
+                        counts[state], state, initialCounts[state]);
+            }
+            if (stepper != null) {
+                int numChanged = 0;
+                for (int id = 0; id < previous.length; id++) {
+                    numChanged += previous[id] != boards[step][id] ? 1 : 0;
+                }
+                Check.require(numChanged == 2 * Math.min(numUnhappy, numVacancies),
+                        "%s: %d cells changed when %d agents could move to %d cells", what, numChanged, numUnhappy,
+                        numVacancies);
+            }
+            previous = boards[step];
+        }
+        grid.close();
+        return boards;
+    }
+
+    private static void requireRecounted(SegregationSimulation simulation, Grid grid, double threshold, String what) {
+        int[] similarNeighbors = (int[]) Check.field(simulation, "mySimilarNeighbors");
+        IndexedIntSet unhappyAgents = (IndexedIntSet) Check.field(simulation, "myUnhappyAgents");
+        IndexedIntSet vacancies = (IndexedIntSet) Check.field(simulation, "myVacancies");
+        NeighborIndex neighbors = grid.getNeighbors();
+        int numUnhappy = 0;
+        int numEmpty = 0;
+        for (int id = 0; id < grid.getSize(); id++) {
+            int state = grid.getState(id);
+            int similar = 0;
+            for (int k = neighbors.getStart(id); k < neighbors.getEnd(id); k++) {
+                similar += grid.getState(neighbors.getNeighbor(k)) == state ? 1 : 0;
+            }
+            Check.require(similarNeighbors[id] == similar, "%s: cell %d counts %d similar neighbors instead of %d",
+                    what, id, similarNeighbors[id], similar);
+            boolean isUnhappy = state != EMPTY && (double) similar / neighbors.getNumNeighbors(id) < threshold;
+            Check.require(unhappyAgents.contains(id) == isUnhappy, "%s: cell %d is %s the unhappy agents", what, id,
+                    isUnhappy ? "missing from" : "wrongly in");
+            Check.require(vacancies.contains(id) == (state == EMPTY), "%s: cell %d is %s the vacancies", what, id,
+                    state == EMPTY ? "missing from" : "wrongly in");
+            numUnhappy += isUnhappy ? 1 : 0;
+            numEmpty += state == EMPTY ? 1 : 0;
+        }
+        Check.require(unhappyAgents.size() == numUnhappy, "%s: %d unhappy agents instead of %d", what,
+                unhappyAgents.size(), numUnhappy);
+        Check.require(vacancies.size() == numEmpty, "%s: %d vacancies instead of %d", what, vacancies.size(),
+                numEmpty);
+    }
+
+    private static int[] countStates(int[] states) {
+        int[] counts = new int[3];
+        for (int state : states) {
+            counts[state]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,135 @@
+package simulation;
+
+import checks.Check;
+import elements.Grid;
+import elements.NeighborIndex;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that stepping Spreading of Fire from its burning frontier gives what scanning the whole forest gives when fire
+ * always spreads and trees never grow back, that with random spreading and regrowth no cell ever changes in a way the
+ * rules forbid, and that for a given seed the result does not depend on the storage, on whether changes are tracked or
+ * on the number of threads.
+ * @author Sumer Vardhan
+ */
+public class SpreadingOfFireCheck {
+    private static final int EMPTY = 0;
+    private static final int TREE = 1;
+    private static final int BURNING = 2;
+
+    public static void main(String[] args) {
+        checkCertainSpread(Check.config("SpreadingOfFireConfig.xml"), Check.HEXAGONAL);
+        for (String neighbors : new String[]{Check.MOORE, Check.VON_NEUMANN}) {
+            int[] states = Check.randomStates(53 * 88, neighbors.hashCode(), 0.3, 0.68, 0.02);
+            checkCertainSpread(Check.writeConfig("SpreadingOfFireConfig.xml", 53, 88, states,
+                    "neighbor_configuration", neighbors), neighbors);
+        }
+        for (double[] probabilities : new double[][]{{0.45, 0.05}, {0.8, 0.3}, {1, 0.01}}) {
+            int[] states = Check.randomStates(61 * 47, 7, 0.4, 0.55, 0.05);
+            checkRandomSpread(Check.writeConfig("SpreadingOfFireConfig.xml", 61, 47, states), probabilities, 40);
+        }
+        // enough candidates for the trees to be tested in several bands
+        int[] states = Check.randomStates(230 * 230, 11, 0.5, 0.45, 0.05);
+        checkRandomSpread(Check.writeConfig("SpreadingOfFireConfig.xml", 230, 230, states,
+                "neighbor_configuration", Check.MOORE), new double[]{0.5, 0.2}, 8);
+        System.out.println("ok SpreadingOfFireCheck");
+    }
+
+    // with the probabilities of the configuration every tree next to a fire burns and no tree grows back
+    private static void checkCertainSpread(File config, String neighbors) {
+        Grid grid = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        int[] states = Check.states(grid);
+        NeighborIndex index = grid.getNeighbors();
+        grid.close();
+        int[][] boards = run(config, Grid.PRIMITIVE_STORAGE, false, null, null, 60);
+        for (int step = 0; step < boards.length; step++) {
+            int[] next = new int[states.length];
+            for (int id = 0; id < states.length; id++) {
+                next[id] = states[id] == TREE && hasNeighbor(states, index, id, BURNING) ? BURNING
+                        : states[id] == BURNING ? EMPTY : states[id];
+            }
+            states = next;
+            Check.requireSameStates(states, boards[step], neighbors + " generation " + (step + 1));
+        }
+        requireSameRuns(boards, config, null, 60);
+    }
+
+    private static void checkRandomSpread(File config, double[] probabilities, int steps) {
+        Grid grid = Check.load(config, Grid.PRIMITIVE_STORAGE, false);
+        int[] states = Check.states(grid);
+        NeighborIndex index = grid.getNeighbors();
+        grid.close();
+        int[][] boards = run(config, Grid.PRIMITIVE_STORAGE, false, null, probabilities, steps);
+        int numIgnited = 0;
+        int numGrown = 0;
+        for (int step = 0; step < steps; step++) {
+            int[] next = boards[step];
+            for (int id = 0; id < states.length; id++) {
+                String what = String.format("Generation %d cell %d", step + 1, id);
+                if (states[id] == BURNING) {
+                    // so a tree can only grow where a fire was once the cell has been empty for a step
+                    Check.require(next[id] == EMPTY, "%s: burning cell became %d", what, next[id]);
+                } else if (states[id] == TREE && next[id] == BURNING) {
+                    Check.require(hasNeighbor(states, index, id, BURNING), "%s: tree caught fire by itself", what);
+                    numIgnited++;
+                } else if (states[id] == EMPTY && next[id] == TREE) {
+                    Check.require(hasNeighbor(states, index, id, TREE), "%s: tree grew with no tree nearby", what);
+                    numGrown++;
+                } else {
+                    Check.require(next[id] == states[id], "%s: %d became %d", what, states[id], next[id]);
+                }
+            }
+            states = next;
+        }
+        Check.require(numIgnited > 0 && numGrown > 0, "Only %d trees burned and %d grew", numIgnited, numGrown);
+        requireSameRuns(boards, config, probabilities, steps);
+    }
+
+    private static void requireSameRuns(int[][] expected, File config, double[] probabilities, int steps) {
+        // the sparse storage burns an unbounded forest, which SparseTileStorageCheck compares with a bounded one
+        for (String storage : Check.STORAGES) {
+            if (!storage.equals(Grid.SPARSE_STORAGE)) {
+                Check.requireSameRun(expected, run(config, storage, true, null, probabilities, steps),
+                        storage + " tracking changes");
+            }
+        }
+        for (int numThreads : new int[]{1, 4}) {
+            ParallelStepper stepper = new ParallelStepper(new ForkJoinPool(numThreads));
+            Check.requireSameRun(expected, run(config, Grid.PRIMITIVE_STORAGE, true, stepper, probabilities, steps),
+                    "Primitive on " + numThreads + " threads");
+            Check.requireSameRun(expected, run(config, Grid.MAPPED_STORAGE, false, stepper, probabilities, steps),
+                    "Mapped on " + numThreads + " threads");
+        }
+    }
+
+    // probabilities holds the burn and tree probabilities, or null to keep those of the simulation
+    private static int[][] run(File config, String storage, boolean isTrackingChanges, ParallelStepper stepper,
+                               double[] probabilities, int steps) {
+        Grid grid = Check.load(config, storage, isTrackingChanges);
+        Simulation simulation = new SpreadingOfFireSimulation(grid);
+        if (probabilities != null) {
+            Check.setField(simulation, "myBurnProbability", probabilities[0]);
+            Check.setField(simulation, "myTreeProbability", probabilities[1]);
+        }
+        simulation.setRandomSeed(Check.SEED);
+        simulation.setParallelStepper(stepper);
+        int[][] boards = new int[steps][];
+        for (int step = 0; step < steps; step++) {
+            Check.step(simulation, stepper, 1);
+            boards[step] = Check.states(grid);
+        }
+        grid.close();
+        return boards;
+    }
+
+    private static boolean hasNeighbor(int[] states, NeighborIndex index, int id, int state) {
+        for (int k = index.getStart(id); k < index.getEnd(id); k++) {
+            if (states[index.getNeighbor(k)] == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
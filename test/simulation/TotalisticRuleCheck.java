@@ -0,0 +1,95 @@
+package simulation;
+
+import checks.Check;
+import config.XMLException;
+import elements.Grid;
+
+import java.io.File;
+
+/**
+ * Checks that a Totalistic Simulation running B3/S23 is Game of Life, that transitions override the rule, and that
+ * rules needing more states than a byte holds are rejected.
+ * @author Sumer Vardhan
+ */
+public class TotalisticRuleCheck {
+    public static void main(String[] args) {
+        checkGameOfLife();
+        checkTransitions();
+        checkRejected();
+        System.out.println("ok TotalisticRuleCheck");
+    }
+
+    // B3/S23 on a board of DEAD and ALIVE cells is Game of Life with its DEAD state numbered 2 instead of 0
+    private static void checkGameOfLife() {
+        int numRows = 48;
+        int numCols = 90;
+        int[] states = Check.randomStates(numRows * numCols, 3, 0.6, 0.4);
+        int[] lifeStates = new int[states.length];
+        for (int id = 0; id < states.length; id++) {
+            lifeStates[id] = states[id] == TotalisticRule.ALIVE ? GameOfLifeSimulation.LIVE : GameOfLifeSimulation.DEAD;
+        }
+        Grid totalistic = Check.load(Check.writeConfig("TotalisticConfig.xml", numRows, numCols, states,
+                "rule", "B3/S23"), Grid.PRIMITIVE_STORAGE, true);
+        Grid life = Check.load(Check.writeConfig("GameOfLifeConfig.xml", numRows, numCols, lifeStates),
+                Grid.PRIMITIVE_STORAGE, true);
+        Simulation totalisticSimulation = new TotalisticSimulation(totalistic);
+        Simulation lifeSimulation = new GameOfLifeSimulation(life);
+        for (int step = 1; step <= 60; step++) {
+            Check.step(totalisticSimulation, null, 1);
+            Check.step(lifeSimulation, null, 1);
+            int[] expected = Check.states(life);
+            for (int id = 0; id < expected.length; id++) {
+                expected[id] = expected[id] == GameOfLifeSimulation.LIVE ? TotalisticRule.ALIVE : TotalisticRule.DEAD;
+            }
+            Check.requireSameStates(expected, Check.states(totalistic), "B3/S23 generation " + step);
+        }
+        totalistic.close();
+        life.close();
+    }
+
+    private static void checkTransitions() {
+        TotalisticRule brain = new TotalisticRule("B2/S/C3", null, 0, 8);
+        Check.require(brain.getNumStates() == 3, "Brian's Brain has %d states", brain.getNumStates());
+        for (int count = 0; count <= 8; count++) {
+            Check.require(brain.getNextState(0, count) == (count == 2 ? 1 : 0), "B2/S/C3 dead with %d", count);
+            Check.require(brain.getNextState(1, count) == 2, "B2/S/C3 alive with %d", count);
+            Check.require(brain.getNextState(2, count) == 0, "B2/S/C3 dying with %d", count);
+        }
+
+        TotalisticRule overridden = new TotalisticRule("B3/S23", "0 4 1 / 1 3 4 / 5 0 5", 3, 8);
+        Check.require(overridden.getNumStates() == 6, "The transitions need %d states", overridden.getNumStates());
+        Check.require(overridden.getNextState(0, 4) == 1, "Transition 0 4 1 was not applied");
+        Check.require(overridden.getNextState(0, 3) == 1, "Birth on 3 was lost");
+        Check.require(overridden.getNextState(1, 3) == 4, "Transition 1 3 4 was not applied");
+        Check.require(overridden.getNextState(1, 2) == 1, "Survival on 2 was lost");
+        Check.require(overridden.getNextState(2, 7) == 2, "A state the rule does not name changed");
+        Check.require(overridden.getNextState(4, 1) == 4, "A state the rule does not name changed");
+
+        TotalisticRule largest = new TotalisticRule("B3/S23/C" + TotalisticRule.MAX_STATES, null, 0, 8);
+        Check.require(largest.getNumStates() == TotalisticRule.MAX_STATES, "C%d has %d states",
+                TotalisticRule.MAX_STATES, largest.getNumStates());
+    }
+
+    private static void checkRejected() {
+        int max = TotalisticRule.MAX_STATES;
+        requireRejected("B3/S23/C" + (max + 1), null, 0);
+        requireRejected("B3/S23/C99999999999", null, 0);
+        requireRejected("B3/S23", "0 3 " + max, 0);
+        requireRejected("B3/S23", max + " 3 0", 0);
+        requireRejected("B3/S23", "0 3 " + Integer.MAX_VALUE, 0);
+        requireRejected("B3/S23", "0 3", 0);
+        requireRejected("B3/S23", "0 3 -1", 0);
+        requireRejected("B3/S23", null, max + 1);
+        requireRejected("B3S23", null, 0);
+    }
+
+    private static void requireRejected(String rule, String transitions, int minNumStates) {
+        try {
+            new TotalisticRule(rule, transitions, minNumStates, 8);
+        } catch (XMLException e) {
+            return;
+        }
+        throw new AssertionError(String.format("Rule %s with transitions %s and %d states was accepted", rule,
+                transitions, minNumStates));
+    }
+}